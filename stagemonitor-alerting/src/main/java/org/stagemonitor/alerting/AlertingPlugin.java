@@ -71,6 +71,44 @@ public class AlertingPlugin extends StagemonitorPlugin {
 			.configurationCategory(ALERTING_PLUGIN_NAME)
 			.build();
 
+	private final ConfigurationOption<Integer> alertQueueCapacity = ConfigurationOption.integerOption()
+			.key("stagemonitor.alerts.queue.capacity")
+			.dynamic(false)
+			.label("Alert queue capacity")
+			.description("Alerts are delivered asynchronously by a separate thread for each alerter, so that a slow " +
+					"alerter does not delay the threshold checks. This is the maximum number of pending alerts per " +
+					"alerter. If the limit is reached, new alerts are dropped. Set to `0` to deliver the alerts " +
+					"synchronously.")
+			.defaultValue(100)
+			.configurationCategory(ALERTING_PLUGIN_NAME)
+			.build();
+	private final ConfigurationOption<Integer> alertRetries = ConfigurationOption.integerOption()
+			.key("stagemonitor.alerts.retries")
+			.dynamic(false)
+			.label("Alert delivery retries")
+			.description("The maximum number of retries if the delivery of an asynchronous alert fails. " +
+					"The delay between the retries is doubled after each retry.")
+			.defaultValue(3)
+			.configurationCategory(ALERTING_PLUGIN_NAME)
+			.build();
+	private final ConfigurationOption<Long> alertDeliveryTimeout = ConfigurationOption.longOption()
+			.key("stagemonitor.alerts.delivery.timeout")
+			.dynamic(false)
+			.label("Alert delivery timeout (sec)")
+			.description("The time in seconds after which an asynchronous alert that could not be delivered is discarded.")
+			.defaultValue(300L)
+			.configurationCategory(ALERTING_PLUGIN_NAME)
+			.build();
+	private final ConfigurationOption<Long> alertDeliveryAttemptTimeout = ConfigurationOption.longOption()
+			.key("stagemonitor.alerts.delivery.attemptTimeout")
+			.dynamic(false)
+			.label("Alert delivery attempt timeout (sec)")
+			.description("The time in seconds after which a single attempt to deliver an asynchronous alert is " +
+					"cancelled and counted as a failed attempt.")
+			.defaultValue(30L)
+			.configurationCategory(ALERTING_PLUGIN_NAME)
+			.build();
+
 	private ConfigurationOption<String> smtpHost = ConfigurationOption.stringOption()
 			.key("stagemonitor.alerts.smtp.host")
 			.dynamic(true)
@@ -218,7 +256,7 @@ public class AlertingPlugin extends StagemonitorPlugin {
 	@Override
 	public void initializePlugin(StagemonitorPlugin.InitArguments initArguments) throws Exception {
 		final AlertingPlugin alertingPlugin = initArguments.getPlugin(AlertingPlugin.class);
-		alertSender = new AlertSender(initArguments.getConfiguration());
+		alertSender = new AlertSender(initArguments.getConfiguration(), initArguments.getMetricRegistry());
 		CorePlugin corePlugin = initArguments.getPlugin(CorePlugin.class);
 		if (corePlugin.getElasticsearchUrl() != null) {
 			incidentRepository = new ElasticsearchIncidentRepository(corePlugin.getElasticsearchClient());
@@ -235,6 +273,7 @@ public class AlertingPlugin extends StagemonitorPlugin {
 	@Override
 	public void onShutDown() {
 		thresholdMonitoringReporter.close();
+		alertSender.close();
 	}
 
 	@Override
@@ -246,6 +285,22 @@ public class AlertingPlugin extends StagemonitorPlugin {
 		return muteAlerts.getValue();
 	}
 
+	public int getAlertQueueCapacity() {
+		return alertQueueCapacity.getValue();
+	}
+
+	public int getAlertRetries() {
+		return alertRetries.getValue();
+	}
+
+	public long getAlertDeliveryTimeout() {
+		return alertDeliveryTimeout.getValue();
+	}
+
+	public long getAlertDeliveryAttemptTimeout() {
+		return alertDeliveryAttemptTimeout.getValue();
+	}
+
 	public Map<String, Subscription> getSubscriptionsByIds() {
 		return subscriptions.getValue();
 	}
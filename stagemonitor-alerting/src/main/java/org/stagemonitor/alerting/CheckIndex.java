@@ -0,0 +1,115 @@
+package org.stagemonitor.alerting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.stagemonitor.alerting.check.Check;
+import org.stagemonitor.alerting.check.MetricCategory;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+
+/**
+ * Maps metric names to the {@link Check}s whose target matches the graphite name of the metric.
+ * <p/>
+ * The matching checks of a metric are only determined once per metric and set of checks, so that neither the graphite
+ * name has to be built nor the target patterns of the checks have to be evaluated for each metric on every check run.
+ * The whole index is rebuilt if the checks change or if metrics have been removed from the registry.
+ * <p/>
+ * This class is not thread safe. It is only accessed by the thread of the {@link ThresholdMonitoringReporter}.
+ */
+class CheckIndex {
+
+	private static final Targets NO_MATCHING_CHECKS = new Targets(null, Collections.<Check>emptyList());
+
+	private final Metric2Registry registry;
+	private Index index = new Index(Collections.<String, Check>emptyMap(), 0);
+
+	CheckIndex(Metric2Registry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Returns the checks of the given category whose target matches the metric name
+	 *
+	 * @param checks     the current checks
+	 * @param category   the category of the metric
+	 * @param metricName the name of the metric
+	 * @return the graphite name of the metric and the matching checks
+	 */
+	Targets getMatchingChecks(Map<String, Check> checks, MetricCategory category, MetricName metricName) {
+		final long removalCount = registry.getRemovalCount();
+		if (index.checks != checks || index.removalCount != removalCount) {
+			index = new Index(checks, removalCount);
+		}
+		return index.getMatchingChecks(category, metricName);
+	}
+
+	/**
+	 * The graphite name of a metric and the checks whose target matches the name
+	 */
+	static class Targets {
+		final String graphiteName;
+		final List<Check> checks;
+
+		private Targets(String graphiteName, List<Check> checks) {
+			this.graphiteName = graphiteName;
+			this.checks = checks;
+		}
+	}
+
+	private static class Index {
+		private final Map<String, Check> checks;
+		private final long removalCount;
+		private final Map<MetricCategory, List<Check>> checksByCategory = new EnumMap<MetricCategory, List<Check>>(MetricCategory.class);
+		private final Map<MetricCategory, Map<MetricName, Targets>> targetsByMetricName =
+				new EnumMap<MetricCategory, Map<MetricName, Targets>>(MetricCategory.class);
+
+		private Index(Map<String, Check> checks, long removalCount) {
+			this.checks = checks;
+			this.removalCount = removalCount;
+			for (MetricCategory category : MetricCategory.values()) {
+				checksByCategory.put(category, new ArrayList<Check>());
+				targetsByMetricName.put(category, new HashMap<MetricName, Targets>());
+			}
+			for (Check check : checks.values()) {
+				if (check.getMetricCategory() != null && check.getTarget() != null) {
+					checksByCategory.get(check.getMetricCategory()).add(check);
+				}
+			}
+		}
+
+		private Targets getMatchingChecks(MetricCategory category, MetricName metricName) {
+			final List<Check> checksOfCategory = checksByCategory.get(category);
+			if (checksOfCategory.isEmpty()) {
+				return NO_MATCHING_CHECKS;
+			}
+			final Map<MetricName, Targets> targetsOfCategory = targetsByMetricName.get(category);
+			Targets targets = targetsOfCategory.get(metricName);
+			if (targets == null) {
+				targets = findMatchingChecks(checksOfCategory, metricName.toGraphiteName());
+				targetsOfCategory.put(metricName, targets);
+			}
+			return targets;
+		}
+
+		private Targets findMatchingChecks(List<Check> checksOfCategory, String graphiteName) {
+			List<Check> matchingChecks = null;
+			for (Check check : checksOfCategory) {
+				if (check.getTarget().matcher(graphiteName).matches()) {
+					if (matchingChecks == null) {
+						matchingChecks = new ArrayList<Check>(1);
+					}
+					matchingChecks.add(check);
+				}
+			}
+			if (matchingChecks == null) {
+				return NO_MATCHING_CHECKS;
+			}
+			return new Targets(graphiteName, matchingChecks);
+		}
+	}
+}
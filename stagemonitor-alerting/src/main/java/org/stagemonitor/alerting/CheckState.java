@@ -0,0 +1,159 @@
+package org.stagemonitor.alerting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.stagemonitor.alerting.check.Check;
+import org.stagemonitor.alerting.check.CheckResult;
+
+/**
+ * The state of a {@link Check} in the current instance.
+ * <p/>
+ * Remembers which of the last check runs have failed for each target of the check, so that
+ * {@link Check#getAlertAfterXFailures()} can be evaluated without updating the incident of the check on every run.
+ * The incident only has to be updated if the status of this instance changes.
+ * <p/>
+ * This class is not thread safe. It is only accessed by the thread of the {@link ThresholdMonitoringReporter}.
+ */
+class CheckState {
+
+	private final Map<String, FailureWindow> windowsByTarget = new HashMap<String, FailureWindow>();
+	private final Set<String> evaluatedTargets = new HashSet<String>();
+	private List<CheckResult> results = new ArrayList<CheckResult>();
+	private CheckResult.Status reportedStatus;
+	private CheckResult.Status status;
+	private int failures;
+	/**
+	 * If the state is restored from an incident, the previous runs are assumed to have failed so that the incident
+	 * is not resolved right away.
+	 */
+	private boolean assumePreviousFailures;
+
+	/**
+	 * @param reportedStatus the status of the current instance in the incident of the check
+	 */
+	CheckState(CheckResult.Status reportedStatus) {
+		this.reportedStatus = reportedStatus;
+		this.status = reportedStatus;
+		this.assumePreviousFailures = reportedStatus != CheckResult.Status.OK;
+	}
+
+	void startRun() {
+		results = new ArrayList<CheckResult>();
+		evaluatedTargets.clear();
+	}
+
+	/**
+	 * Adds the results of a target to the current run
+	 *
+	 * @param check   the check
+	 * @param target  the target
+	 * @param results the failed check results of the target
+	 */
+	void addResults(Check check, String target, List<CheckResult> results) {
+		FailureWindow window = windowsByTarget.get(target);
+		if (window == null || window.size() != check.getEffectiveEvaluationWindow()) {
+			window = new FailureWindow(check.getEffectiveEvaluationWindow(), assumePreviousFailures);
+			windowsByTarget.put(target, window);
+		}
+		window.add(!results.isEmpty());
+		evaluatedTargets.add(target);
+		this.results.addAll(results);
+	}
+
+	/**
+	 * Completes the current run and determines the new status
+	 *
+	 * @param check the check
+	 * @return <code>true</code>, if the status of the current instance has changed and the incident has to be updated
+	 */
+	boolean completeRun(Check check) {
+		windowsByTarget.keySet().retainAll(evaluatedTargets);
+		assumePreviousFailures = false;
+		failures = 0;
+		for (FailureWindow window : windowsByTarget.values()) {
+			failures = Math.max(failures, window.getFailures());
+		}
+		if (failures < check.getAlertAfterXFailures()) {
+			status = CheckResult.Status.OK;
+		} else if (!results.isEmpty()) {
+			status = CheckResult.getMostSevereStatus(results);
+		}
+		return status != reportedStatus;
+	}
+
+	/**
+	 * Has to be called after the incident has been updated with the status of the current run
+	 */
+	void onStatusReported() {
+		reportedStatus = status;
+	}
+
+	CheckResult.Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the results that are reported in the incident
+	 *
+	 * @return the failed check results of the current run or an empty list if the status is
+	 * {@link CheckResult.Status#OK}
+	 */
+	List<CheckResult> getResults() {
+		if (status == CheckResult.Status.OK) {
+			return Collections.emptyList();
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the number of failed runs within the evaluation window of the target with the most failures
+	 *
+	 * @return the number of failures
+	 */
+	int getFailures() {
+		return failures;
+	}
+
+	/**
+	 * A ring buffer of the outcomes of the last check runs of a target
+	 */
+	static class FailureWindow {
+		private final boolean[] failed;
+		private int next;
+		private int failures;
+
+		FailureWindow(int size, boolean initiallyFailed) {
+			failed = new boolean[size];
+			if (initiallyFailed) {
+				Arrays.fill(failed, true);
+				failures = size;
+			}
+		}
+
+		void add(boolean failure) {
+			if (failed[next]) {
+				failures--;
+			}
+			failed[next] = failure;
+			if (failure) {
+				failures++;
+			}
+			next = (next + 1) % failed.length;
+		}
+
+		int getFailures() {
+			return failures;
+		}
+
+		int size() {
+			return failed.length;
+		}
+	}
+}
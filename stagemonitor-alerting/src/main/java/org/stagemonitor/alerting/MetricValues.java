@@ -0,0 +1,246 @@
+package org.stagemonitor.alerting;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Sampling;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * A read only view of the values of a {@link Metric} by the names that are used in the JSON representation of the
+ * metric (e.g. <code>mean</code> or <code>m1_rate</code>).
+ * <p/>
+ * The values are read directly from the metric when they are requested. The {@link Snapshot} is only created once and
+ * only if a value of the snapshot is needed.
+ */
+class MetricValues extends AbstractMap<String, Double> {
+
+	private final Metric metric;
+	private final double durationFactor;
+	private final double rateFactor;
+	private Snapshot snapshot;
+
+	/**
+	 * @param metric         the metric
+	 * @param durationFactor the factor the durations of {@link Timer}s are multiplied by
+	 * @param rateFactor     the factor the rates of {@link Metered} metrics are multiplied by
+	 */
+	MetricValues(Metric metric, double durationFactor, double rateFactor) {
+		this.metric = metric;
+		this.durationFactor = metric instanceof Timer ? durationFactor : 1;
+		this.rateFactor = rateFactor;
+	}
+
+	@Override
+	public Double get(Object key) {
+		final Value value = Value.byName.get(key);
+		if (value == null) {
+			return null;
+		}
+		return value.getValue(this);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public Set<Entry<String, Double>> entrySet() {
+		final Map<String, Double> values = new LinkedHashMap<String, Double>();
+		for (Value value : Value.values()) {
+			final Double doubleValue = value.getValue(this);
+			if (doubleValue != null) {
+				values.put(value.name, doubleValue);
+			}
+		}
+		return values.entrySet();
+	}
+
+	private Snapshot getSnapshot() {
+		if (snapshot == null) {
+			snapshot = ((Sampling) metric).getSnapshot();
+		}
+		return snapshot;
+	}
+
+	private Double getSnapshotValue(double value) {
+		return value * durationFactor;
+	}
+
+	private Double getRate(double rate) {
+		return rate * rateFactor;
+	}
+
+	private enum Value {
+		VALUE("value", false) {
+			@Override
+			Double getValue(MetricValues values) {
+				if (!(values.metric instanceof Gauge)) {
+					return null;
+				}
+				return toDouble(((Gauge) values.metric).getValue());
+			}
+		},
+		COUNT("count", false) {
+			@Override
+			Double getValue(MetricValues values) {
+				if (!(values.metric instanceof Counting)) {
+					return null;
+				}
+				return (double) ((Counting) values.metric).getCount();
+			}
+		},
+		MAX("max", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return (double) snapshot.getMax();
+			}
+		},
+		MEAN("mean", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return snapshot.getMean();
+			}
+		},
+		MIN("min", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return (double) snapshot.getMin();
+			}
+		},
+		P50("p50", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return snapshot.getMedian();
+			}
+		},
+		P75("p75", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return snapshot.get75thPercentile();
+			}
+		},
+		P95("p95", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return snapshot.get95thPercentile();
+			}
+		},
+		P98("p98", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return snapshot.get98thPercentile();
+			}
+		},
+		P99("p99", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return snapshot.get99thPercentile();
+			}
+		},
+		P999("p999", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return snapshot.get999thPercentile();
+			}
+		},
+		STDDEV("stddev", true) {
+			@Override
+			Double getSnapshotValue(Snapshot snapshot) {
+				return snapshot.getStdDev();
+			}
+		},
+		M15_RATE("m15_rate", false) {
+			@Override
+			Double getRate(Metered metered) {
+				return metered.getFifteenMinuteRate();
+			}
+		},
+		M1_RATE("m1_rate", false) {
+			@Override
+			Double getRate(Metered metered) {
+				return metered.getOneMinuteRate();
+			}
+		},
+		M5_RATE("m5_rate", false) {
+			@Override
+			Double getRate(Metered metered) {
+				return metered.getFiveMinuteRate();
+			}
+		},
+		MEAN_RATE("mean_rate", false) {
+			@Override
+			Double getRate(Metered metered) {
+				return metered.getMeanRate();
+			}
+		};
+
+		private static final Map<String, Value> byName = new HashMap<String, Value>();
+
+		static {
+			for (Value value : values()) {
+				byName.put(value.name, value);
+			}
+		}
+
+		private final String name;
+		private final boolean fromSnapshot;
+
+		Value(String name, boolean fromSnapshot) {
+			this.name = name;
+			this.fromSnapshot = fromSnapshot;
+		}
+
+		Double getValue(MetricValues values) {
+			if (fromSnapshot && values.metric instanceof Sampling) {
+				final Double snapshotValue = getSnapshotValue(values.getSnapshot());
+				if (snapshotValue != null) {
+					return values.getSnapshotValue(snapshotValue);
+				}
+			}
+			if (values.metric instanceof Metered) {
+				final Double rate = getRate((Metered) values.metric);
+				if (rate != null) {
+					return values.getRate(rate);
+				}
+			}
+			return null;
+		}
+
+		Double getSnapshotValue(Snapshot snapshot) {
+			return null;
+		}
+
+		Double getRate(Metered metered) {
+			return null;
+		}
+
+		/**
+		 * Converts the value of a gauge the same way as {@link com.fasterxml.jackson.databind.JsonNode#asDouble()}
+		 * would convert its JSON representation
+		 */
+		private static Double toDouble(Object value) {
+			if (value instanceof Number) {
+				return ((Number) value).doubleValue();
+			} else if (value instanceof Boolean) {
+				return (Boolean) value ? 1d : 0d;
+			} else if (value instanceof String) {
+				try {
+					return Double.parseDouble(((String) value).trim());
+				} catch (NumberFormatException e) {
+					return 0d;
+				}
+			}
+			return 0d;
+		}
+	}
+}
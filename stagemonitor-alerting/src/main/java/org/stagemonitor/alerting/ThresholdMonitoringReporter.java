@@ -1,35 +1,34 @@
 package org.stagemonitor.alerting;
 
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
-import com.codahale.metrics.MetricFilter;
-import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.Timer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stagemonitor.alerting.alerter.AlertSender;
 import org.stagemonitor.alerting.check.Check;
 import org.stagemonitor.alerting.check.CheckResult;
 import org.stagemonitor.alerting.check.MetricCategory;
+import org.stagemonitor.alerting.incident.CheckResults;
 import org.stagemonitor.alerting.incident.Incident;
 import org.stagemonitor.alerting.incident.IncidentRepository;
 import org.stagemonitor.core.MeasurementSession;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
-import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.core.metrics.metrics2.ScheduledMetrics2Reporter;
 
-public class ThresholdMonitoringReporter extends ScheduledReporter {
+public class ThresholdMonitoringReporter extends ScheduledMetrics2Reporter {
 
 	public static final int OPTIMISTIC_CONCURRENCY_CONTROL_RETRIES = 10;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -38,119 +37,197 @@ public class ThresholdMonitoringReporter extends ScheduledReporter {
 	private final IncidentRepository incidentRepository;
 	private final MeasurementSession measurementSession;
 	private final AlertingPlugin alertingPlugin;
+	private final CheckIndex checkIndex;
+	/**
+	 * The states of the checks by check id. Only accessed by the reporter thread.
+	 */
+	private final Map<String, CheckState> checkStates = new HashMap<String, CheckState>();
 
 	protected ThresholdMonitoringReporter(Metric2Registry registry, AlertingPlugin alertingPlugin,
 										  AlertSender alertSender, IncidentRepository incidentRepository,
 										  MeasurementSession measurementSession) {
-		super(registry.getMetricRegistry(), "threshold-monitoring-reporter", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
-		this.alertingPlugin = alertingPlugin;
-		this.alertSender = alertSender;
-		this.incidentRepository = incidentRepository;
-		this.measurementSession = measurementSession;
+		this(new Builder(registry, alertingPlugin, alertSender, incidentRepository, measurementSession));
 	}
 
-	@Override
-	public void report(SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
-					   SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
-					   SortedMap<String, Timer> timers) {
-		ObjectNode metrics = JsonUtils.getMapper().createObjectNode();
-		metrics.set(MetricCategory.GAUGE.getPath(), JsonUtils.toObjectNode(gauges));
-		metrics.set(MetricCategory.COUNTER.getPath(), JsonUtils.toObjectNode(counters));
-		metrics.set(MetricCategory.HISTOGRAM.getPath(), JsonUtils.toObjectNode(histograms));
-		metrics.set(MetricCategory.METER.getPath(), JsonUtils.toObjectNode(meters));
-		metrics.set(MetricCategory.TIMER.getPath(), JsonUtils.toObjectNode(timers));
-
-		for (Check check : alertingPlugin.getChecks().values()) {
-			if (measurementSession.getApplicationName().equals(check.getApplication()) && check.isActive()) {
-				checkMetrics(metrics, check);
-			}
-		}
+	private ThresholdMonitoringReporter(Builder builder) {
+		super(builder);
+		this.alertingPlugin = builder.alertingPlugin;
+		this.alertSender = builder.alertSender;
+		this.incidentRepository = builder.incidentRepository;
+		this.measurementSession = builder.measurementSession;
+		this.checkIndex = new CheckIndex(builder.getRegistry());
 	}
 
-	private void checkMetrics(JsonNode metrics, Check check) {
-		List<CheckResult> checkResults = new LinkedList<CheckResult>();
+	@Override
+	public void reportMetrics(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters,
+							  Map<MetricName, Histogram> histograms, Map<MetricName, Meter> meters,
+							  Map<MetricName, Timer> timers) {
+		try {
+			final Map<String, Check> checks = alertingPlugin.getChecks();
+			final Map<Check, CheckState> statesOfRun = startRun(checks);
+			if (statesOfRun.isEmpty()) {
+				return;
+			}
 
-		Iterator<Map.Entry<String, JsonNode>> metricsOfCategory = metrics.get(check.getMetricCategory().getPath()).fields();
-		while (metricsOfCategory.hasNext()) {
-			Map.Entry<String, JsonNode> metricTypes = metricsOfCategory.next();
-			if (check.getTarget().matcher(metricTypes.getKey()).matches()) {
-				Map<String, Double> valuesByMetricType = getValuesByMetricType(metricTypes.getValue());
-				checkResults.addAll(check.check(metricTypes.getKey(), valuesByMetricType));
+			checkMetrics(checks, MetricCategory.GAUGE, gauges, statesOfRun);
+			checkMetrics(checks, MetricCategory.COUNTER, counters, statesOfRun);
+			checkMetrics(checks, MetricCategory.HISTOGRAM, histograms, statesOfRun);
+			checkMetrics(checks, MetricCategory.METER, meters, statesOfRun);
+			checkMetrics(checks, MetricCategory.TIMER, timers, statesOfRun);
+
+			final Map<Check, CheckState> changedStates = new LinkedHashMap<Check, CheckState>();
+			for (Map.Entry<Check, CheckState> entry : statesOfRun.entrySet()) {
+				if (entry.getValue().completeRun(entry.getKey())) {
+					changedStates.put(entry.getKey(), entry.getValue());
+				}
 			}
-		}
-		try {
-			addIncident(check, checkResults);
+			persistIncidentsAndSendAlerts(changedStates);
 		} catch (RuntimeException e) {
 			logger.warn(e.getMessage(), e);
 		}
 	}
 
-	private Map<String, Double> getValuesByMetricType(JsonNode metricTypes) {
-		Map<String, Double> metricTypesMap = new HashMap<String, Double>();
-		final Iterator<Map.Entry<String, JsonNode>> fields = metricTypes.fields();
-		while (fields.hasNext()) {
-			Map.Entry<String, JsonNode> stringJsonNodeEntry = fields.next();
-			metricTypesMap.put(stringJsonNodeEntry.getKey(), stringJsonNodeEntry.getValue().asDouble());
+	private Map<Check, CheckState> startRun(Map<String, Check> checks) {
+		final Map<Check, CheckState> statesOfRun = new LinkedHashMap<Check, CheckState>();
+		for (Check check : checks.values()) {
+			if (measurementSession.getApplicationName().equals(check.getApplication()) && check.isActive()) {
+				CheckState checkState = checkStates.get(check.getId());
+				if (checkState == null) {
+					checkState = new CheckState(getReportedStatus(check));
+					checkStates.put(check.getId(), checkState);
+				}
+				checkState.startRun();
+				statesOfRun.put(check, checkState);
+			}
+		}
+		final Set<String> checkIds = new HashSet<String>();
+		for (Check check : statesOfRun.keySet()) {
+			checkIds.add(check.getId());
 		}
-		return metricTypesMap;
+		checkStates.keySet().retainAll(checkIds);
+		return statesOfRun;
 	}
 
-	private void addIncident(Check check, List<CheckResult> results) {
-		Incident incident = getAndPersistIncident(check, results);
+	/**
+	 * Returns the status of the current instance in the incident of the check, so that the incident can be resolved
+	 * after a restart
+	 */
+	private CheckResult.Status getReportedStatus(Check check) {
+		final Incident incident = incidentRepository.getIncidentByCheckId(check.getId());
 		if (incident != null) {
-			alertSender.sendAlerts(check, incident);
+			for (CheckResults checkResults : incident.getCheckResults()) {
+				if (measurementSession.getId().equals(checkResults.getMeasurementSession().getId())) {
+					return checkResults.getStatus();
+				}
+			}
 		}
+		return CheckResult.Status.OK;
 	}
 
-	private Incident getAndPersistIncident(Check check, List<CheckResult> results) {
-		boolean sucessfullyPersisted = false;
-		Incident incident = null;
-		for (int i = 0; i < OPTIMISTIC_CONCURRENCY_CONTROL_RETRIES && !sucessfullyPersisted; i++) {
-			incident = getOrCreateIncident(check, results);
-			sucessfullyPersisted = trySaveOrDeleteIncident(check, incident);
+	/**
+	 * Only evaluates the metrics which are targeted by at least one check. The values of a metric are read directly
+	 * from the metric and only if they are needed.
+	 */
+	private void checkMetrics(Map<String, Check> checks, MetricCategory category, Map<MetricName, ? extends Metric> metrics,
+							  Map<Check, CheckState> statesOfRun) {
+		for (Map.Entry<MetricName, ? extends Metric> metric : metrics.entrySet()) {
+			MetricValues values = null;
+			final CheckIndex.Targets targets = checkIndex.getMatchingChecks(checks, category, metric.getKey());
+			for (Check check : targets.checks) {
+				final CheckState checkState = statesOfRun.get(check);
+				if (checkState != null) {
+					if (values == null) {
+						values = new MetricValues(metric.getValue(), convertDuration(1), convertRate(1));
+					}
+					checkState.addResults(check, targets.graphiteName, check.check(targets.graphiteName, values));
+				}
+			}
 		}
-		if (!sucessfullyPersisted) {
+	}
+
+	/**
+	 * Persists the incidents of all checks whose status has changed with a single call to the
+	 * {@link IncidentRepository} and sends the alerts for the persisted incidents. Incidents that could not be
+	 * persisted, for example because of a optimistic lock failure, are recreated based on the current incident and
+	 * persisted again.
+	 */
+	private void persistIncidentsAndSendAlerts(Map<Check, CheckState> changedStates) {
+		Map<Check, CheckState> pending = changedStates;
+		Map<Check, Incident> incidents = Collections.emptyMap();
+		for (int i = 0; i < OPTIMISTIC_CONCURRENCY_CONTROL_RETRIES && !pending.isEmpty(); i++) {
+			incidents = new LinkedHashMap<Check, Incident>();
+			for (Map.Entry<Check, CheckState> entry : pending.entrySet()) {
+				final Incident incident = getOrCreateIncident(entry.getKey(), entry.getValue());
+				if (incident != null) {
+					incidents.put(entry.getKey(), incident);
+				} else {
+					entry.getValue().onStatusReported();
+				}
+			}
+			final Set<Incident> conflicts = Collections.newSetFromMap(new IdentityHashMap<Incident, Boolean>());
+			conflicts.addAll(incidentRepository.saveOrDeleteIncidents(incidents.values()));
+
+			final Map<Check, CheckState> conflictingChecks = new LinkedHashMap<Check, CheckState>();
+			for (Map.Entry<Check, Incident> entry : incidents.entrySet()) {
+				if (conflicts.contains(entry.getValue())) {
+					logger.warn("Failed to save or delete incident for check group {}.", entry.getKey().getId());
+					conflictingChecks.put(entry.getKey(), pending.get(entry.getKey()));
+				} else {
+					pending.get(entry.getKey()).onStatusReported();
+					sendAlerts(entry.getKey(), entry.getValue());
+				}
+			}
+			pending = conflictingChecks;
+		}
+		for (Check check : pending.keySet()) {
+			final Incident incident = incidents.get(check);
 			logger.error("Failed to save incident {} after {} retries.", incident, OPTIMISTIC_CONCURRENCY_CONTROL_RETRIES);
+			sendAlerts(check, incident);
 		}
-		return incident;
 	}
 
-	private Incident getOrCreateIncident(Check check, List<CheckResult> results) {
+	private void sendAlerts(Check check, Incident incident) {
+		try {
+			alertSender.sendAlerts(check, incident);
+		} catch (RuntimeException e) {
+			logger.warn(e.getMessage(), e);
+		}
+	}
+
+	private Incident getOrCreateIncident(Check check, CheckState checkState) {
 		final Incident currentIncident;
 		Incident previousIncident = incidentRepository.getIncidentByCheckId(check.getId());
 		if (previousIncident == null) {
-			if (CheckResult.getMostSevereStatus(results) == CheckResult.Status.OK) {
+			if (checkState.getStatus() == CheckResult.Status.OK) {
 				return null;
 			}
-			currentIncident = new Incident(check, measurementSession, results);
+			currentIncident = new Incident(check, measurementSession, checkState.getResults(), checkState.getFailures());
+			currentIncident.setOldStatus(CheckResult.Status.OK);
 		} else {
-			currentIncident = new Incident(previousIncident, measurementSession, results);
+			currentIncident = new Incident(previousIncident, measurementSession, checkState.getResults(), checkState.getFailures());
 		}
 
 		return currentIncident;
 	}
 
-	private boolean trySaveOrDeleteIncident(Check check, Incident incident) {
-		if (incident == null) {
-			return true;
+	private static class Builder extends ScheduledMetrics2Reporter.Builder<ThresholdMonitoringReporter, Builder> {
+		private final AlertingPlugin alertingPlugin;
+		private final AlertSender alertSender;
+		private final IncidentRepository incidentRepository;
+		private final MeasurementSession measurementSession;
+
+		private Builder(Metric2Registry registry, AlertingPlugin alertingPlugin, AlertSender alertSender,
+						IncidentRepository incidentRepository, MeasurementSession measurementSession) {
+			super(registry, "threshold-monitoring-reporter");
+			this.alertingPlugin = alertingPlugin;
+			this.alertSender = alertSender;
+			this.incidentRepository = incidentRepository;
+			this.measurementSession = measurementSession;
 		}
-		if (incident.getNewStatus() == CheckResult.Status.OK) {
-			if (!incidentRepository.deleteIncident(incident)) {
-				logger.warn("Optimistic lock failure when deleting incident for check group {}.", check.getId());
-				return false;
-			}
-		} else if (incident.getOldStatus() == null) {
-			incident.setOldStatus(CheckResult.Status.OK);
-			if (!incidentRepository.createIncident(incident)) {
-				logger.warn("Error while creating incident for check group {}. " +
-						"A incident for the same check group already exists.", check.getId());
-				return false;
-			}
-		} else if (!incidentRepository.updateIncident(incident)) {
-			logger.warn("Optimistic lock failure when updating incident for check group {}.", check.getId());
-			return false;
+
+		@Override
+		public ThresholdMonitoringReporter build() {
+			return new ThresholdMonitoringReporter(this);
 		}
-		return true;
 	}
-
 }
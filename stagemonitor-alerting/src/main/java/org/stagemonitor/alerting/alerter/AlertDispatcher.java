@@ -0,0 +1,271 @@
+package org.stagemonitor.alerting.alerter;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stagemonitor.alerting.incident.Incident;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.core.util.ExecutorUtils;
+
+/**
+ * Delivers the alerts of a single {@link Alerter} asynchronously, so that a slow alerter neither delays the threshold
+ * checks nor the other alerters.
+ * <p/>
+ * Each alerter has its own worker thread and a bounded number of pending alerts. The pending alerts of a check and
+ * subscription are delivered in the order they have been dispatched. If the last pending alert of a check and
+ * subscription describes the same status transition as a new alert, it is replaced by the new alert, as only the
+ * latest state of that transition is of interest. Alerts for different transitions (for example OK to ERROR followed
+ * by ERROR to OK) are never coalesced. Failed deliveries are retried with an exponential backoff until the maximum
+ * number of retries or the delivery timeout is reached.
+ * <p/>
+ * Each delivery attempt is executed by a separate thread and is cancelled if it does not complete within the attempt
+ * timeout, so that an alerter which hangs (for example because of a missing socket timeout) does not block the
+ * delivery of all further alerts. A timed out attempt counts as a failed attempt.
+ */
+class AlertDispatcher {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Alerter alerter;
+	private final int capacity;
+	private final int maxRetries;
+	private final long initialBackoffMillis;
+	private final long timeoutMillis;
+	private final long attemptTimeoutMillis;
+	/**
+	 * The pending alerts per check and subscription. The first alert of each queue is the one that is currently
+	 * being delivered. Guarded by <code>this</code>.
+	 */
+	private final Map<String, LinkedList<PendingAlert>> pendingAlerts = new HashMap<String, LinkedList<PendingAlert>>();
+	private int pendingAlertCount;
+	/**
+	 * Guarded by <code>this</code>
+	 */
+	private boolean closed;
+	private final ScheduledThreadPoolExecutor executor;
+	/**
+	 * Executes the delivery attempts. A thread that hangs in a cancelled attempt must not delay the next attempt, so a
+	 * new thread is created if all threads are busy.
+	 */
+	private final ExecutorService attemptExecutor;
+	private final Metric2Registry metricRegistry;
+	private final MetricName queueSizeMetricName;
+	private final Timer deliveryTimer;
+	private final Meter failedDeliveries;
+	private final Meter droppedAlerts;
+
+	/**
+	 * @param alerter              the alerter that delivers the alerts
+	 * @param capacity             the maximum number of pending alerts
+	 * @param maxRetries           the maximum number of retries after a failed delivery
+	 * @param initialBackoffMillis the delay before the first retry, which is doubled after each retry
+	 * @param timeoutMillis        the time after which an alert is discarded if it could not be delivered
+	 * @param attemptTimeoutMillis the time after which a single delivery attempt is cancelled
+	 * @param metricRegistry       the registry for the queue size and delivery metrics
+	 */
+	AlertDispatcher(Alerter alerter, int capacity, int maxRetries, long initialBackoffMillis, long timeoutMillis,
+					long attemptTimeoutMillis, Metric2Registry metricRegistry) {
+		this.alerter = alerter;
+		this.capacity = capacity;
+		this.maxRetries = maxRetries;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.timeoutMillis = timeoutMillis;
+		this.attemptTimeoutMillis = attemptTimeoutMillis;
+		this.metricRegistry = metricRegistry;
+		executor = new ScheduledThreadPoolExecutor(1, new ExecutorUtils.NamedThreadFactory("stagemonitor-alerter-" + alerter.getAlerterType()));
+		attemptExecutor = Executors.newCachedThreadPool(new ExecutorUtils.NamedThreadFactory("stagemonitor-alerter-" + alerter.getAlerterType() + "-attempt"));
+		queueSizeMetricName = name("alert_queue_size").tag("alerter", alerter.getAlerterType()).build();
+		metricRegistry.registerNewMetrics(queueSizeMetricName, new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return getPendingAlertCount();
+			}
+		});
+		deliveryTimer = metricRegistry.timer(name("alert_delivery").tag("alerter", alerter.getAlerterType()).build());
+		failedDeliveries = metricRegistry.meter(name("alert_delivery_failed").tag("alerter", alerter.getAlerterType()).build());
+		droppedAlerts = metricRegistry.meter(name("alert_dropped").tag("alerter", alerter.getAlerterType()).build());
+	}
+
+	/**
+	 * Schedules the delivery of an alert
+	 *
+	 * @param alertArguments the alert
+	 */
+	synchronized void dispatch(Alerter.AlertArguments alertArguments) {
+		if (closed) {
+			logger.debug("Not delivering alert for check {} because the alerter '{}' has been closed.",
+					alertArguments.getIncident().getCheckId(), alerter.getAlerterType());
+			return;
+		}
+		final String key = getKey(alertArguments);
+		final PendingAlert pendingAlert = new PendingAlert(alertArguments);
+		LinkedList<PendingAlert> queue = pendingAlerts.get(key);
+		if (queue != null && queue.getLast().isSameTransition(pendingAlert)) {
+			// if the replaced alert is currently being delivered, the new alert is delivered afterwards
+			queue.set(queue.size() - 1, pendingAlert);
+			return;
+		}
+		if (pendingAlertCount >= capacity) {
+			droppedAlerts.mark();
+			logger.warn("Dropping alert for check {} because the queue of the alerter '{}' is full.",
+					alertArguments.getIncident().getCheckId(), alerter.getAlerterType());
+			return;
+		}
+		pendingAlertCount++;
+		if (queue == null) {
+			queue = new LinkedList<PendingAlert>();
+			queue.add(pendingAlert);
+			pendingAlerts.put(key, queue);
+			executor.execute(new Delivery(key));
+		} else {
+			// delivered as soon as the alerts that are ahead of it are delivered
+			queue.add(pendingAlert);
+		}
+	}
+
+	/**
+	 * Stops the delivery immediately. Pending alerts and scheduled retries are discarded.
+	 */
+	synchronized void close() {
+		closed = true;
+		executor.shutdownNow();
+		attemptExecutor.shutdownNow();
+		metricRegistry.remove(queueSizeMetricName);
+	}
+
+	private synchronized int getPendingAlertCount() {
+		return pendingAlertCount;
+	}
+
+	private synchronized PendingAlert getCurrentAlert(String key) {
+		final LinkedList<PendingAlert> queue = pendingAlerts.get(key);
+		return queue != null ? queue.getFirst() : null;
+	}
+
+	/**
+	 * Removes the alert that has been delivered or discarded and starts the delivery of the next alert of the key.
+	 * If the alert has been replaced in the meantime, the replacement is delivered.
+	 */
+	private synchronized void completed(String key, PendingAlert pendingAlert) {
+		if (closed) {
+			return;
+		}
+		final LinkedList<PendingAlert> queue = pendingAlerts.get(key);
+		if (queue.getFirst() == pendingAlert) {
+			queue.removeFirst();
+			pendingAlertCount--;
+		}
+		if (queue.isEmpty()) {
+			pendingAlerts.remove(key);
+		} else {
+			executor.execute(new Delivery(key));
+		}
+	}
+
+	private synchronized void failed(String key, PendingAlert pendingAlert, Exception e) {
+		if (closed) {
+			return;
+		}
+		if (getCurrentAlert(key) != pendingAlert) {
+			// the alert has been replaced, the replacement starts with a fresh retry counter
+			executor.execute(new Delivery(key));
+			return;
+		}
+		final long backoff = initialBackoffMillis << pendingAlert.retries;
+		if (pendingAlert.retries < maxRetries && System.currentTimeMillis() + backoff - pendingAlert.createdAt < timeoutMillis) {
+			logger.warn("Failed to deliver alert with alerter '{}', retrying in {} ms: {}",
+					alerter.getAlerterType(), backoff, e.getMessage());
+			pendingAlert.retries++;
+			executor.schedule(new Delivery(key), backoff, TimeUnit.MILLISECONDS);
+		} else {
+			logger.error(e.getMessage(), e);
+			completed(key, pendingAlert);
+		}
+	}
+
+	private String getKey(Alerter.AlertArguments alertArguments) {
+		final Subscription subscription = alertArguments.getSubscription();
+		return alertArguments.getIncident().getCheckId() + (subscription != null ? "|" + subscription.getId() : "");
+	}
+
+	private static class PendingAlert {
+		private final Alerter.AlertArguments alertArguments;
+		private final long createdAt = System.currentTimeMillis();
+		private int retries;
+
+		private PendingAlert(Alerter.AlertArguments alertArguments) {
+			this.alertArguments = alertArguments;
+		}
+
+		private boolean isSameTransition(PendingAlert other) {
+			final Incident incident = alertArguments.getIncident();
+			final Incident otherIncident = other.alertArguments.getIncident();
+			return incident.getOldStatus() == otherIncident.getOldStatus()
+					&& incident.getNewStatus() == otherIncident.getNewStatus();
+		}
+	}
+
+	private class Delivery implements Runnable {
+		private final String key;
+
+		private Delivery(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public void run() {
+			final PendingAlert pendingAlert = getCurrentAlert(key);
+			if (pendingAlert == null) {
+				return;
+			}
+			final Timer.Context time = deliveryTimer.time();
+			Future<?> attempt = null;
+			try {
+				attempt = attemptExecutor.submit(new Runnable() {
+					@Override
+					public void run() {
+						alerter.alert(pendingAlert.alertArguments);
+					}
+				});
+				attempt.get(attemptTimeoutMillis, TimeUnit.MILLISECONDS);
+				time.stop();
+			} catch (InterruptedException e) {
+				// the dispatcher has been closed
+				attempt.cancel(true);
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RejectedExecutionException e) {
+				// the dispatcher has been closed
+				return;
+			} catch (TimeoutException e) {
+				attempt.cancel(true);
+				failedDeliveries.mark();
+				failed(key, pendingAlert, new TimeoutException("The delivery of the alert with the alerter '" +
+						alerter.getAlerterType() + "' did not complete within " + attemptTimeoutMillis + " ms"));
+				return;
+			} catch (ExecutionException e) {
+				failedDeliveries.mark();
+				failed(key, pendingAlert, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+				return;
+			}
+			completed(key, pendingAlert);
+		}
+	}
+}
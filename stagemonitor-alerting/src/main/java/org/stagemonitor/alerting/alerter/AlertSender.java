@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -18,22 +19,31 @@ import org.stagemonitor.alerting.check.MetricCategory;
 import org.stagemonitor.alerting.check.Threshold;
 import org.stagemonitor.alerting.incident.Incident;
 import org.stagemonitor.core.MeasurementSession;
+import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.configuration.Configuration;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.core.util.HttpClient;
 
 public class AlertSender {
 
+	private static final long INITIAL_RETRY_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	private final AlertingPlugin alertingPlugin;
 	private final Map<String, Alerter> alerterByType;
 	private final List<Alerter> defaultAlerters;
+	private final Map<Alerter, AlertDispatcher> dispatchers = new HashMap<Alerter, AlertDispatcher>();
 
-	public AlertSender(Configuration configuration) {
-		this(configuration, ServiceLoader.load(Alerter.class));
+	public AlertSender(Configuration configuration, Metric2Registry metricRegistry) {
+		this(configuration, ServiceLoader.load(Alerter.class), metricRegistry);
 	}
 
 	public AlertSender(Configuration configuration, Iterable<Alerter> alerterIterable) {
+		this(configuration, alerterIterable, Stagemonitor.getMetric2Registry());
+	}
+
+	public AlertSender(Configuration configuration, Iterable<Alerter> alerterIterable, Metric2Registry metricRegistry) {
 		this.alertingPlugin = configuration.getConfig(AlertingPlugin.class);
 		Map<String, Alerter> alerters = new HashMap<String, Alerter>();
 		for (Alerter alerter : alerterIterable) {
@@ -42,6 +52,16 @@ public class AlertSender {
 		}
 		alerterByType = Collections.unmodifiableMap(alerters);
 		defaultAlerters = Arrays.asList(new LogAlerter(), new ElasticsearchAlerter(configuration, new HttpClient()));
+		if (alertingPlugin.getAlertQueueCapacity() > 0) {
+			final List<Alerter> allAlerters = new ArrayList<Alerter>(defaultAlerters);
+			allAlerters.addAll(alerterByType.values());
+			for (Alerter alerter : allAlerters) {
+				dispatchers.put(alerter, new AlertDispatcher(alerter, alertingPlugin.getAlertQueueCapacity(),
+						alertingPlugin.getAlertRetries(), INITIAL_RETRY_BACKOFF_MILLIS,
+						TimeUnit.SECONDS.toMillis(alertingPlugin.getAlertDeliveryTimeout()),
+						TimeUnit.SECONDS.toMillis(alertingPlugin.getAlertDeliveryAttemptTimeout()), metricRegistry));
+			}
+		}
 	}
 
 	/**
@@ -70,26 +90,40 @@ public class AlertSender {
 		Incident testIncident = new Incident(check, new MeasurementSession("testApp", "testHost", "testInstance"),
 				Arrays.asList(new CheckResult("test", 10, status)));
 
-		tryAlert(testIncident, subscription, alerterByType.get(subscription.getAlerterType()));
+		tryAlert(testIncident, subscription, alerterByType.get(subscription.getAlerterType()), false);
 		return testIncident;
 	}
 
+	/**
+	 * Sends the alerts of the incident to the default alerters and the alerters of all matching subscriptions.
+	 * <p/>
+	 * Unless {@link AlertingPlugin#getAlertQueueCapacity()} is <code>0</code>, the alerts are only queued and
+	 * delivered asynchronously.
+	 *
+	 * @param check    the check of the incident
+	 * @param incident the incident
+	 */
 	public void sendAlerts(Check check, Incident incident) {
 		if (alertingPlugin.isMuteAlerts() || !incident.isAlertIncident(check)) {
 			return;
 		}
 		for (Alerter alerter : defaultAlerters) {
-			tryAlert(incident, null, alerter);
+			tryAlert(incident, null, alerter, true);
 		}
 		for (Subscription subscription : alertingPlugin.getSubscriptionsByIds().values()) {
 			if (subscription.isAlertOn(incident.getNewStatus())) {
-				tryAlert(incident, subscription, alerterByType.get(subscription.getAlerterType()));
+				tryAlert(incident, subscription, alerterByType.get(subscription.getAlerterType()), true);
 			}
 		}
 	}
 
-	private void tryAlert(Incident incident, Subscription subscription, Alerter alerter) {
+	private void tryAlert(Incident incident, Subscription subscription, Alerter alerter, boolean async) {
 		if (alerter != null && alerter.isAvailable()) {
+			final AlertDispatcher dispatcher = dispatchers.get(alerter);
+			if (async && dispatcher != null) {
+				dispatcher.dispatch(new Alerter.AlertArguments(incident, subscription));
+				return;
+			}
 			try {
 				alerter.alert(new Alerter.AlertArguments(incident, subscription));
 			} catch (Exception e) {
@@ -104,4 +138,13 @@ public class AlertSender {
 		}
 	}
 
+	/**
+	 * Stops the threads that deliver the asynchronous alerts
+	 */
+	public void close() {
+		for (AlertDispatcher dispatcher : dispatchers.values()) {
+			dispatcher.close();
+		}
+	}
+
 }
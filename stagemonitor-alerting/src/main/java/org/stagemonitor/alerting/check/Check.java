@@ -29,6 +29,7 @@ public class Check {
 	private MetricCategory metricCategory;
 	private Pattern target;
 	private int alertAfterXFailures = 1;
+	private int evaluationWindow = 0;
 	private Map<CheckResult.Status, List<Threshold>> thresholds = new LinkedHashMap<CheckResult.Status, List<Threshold>>(){{
 		put(CheckResult.Status.CRITICAL, new LinkedList<Threshold>());
 		put(CheckResult.Status.ERROR, new LinkedList<Threshold>());
@@ -106,6 +107,31 @@ public class Check {
 		this.alertAfterXFailures = alertAfterXFailures;
 	}
 
+	/**
+	 * The number of the last check runs in which {@link #getAlertAfterXFailures()} failures have to occur before an
+	 * incident is raised (e.g. 3 failures within the last 5 runs).
+	 * <p/>
+	 * A value less than {@link #getAlertAfterXFailures()} means that the failures have to be consecutive.
+	 *
+	 * @return the size of the evaluation window
+	 */
+	public int getEvaluationWindow() {
+		return evaluationWindow;
+	}
+
+	public void setEvaluationWindow(int evaluationWindow) {
+		this.evaluationWindow = evaluationWindow;
+	}
+
+	/**
+	 * Returns the number of the last check runs that are considered to determine whether the check fails
+	 *
+	 * @return the effective size of the evaluation window
+	 */
+	public int getEffectiveEvaluationWindow() {
+		return Math.max(alertAfterXFailures, evaluationWindow);
+	}
+
 	public String getApplication() {
 		return application;
 	}
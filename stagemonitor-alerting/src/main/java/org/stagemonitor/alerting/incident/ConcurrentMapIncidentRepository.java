@@ -1,9 +1,13 @@
 package org.stagemonitor.alerting.incident;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.stagemonitor.alerting.check.CheckResult;
+
 /**
  * A simple implementation of {@link IncidentRepository} that uses a map as the storage.
  * <p/>
@@ -53,4 +57,23 @@ public class ConcurrentMapIncidentRepository implements IncidentRepository {
 				incident);
 	}
 
+	@Override
+	public Collection<Incident> saveOrDeleteIncidents(Collection<Incident> incidents) {
+		final List<Incident> conflicts = new ArrayList<Incident>();
+		for (Incident incident : incidents) {
+			final boolean persisted;
+			if (incident.getNewStatus() == CheckResult.Status.OK) {
+				persisted = deleteIncident(incident);
+			} else if (incident.getVersion() == 0) {
+				persisted = createIncident(incident);
+			} else {
+				persisted = updateIncident(incident);
+			}
+			if (!persisted) {
+				conflicts.add(incident);
+			}
+		}
+		return conflicts;
+	}
+
 }
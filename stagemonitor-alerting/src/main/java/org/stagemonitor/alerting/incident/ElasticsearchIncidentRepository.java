@@ -1,48 +1,224 @@
 package org.stagemonitor.alerting.incident;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stagemonitor.alerting.check.CheckResult;
 import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.util.JsonUtils;
 
+/**
+ * Stores the incidents in Elasticsearch.
+ * <p/>
+ * The incidents are cached locally so that the incident of a check does not have to be fetched on every check run.
+ * The cache is written through and reloaded with a single <code>_search</code> request if it is older than the
+ * maximum cache age or if a version conflict indicates that another instance has changed an incident in the
+ * meantime. Changes are sent with the <code>_bulk</code> API and are refreshed immediately, so that the
+ * <code>_search</code> request always sees the latest version of all incidents.
+ * <p/>
+ * The cache is only updated for the incidents elasticsearch has acknowledged. As long as no elasticsearch url is
+ * configured, the incidents are only kept in the cache.
+ */
 public class ElasticsearchIncidentRepository implements IncidentRepository {
 
 	public static final String BASE_URL = "/stagemonitor/incidents/";
+	private static final String INDEX = "stagemonitor";
+	private static final String TYPE = "incidents";
+	private static final int MAX_INCIDENTS = 10000;
+	/**
+	 * Should be less than elasticsearch's <code>index.gc_deletes</code> setting (60 seconds by default) so that an
+	 * update based on a cached incident that has been deleted in the meantime results in a version conflict
+	 */
+	private static final long DEFAULT_MAX_CACHE_AGE = TimeUnit.SECONDS.toMillis(30);
+	private static final int NOT_FOUND = 404;
+	private static final int CONFLICT = 409;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
 	private final ElasticsearchClient elasticsearchClient;
+	private final long maxCacheAgeMillis;
+	private final ConcurrentMap<String, Incident> incidentsByCheckId = new ConcurrentHashMap<String, Incident>();
+	private volatile long lastRefresh = 0;
 
 	public ElasticsearchIncidentRepository(ElasticsearchClient elasticsearchClient) {
+		this(elasticsearchClient, DEFAULT_MAX_CACHE_AGE);
+	}
+
+	public ElasticsearchIncidentRepository(ElasticsearchClient elasticsearchClient, long maxCacheAgeMillis) {
 		this.elasticsearchClient = elasticsearchClient;
+		this.maxCacheAgeMillis = maxCacheAgeMillis;
 	}
 
 	@Override
 	public Collection<Incident> getAllIncidents() {
-		return elasticsearchClient.getAll(BASE_URL, 100, Incident.class);
+		refreshIfOutdated();
+		return Collections.unmodifiableCollection(incidentsByCheckId.values());
 	}
 
 	@Override
 	public Incident getIncidentByCheckId(String checkId) {
-		return elasticsearchClient.getObject(BASE_URL + checkId, Incident.class);
+		refreshIfOutdated();
+		return incidentsByCheckId.get(checkId);
 	}
 
 	@Override
 	public boolean deleteIncident(Incident incident) {
-		return hasNoConflict(elasticsearchClient.sendRequest("DELETE", BASE_URL + incident.getCheckId() + getVersionParameter(incident)));
+		return persist(Collections.singletonList(new Operation("delete", incident))).isEmpty();
 	}
 
 	@Override
 	public boolean createIncident(Incident incident) {
-		return hasNoConflict(elasticsearchClient.sendAsJson("PUT", BASE_URL + incident.getCheckId() + "/_create" + getVersionParameter(incident), incident));
+		return persist(Collections.singletonList(new Operation("create", incident))).isEmpty();
 	}
 
 	@Override
 	public boolean updateIncident(Incident incident) {
-		return hasNoConflict(elasticsearchClient.sendAsJson("PUT", BASE_URL + incident.getCheckId() + getVersionParameter(incident), incident));
+		return persist(Collections.singletonList(new Operation("index", incident))).isEmpty();
+	}
+
+	@Override
+	public Collection<Incident> saveOrDeleteIncidents(Collection<Incident> incidents) {
+		final List<Operation> operations = new ArrayList<Operation>(incidents.size());
+		for (Incident incident : incidents) {
+			if (incident.getNewStatus() == CheckResult.Status.OK) {
+				operations.add(new Operation("delete", incident));
+			} else if (incident.getVersion() == 0) {
+				operations.add(new Operation("create", incident));
+			} else {
+				operations.add(new Operation("index", incident));
+			}
+		}
+		return persist(operations);
+	}
+
+	private Collection<Incident> persist(List<Operation> operations) {
+		if (operations.isEmpty()) {
+			return Collections.emptyList();
+		}
+		if (!elasticsearchClient.isElasticsearchConfigured()) {
+			logger.debug("No elasticsearch url is configured, the incidents are only kept in memory");
+			for (Operation operation : operations) {
+				updateCache(operation);
+			}
+			return Collections.emptyList();
+		}
+		final List<String> bulkRequest = new ArrayList<String>(operations.size() * 2);
+		for (Operation operation : operations) {
+			bulkRequest.add(operation.getBulkHeader());
+			if (!operation.isDelete()) {
+				bulkRequest.add(JsonUtils.toJson(operation.incident));
+			}
+		}
+		final JsonNode bulkResponse = elasticsearchClient.sendBulk("/_bulk?refresh=true", bulkRequest);
+		if (bulkResponse == null) {
+			logger.warn("Failed to persist {} incident(s) in elasticsearch", operations.size());
+			final List<Incident> failed = new ArrayList<Incident>(operations.size());
+			for (Operation operation : operations) {
+				failed.add(operation.incident);
+			}
+			return failed;
+		}
+
+		final List<Incident> failed = new ArrayList<Incident>();
+		boolean conflict = false;
+		final Iterator<Operation> operationIterator = operations.iterator();
+		for (JsonNode item : bulkResponse.get("items")) {
+			final Operation operation = operationIterator.next();
+			final JsonNode result = item.elements().next();
+			final int status = result.get("status").asInt();
+			if (isSuccessful(operation, status)) {
+				updateCache(operation);
+			} else {
+				if (status == CONFLICT) {
+					conflict = true;
+				} else {
+					logger.warn("Failed to {} incident of check {}: {} {}", operation.action,
+							operation.incident.getCheckId(), status, result.get("error"));
+				}
+				failed.add(operation.incident);
+			}
+		}
+		if (conflict) {
+			refresh();
+		}
+		return failed;
 	}
 
-	private String getVersionParameter(Incident incident) {
-		return "?version=" + incident.getVersion() + "&version_type=external";
+	private boolean isSuccessful(Operation operation, int status) {
+		// an incident that has already been deleted by another instance does not have to be deleted again
+		return status < 300 || (operation.isDelete() && status == NOT_FOUND);
 	}
 
-	private boolean hasNoConflict(int statusCode) {
-		return statusCode != 409;
+	private void updateCache(Operation operation) {
+		if (operation.isDelete()) {
+			incidentsByCheckId.remove(operation.incident.getCheckId());
+		} else {
+			incidentsByCheckId.put(operation.incident.getCheckId(), operation.incident);
+		}
+	}
+
+	private void refreshIfOutdated() {
+		if (elasticsearchClient.isElasticsearchConfigured() && System.currentTimeMillis() - lastRefresh > maxCacheAgeMillis) {
+			refresh();
+		}
+	}
+
+	/**
+	 * Reloads all incidents with a single <code>_search</code> request
+	 */
+	private synchronized void refresh() {
+		final Map<String, Incident> incidents = new HashMap<String, Incident>();
+		try {
+			final JsonNode hits = elasticsearchClient.getJson(BASE_URL + "_search?size=" + MAX_INCIDENTS).get("hits").get("hits");
+			final ObjectReader reader = JsonUtils.getMapper().readerFor(Incident.class);
+			for (JsonNode hit : hits) {
+				final Incident incident = reader.readValue(hit.get("_source"));
+				incidents.put(incident.getCheckId(), incident);
+			}
+		} catch (FileNotFoundException e) {
+			// the index does not exist yet
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		incidentsByCheckId.keySet().retainAll(incidents.keySet());
+		incidentsByCheckId.putAll(incidents);
+		lastRefresh = System.currentTimeMillis();
+	}
+
+	private static class Operation {
+		private final String action;
+		private final Incident incident;
+
+		private Operation(String action, Incident incident) {
+			this.action = action;
+			this.incident = incident;
+		}
+
+		private boolean isDelete() {
+			return "delete".equals(action);
+		}
+
+		private String getBulkHeader() {
+			return "{\"" + action + "\":{" +
+					"\"_index\":\"" + INDEX + "\"," +
+					"\"_type\":\"" + TYPE + "\"," +
+					"\"_id\":" + JsonUtils.toJson(incident.getCheckId()) + "," +
+					"\"_version\":" + incident.getVersion() + "," +
+					"\"_version_type\":\"external\"}}";
+		}
 	}
 }
@@ -64,6 +64,18 @@ public class Incident {
 		setCheckResults(measurementSession, checkResults, 0);
 	}
 
+	/**
+	 * @param check              the check
+	 * @param measurementSession the measurement session that produced the check results
+	 * @param checkResults       the failed check results
+	 * @param failures           the number of failures of the measurement session within the evaluation window of the
+	 *                           check (see {@link Check#getEvaluationWindow()})
+	 */
+	public Incident(Check check, MeasurementSession measurementSession, List<CheckResult> checkResults, int failures) {
+		this(check, measurementSession, checkResults);
+		setFailures(measurementSession, failures, 0);
+	}
+
 	public Incident(Incident previousIncident, MeasurementSession measurementSession, List<CheckResult> checkResults) {
 		version = previousIncident.version + 1;
 		oldStatus = previousIncident.newStatus;
@@ -74,6 +86,26 @@ public class Incident {
 		setCheckResults(measurementSession, checkResults, previousIncident.consecutiveFailures);
 	}
 
+	/**
+	 * @param previousIncident   the previous incident
+	 * @param measurementSession the measurement session that produced the check results
+	 * @param checkResults       the failed check results
+	 * @param failures           the number of failures of the measurement session within the evaluation window of the
+	 *                           check (see {@link Check#getEvaluationWindow()})
+	 */
+	public Incident(Incident previousIncident, MeasurementSession measurementSession, List<CheckResult> checkResults, int failures) {
+		this(previousIncident, measurementSession, checkResults);
+		setFailures(measurementSession, failures, previousIncident.consecutiveFailures);
+	}
+
+	private void setFailures(MeasurementSession measurementSession, int failures, int previousConsecutiveFailures) {
+		final CheckResults resultsOfSession = checkResultsByMeasurementSessionId.get(measurementSession.getId());
+		if (resultsOfSession != null) {
+			resultsOfSession.setConsecutiveFailures(failures);
+			consecutiveFailures = Math.max(previousConsecutiveFailures, getConsecutiveFailuresFromCheckResults());
+		}
+	}
+
 	private void setCheckResults(MeasurementSession measurementSession, List<CheckResult> checkResults, int previousConsecutiveFailures) {
 		if (checkResults.isEmpty()) {
 			checkResultsByMeasurementSessionId.remove(measurementSession.getId());
@@ -237,24 +269,22 @@ public class Incident {
 		return incident;
 	}
 
+	/**
+	 * An alert is sent if the status of the incident changes, including when it is back to
+	 * {@link CheckResult.Status#OK}. Since incidents are only raised after {@link Check#getAlertAfterXFailures()}
+	 * failures, the alert of an incident that does not have enough failures is suppressed.
+	 *
+	 * @param check the check of the incident
+	 * @return <code>true</code>, if alerts should be sent for this incident
+	 */
 	public boolean isAlertIncident(Check check) {
-		if (isBackToOk() && hasEnoughConsecutiveFailures(check)) {
-			return true;
-		}
-		if (hasStageChange() && hasEnoughConsecutiveFailures(check)) {
-			return true;
-		}
-		return getConsecutiveFailures() == check.getAlertAfterXFailures();
+		return hasStageChange() && hasEnoughConsecutiveFailures(check);
 	}
 
 	private boolean hasEnoughConsecutiveFailures(Check check) {
 		return getConsecutiveFailures() >= check.getAlertAfterXFailures();
 	}
 
-	private boolean isBackToOk() {
-		return hasStageChange() && newStatus == CheckResult.Status.OK;
-	}
-
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder()
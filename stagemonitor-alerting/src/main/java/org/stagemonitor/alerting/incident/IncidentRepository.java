@@ -14,4 +14,15 @@ public interface IncidentRepository {
 
 	boolean updateIncident(Incident incident);
 
+	/**
+	 * Persists multiple incidents at once.
+	 * <p/>
+	 * Incidents whose {@link Incident#getNewStatus()} is {@link org.stagemonitor.alerting.check.CheckResult.Status#OK}
+	 * are deleted, incidents with version <code>0</code> are created and all other incidents are updated.
+	 *
+	 * @param incidents the incidents to create, update or delete
+	 * @return the incidents that could not be persisted, for example because of a optimistic lock failure
+	 */
+	Collection<Incident> saveOrDeleteIncidents(Collection<Incident> incidents);
+
 }
@@ -373,6 +373,7 @@
 						application: stagemonitor.measurementSession.applicationName,
 						active: true,
 						alertAfterXFailures: 1,
+						evaluationWindow: 0,
 						thresholds: {WARN: [], ERROR: [], CRITICAL: []}
 					});
 				});
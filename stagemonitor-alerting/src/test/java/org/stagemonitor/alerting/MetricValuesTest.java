@@ -0,0 +1,94 @@
+package org.stagemonitor.alerting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+import org.stagemonitor.core.util.JsonUtils;
+
+public class MetricValuesTest {
+
+	private static final double DURATION_FACTOR = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testTimer() throws Exception {
+		final Timer timer = new Timer();
+		timer.update(1, TimeUnit.MILLISECONDS);
+		timer.update(3, TimeUnit.MILLISECONDS);
+		assertSameValuesAsJson(timer);
+		assertEquals(2, getValues(timer).get("mean"), 0);
+	}
+
+	@Test
+	public void testHistogram() throws Exception {
+		final Histogram histogram = new Histogram(new UniformReservoir());
+		histogram.update(1);
+		histogram.update(3);
+		assertSameValuesAsJson(histogram);
+		assertEquals(2, getValues(histogram).get("mean"), 0);
+	}
+
+	@Test
+	public void testMeter() throws Exception {
+		final Meter meter = new Meter();
+		meter.mark(3);
+		assertSameValuesAsJson(meter);
+		assertNull(getValues(meter).get("mean"));
+	}
+
+	@Test
+	public void testCounter() throws Exception {
+		final Counter counter = new Counter();
+		counter.inc(42);
+		assertSameValuesAsJson(counter);
+	}
+
+	@Test
+	public void testGauge() throws Exception {
+		assertSameValuesAsJson(new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return 42;
+			}
+		});
+		assertSameValuesAsJson(new Gauge<Boolean>() {
+			@Override
+			public Boolean getValue() {
+				return true;
+			}
+		});
+	}
+
+	private void assertSameValuesAsJson(Metric metric) {
+		final JsonNode json = JsonUtils.toObjectNode(metric);
+		final Map<String, Double> values = getValues(metric);
+		int numericFields = 0;
+		for (Iterator<Map.Entry<String, JsonNode>> fields = json.fields(); fields.hasNext(); ) {
+			final Map.Entry<String, JsonNode> field = fields.next();
+			if (!field.getValue().isTextual()) {
+				numericFields++;
+				// the rates are not compared, as they change over time
+				if (!field.getKey().endsWith("rate")) {
+					assertEquals(field.getKey(), field.getValue().asDouble(), values.get(field.getKey()), 0.000001);
+				}
+			}
+		}
+		assertEquals(numericFields, values.size());
+	}
+
+	private MetricValues getValues(Metric metric) {
+		return new MetricValues(metric, DURATION_FACTOR, 1);
+	}
+}
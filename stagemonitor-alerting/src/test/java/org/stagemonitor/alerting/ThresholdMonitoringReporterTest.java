@@ -11,12 +11,13 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.timer;
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -44,6 +45,7 @@ import org.stagemonitor.core.CorePlugin;
 import org.stagemonitor.core.MeasurementSession;
 import org.stagemonitor.core.configuration.Configuration;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
 import org.stagemonitor.core.util.JsonUtils;
 
 public class ThresholdMonitoringReporterTest {
@@ -103,6 +105,18 @@ public class ThresholdMonitoringReporterTest {
 		assertEquals(CheckResult.Status.WARN, result.getStatus());
 	}
 
+	@Test
+	public void testChecksChange() throws Exception {
+		when(alertingPlugin.getChecks()).thenReturn(Collections.<String, Check>emptyMap());
+		checkMetrics();
+
+		Check check = createCheckCheckingMean(1, 5);
+		when(alertingPlugin.getChecks()).thenReturn(Collections.singletonMap(check.getId(), check));
+		checkMetrics();
+
+		verify(alerter).alert(any(Alerter.AlertArguments.class));
+	}
+
 	@Test
 	public void testAlertAfter2Failures() throws Exception {
 		Check check = createCheckCheckingMean(2, 6);
@@ -111,11 +125,41 @@ public class ThresholdMonitoringReporterTest {
 
 		checkMetrics();
 		verify(alerter, times(0)).alert(any(Alerter.AlertArguments.class));
+		verify(incidentRepository, times(0)).createIncident(any(Incident.class));
+
+		checkMetrics();
+		verify(alerter).alert(any(Alerter.AlertArguments.class));
 		verify(incidentRepository).createIncident(any(Incident.class));
+		assertEquals(2, incidentRepository.getIncidentByCheckId(check.getId()).getConsecutiveFailures());
 
 		checkMetrics();
 		verify(alerter).alert(any(Alerter.AlertArguments.class));
-		verify(incidentRepository).updateIncident(any(Incident.class));
+		verify(incidentRepository, times(0)).updateIncident(any(Incident.class));
+	}
+
+	@Test
+	public void testAlertAfter2FailuresWithinLast3Runs() throws Exception {
+		Check check = createCheckCheckingMean(2, 6);
+		check.setEvaluationWindow(3);
+		when(alertingPlugin.getChecks()).thenReturn(Collections.singletonMap(check.getId(), check));
+
+		checkMetrics(7, 0, 0);
+		checkMetrics(1, 0, 0);
+		verify(incidentRepository, times(0)).createIncident(any(Incident.class));
+
+		checkMetrics(7, 0, 0);
+		verify(alerter).alert(any(Alerter.AlertArguments.class));
+		verify(incidentRepository).createIncident(any(Incident.class));
+
+		checkMetrics(7, 0, 0);
+		// still 2 failures within the last 3 runs
+		checkMetrics(1, 0, 0);
+		assertNotNull(incidentRepository.getIncidentByCheckId(check.getId()));
+
+		checkMetrics(1, 0, 0);
+		assertNull(incidentRepository.getIncidentByCheckId(check.getId()));
+		verify(alerter, times(2)).alert(any(Alerter.AlertArguments.class));
+		verify(incidentRepository, times(0)).updateIncident(any(Incident.class));
 	}
 
 	@Test
@@ -126,19 +170,14 @@ public class ThresholdMonitoringReporterTest {
 		// violation
 		checkMetrics(7, 0, 0);
 		verify(alerter, times(0)).alert(any(Alerter.AlertArguments.class));
-		final Incident incident = incidentRepository.getIncidentByCheckId(check.getId());
-		assertNotNull(incident);
-		assertEquals(CheckResult.Status.OK, incident.getOldStatus());
-		assertEquals(CheckResult.Status.WARN, incident.getNewStatus());
-		assertNotNull(incident.getFirstFailureAt());
-		assertNull(incident.getResolvedAt());
-		assertEquals(1, incident.getConsecutiveFailures());
-		System.out.println(incident);
+		assertNull(incidentRepository.getIncidentByCheckId(check.getId()));
 
 		// back to ok
 		checkMetrics(1, 0, 0);
 		verify(alerter, times(0)).alert(any(Alerter.AlertArguments.class));
 		assertNull(incidentRepository.getIncidentByCheckId(check.getId()));
+		verify(incidentRepository, times(0)).createIncident(any(Incident.class));
+		verify(incidentRepository, times(0)).deleteIncident(any(Incident.class));
 	}
 
 	@Test
@@ -178,6 +217,8 @@ public class ThresholdMonitoringReporterTest {
 				new Incident(check, new MeasurementSession("testApp", "testHost2", "testInstance"),
 						Arrays.asList(new CheckResult("test", 10, CheckResult.Status.CRITICAL))));
 
+		checkMetrics(7, 0, 0);
+		verify(incidentRepository, times(0)).updateIncident(any(Incident.class));
 		checkMetrics(7, 0, 0);
 		verify(alerter, times(0)).alert(any(Alerter.AlertArguments.class));
 		verify(incidentRepository).updateIncident(any(Incident.class));
@@ -228,16 +269,16 @@ public class ThresholdMonitoringReporterTest {
 	}
 
 	private void checkMetrics(long timer1Mean, long timer2Mean, long timer3Mean) {
-		final SortedMap<String, Timer> timers = new TreeMap<String, Timer>();
-		timers.put("test.timer1", timer(TimeUnit.MILLISECONDS.toNanos(timer1Mean)));
-		timers.put("test.timer2", timer(TimeUnit.MILLISECONDS.toNanos(timer2Mean)));
-		timers.put("test.timer3", timer(TimeUnit.MILLISECONDS.toNanos(timer3Mean)));
-		timers.put("test.some.other.timer", timer(TimeUnit.MILLISECONDS.toNanos(999)));
-		thresholdMonitoringReporter.report(
-				new TreeMap<String, Gauge>(),
-				new TreeMap<String, Counter>(),
-				new TreeMap<String, Histogram>(),
-				new TreeMap<String, Meter>(),
+		final Map<MetricName, Timer> timers = new LinkedHashMap<MetricName, Timer>();
+		timers.put(name("test").tag("timer", "timer1").build(), timer(TimeUnit.MILLISECONDS.toNanos(timer1Mean)));
+		timers.put(name("test").tag("timer", "timer2").build(), timer(TimeUnit.MILLISECONDS.toNanos(timer2Mean)));
+		timers.put(name("test").tag("timer", "timer3").build(), timer(TimeUnit.MILLISECONDS.toNanos(timer3Mean)));
+		timers.put(name("test").tag("a", "some").tag("b", "other").tag("c", "timer").build(), timer(TimeUnit.MILLISECONDS.toNanos(999)));
+		thresholdMonitoringReporter.reportMetrics(
+				Collections.<MetricName, Gauge>emptyMap(),
+				Collections.<MetricName, Counter>emptyMap(),
+				Collections.<MetricName, Histogram>emptyMap(),
+				Collections.<MetricName, Meter>emptyMap(),
 				timers
 		);
 	}
@@ -0,0 +1,242 @@
+package org.stagemonitor.alerting.alerter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Meter;
+import org.junit.After;
+import org.junit.Test;
+import org.stagemonitor.alerting.check.CheckResult;
+import org.stagemonitor.alerting.incident.Incident;
+import org.stagemonitor.alerting.incident.IncidentRepositoryTest;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+
+public class AlertDispatcherTest {
+
+	private final Metric2Registry registry = new Metric2Registry();
+	private final TestAlerter alerter = new TestAlerter();
+	private AlertDispatcher dispatcher;
+
+	@After
+	public void tearDown() throws Exception {
+		alerter.release.countDown();
+		dispatcher.close();
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		alerter.failures.set(2);
+		alerter.release.countDown();
+		dispatcher = new AlertDispatcher(alerter, 10, 3, 1, 10000, 10000, registry);
+
+		dispatcher.dispatch(alertArguments("check"));
+
+		alerter.awaitAttempts(3);
+		assertEquals(1, alerter.delivered.size());
+		assertEquals(2, registry.meter(name("alert_delivery_failed").tag("alerter", "test").build()).getCount());
+	}
+
+	@Test
+	public void testDiscardAfterMaxRetries() throws Exception {
+		alerter.failures.set(Integer.MAX_VALUE);
+		alerter.release.countDown();
+		dispatcher = new AlertDispatcher(alerter, 10, 2, 1, 10000, 10000, registry);
+
+		dispatcher.dispatch(alertArguments("check"));
+
+		alerter.awaitAttempts(3);
+		Thread.sleep(50);
+		assertEquals(3, alerter.attempts.get());
+		assertEquals(0, getQueueSize());
+	}
+
+	@Test
+	public void testCoalescePendingAlerts() throws Exception {
+		dispatcher = new AlertDispatcher(alerter, 10, 0, 1, 10000, 10000, registry);
+		final Alerter.AlertArguments first = alertArguments("check");
+		final Alerter.AlertArguments second = alertArguments("check");
+		final Alerter.AlertArguments third = alertArguments("check");
+
+		dispatcher.dispatch(first);
+		assertTrue(alerter.started.await(1, TimeUnit.SECONDS));
+		dispatcher.dispatch(second);
+		dispatcher.dispatch(third);
+		alerter.release.countDown();
+
+		alerter.awaitAttempts(2);
+		Thread.sleep(50);
+		assertEquals(2, alerter.delivered.size());
+		assertSame(first, alerter.delivered.get(0));
+		assertSame(third, alerter.delivered.get(1));
+	}
+
+	@Test
+	public void testDontCoalesceDifferentTransitions() throws Exception {
+		alerter.failures.set(1);
+		dispatcher = new AlertDispatcher(alerter, 10, 3, 1, 10000, 10000, registry);
+		final Alerter.AlertArguments error = alertArguments("check", CheckResult.Status.OK, CheckResult.Status.ERROR);
+		final Alerter.AlertArguments ok = alertArguments("check", CheckResult.Status.ERROR, CheckResult.Status.OK);
+
+		dispatcher.dispatch(error);
+		assertTrue(alerter.started.await(1, TimeUnit.SECONDS));
+		// the check flaps back while the delivery of the first alert is failing
+		dispatcher.dispatch(ok);
+		assertEquals(2, getQueueSize());
+		alerter.release.countDown();
+
+		alerter.awaitAttempts(3);
+		Thread.sleep(50);
+		assertEquals(2, alerter.delivered.size());
+		assertSame(error, alerter.delivered.get(0));
+		assertSame(ok, alerter.delivered.get(1));
+		assertEquals(0, getQueueSize());
+	}
+
+	@Test
+	public void testReplacedAlertStartsWithFreshRetries() throws Exception {
+		alerter.failures.set(2);
+		dispatcher = new AlertDispatcher(alerter, 10, 1, 1, 10000, 10000, registry);
+		final Alerter.AlertArguments first = alertArguments("check");
+		final Alerter.AlertArguments second = alertArguments("check");
+
+		dispatcher.dispatch(first);
+		assertTrue(alerter.started.await(1, TimeUnit.SECONDS));
+		dispatcher.dispatch(second);
+		alerter.release.countDown();
+
+		// the first attempt fails, the replacement fails once and is delivered with its own retry
+		alerter.awaitAttempts(3);
+		Thread.sleep(50);
+		assertEquals(1, alerter.delivered.size());
+		assertSame(second, alerter.delivered.get(0));
+	}
+
+	@Test
+	public void testDropWhenQueueIsFull() throws Exception {
+		dispatcher = new AlertDispatcher(alerter, 1, 0, 1, 10000, 10000, registry);
+
+		dispatcher.dispatch(alertArguments("check1"));
+		assertTrue(alerter.started.await(1, TimeUnit.SECONDS));
+		assertEquals(1, getQueueSize());
+		dispatcher.dispatch(alertArguments("check2"));
+		alerter.release.countDown();
+
+		alerter.awaitAttempts(1);
+		Thread.sleep(50);
+		assertEquals(1, alerter.delivered.size());
+		assertEquals(1, registry.meter(name("alert_dropped").tag("alerter", "test").build()).getCount());
+	}
+
+	@Test
+	public void testHangingAttemptIsCancelled() throws Exception {
+		dispatcher = new AlertDispatcher(alerter, 10, 1, 1, 10000, 200, registry);
+
+		dispatcher.dispatch(alertArguments("check"));
+		assertTrue(alerter.started.await(1, TimeUnit.SECONDS));
+
+		// the first attempt hangs until it is cancelled
+		final Meter failed = registry.meter(name("alert_delivery_failed").tag("alerter", "test").build());
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (failed.getCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(1, failed.getCount());
+		alerter.release.countDown();
+
+		alerter.awaitAttempts(1);
+		assertEquals(1, alerter.delivered.size());
+	}
+
+	@Test
+	public void testDispatchAfterClose() throws Exception {
+		alerter.release.countDown();
+		dispatcher = new AlertDispatcher(alerter, 10, 3, 1, 10000, 10000, registry);
+		dispatcher.close();
+
+		dispatcher.dispatch(alertArguments("check"));
+
+		Thread.sleep(50);
+		assertEquals(0, alerter.attempts.get());
+	}
+
+	@Test
+	public void testNoRetryAfterClose() throws Exception {
+		alerter.failures.set(Integer.MAX_VALUE);
+		alerter.release.countDown();
+		dispatcher = new AlertDispatcher(alerter, 10, 3, 100, 10000, 10000, registry);
+
+		dispatcher.dispatch(alertArguments("check"));
+		alerter.awaitAttempts(1);
+		dispatcher.close();
+
+		Thread.sleep(200);
+		assertEquals(1, alerter.attempts.get());
+	}
+
+	private int getQueueSize() {
+		return (Integer) registry.getGauges().get(name("alert_queue_size").tag("alerter", "test").build()).getValue();
+	}
+
+	private Alerter.AlertArguments alertArguments(String checkId) {
+		return alertArguments(checkId, CheckResult.Status.OK, CheckResult.Status.ERROR);
+	}
+
+	private Alerter.AlertArguments alertArguments(String checkId, CheckResult.Status oldStatus, CheckResult.Status newStatus) {
+		final Incident incident = IncidentRepositoryTest.createIncidentWithVersion(checkId, 1);
+		incident.setOldStatus(oldStatus);
+		incident.setNewStatus(newStatus);
+		return new Alerter.AlertArguments(incident, null);
+	}
+
+	private static class TestAlerter extends Alerter {
+		private final AtomicInteger failures = new AtomicInteger();
+		private final AtomicInteger attempts = new AtomicInteger();
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final List<AlertArguments> delivered = new CopyOnWriteArrayList<AlertArguments>();
+
+		@Override
+		public void alert(AlertArguments alertArguments) {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			try {
+				if (failures.getAndDecrement() > 0) {
+					throw new IllegalStateException("delivery failed");
+				}
+				delivered.add(alertArguments);
+			} finally {
+				attempts.incrementAndGet();
+			}
+		}
+
+		private void awaitAttempts(int expectedAttempts) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + 5000;
+			while (attempts.get() < expectedAttempts && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(expectedAttempts, attempts.get());
+		}
+
+		@Override
+		public String getAlerterType() {
+			return "test";
+		}
+
+		@Override
+		public String getTargetLabel() {
+			return null;
+		}
+	}
+}
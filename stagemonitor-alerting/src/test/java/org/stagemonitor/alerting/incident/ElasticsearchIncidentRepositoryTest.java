@@ -0,0 +1,71 @@
+package org.stagemonitor.alerting.incident;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.stagemonitor.alerting.incident.IncidentRepositoryTest.createIncidentWithVersion;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.util.JsonUtils;
+
+public class ElasticsearchIncidentRepositoryTest {
+
+	private ElasticsearchClient elasticsearchClient;
+	private ElasticsearchIncidentRepository incidentRepository;
+
+	@Before
+	public void setUp() throws Exception {
+		elasticsearchClient = mock(ElasticsearchClient.class);
+		when(elasticsearchClient.isElasticsearchConfigured()).thenReturn(true);
+		incidentRepository = new ElasticsearchIncidentRepository(elasticsearchClient, Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testItemErrorIsNotCached() throws Exception {
+		when(elasticsearchClient.sendBulk(anyString(), anyListOf(String.class))).thenReturn(JsonUtils.getMapper().readTree(
+				"{\"errors\":true,\"items\":[" +
+						"{\"create\":{\"_id\":\"id1\",\"status\":201}}," +
+						"{\"create\":{\"_id\":\"id2\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}}]}"));
+		final Incident persisted = createIncidentWithVersion("id1", 0);
+		final Incident failed = createIncidentWithVersion("id2", 0);
+
+		assertEquals(Collections.singletonList(failed), incidentRepository.saveOrDeleteIncidents(Arrays.asList(persisted, failed)));
+
+		assertSame(persisted, incidentRepository.getIncidentByCheckId("id1"));
+		assertNull(incidentRepository.getIncidentByCheckId("id2"));
+	}
+
+	@Test
+	public void testFailedBulkRequestIsNotCached() throws Exception {
+		final Incident incident = createIncidentWithVersion("id1", 1);
+
+		assertFalse(incidentRepository.createIncident(incident));
+
+		assertNull(incidentRepository.getIncidentByCheckId("id1"));
+	}
+
+	@Test
+	public void testElasticsearchNotConfigured() throws Exception {
+		when(elasticsearchClient.isElasticsearchConfigured()).thenReturn(false);
+		final Incident incident = createIncidentWithVersion("id1", 1);
+
+		assertTrue(incidentRepository.createIncident(incident));
+
+		assertSame(incident, incidentRepository.getIncidentByCheckId("id1"));
+		verify(elasticsearchClient, never()).sendBulk(anyString(), anyListOf(String.class));
+		verify(elasticsearchClient, never()).getJson(anyString());
+	}
+}
@@ -5,6 +5,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -80,6 +81,29 @@ public class IncidentRepositoryTest extends AbstractElasticsearchTest {
 		}
 	}
 
+	@Test
+	public void testSaveOrDeleteIncidents() throws Exception {
+		for (IncidentRepository incidentRepository : incidentRepositorys) {
+			assertTrue(incidentRepository.createIncident(createIncidentWithVersion("id1", 1)));
+			assertTrue(incidentRepository.createIncident(createIncidentWithVersion("id2", 1)));
+
+			final Incident update = createIncidentWithVersion("id1", 2);
+			final Incident conflictingUpdate = createIncidentWithVersion("id2", 1);
+			final Incident delete = createIncidentWithVersion("id2", 2);
+			delete.setNewStatus(CheckResult.Status.OK);
+			final Incident create = createIncidentWithVersion("id3", 0);
+
+			assertEquals(Arrays.asList(conflictingUpdate),
+					new ArrayList<Incident>(incidentRepository.saveOrDeleteIncidents(Arrays.asList(update, conflictingUpdate, create))));
+			assertTrue(incidentRepository.saveOrDeleteIncidents(Arrays.asList(delete)).isEmpty());
+
+			assertIncidentEquals(update, incidentRepository.getIncidentByCheckId("id1"));
+			assertNull(incidentRepository.getIncidentByCheckId("id2"));
+			assertIncidentEquals(create, incidentRepository.getIncidentByCheckId("id3"));
+			assertEquals(2, incidentRepository.getAllIncidents().size());
+		}
+	}
+
 	private void assertIncidentEquals(Incident expected, Incident actual) {
 		assertEquals(JsonUtils.toJson(expected), JsonUtils.toJson(actual));
 	}
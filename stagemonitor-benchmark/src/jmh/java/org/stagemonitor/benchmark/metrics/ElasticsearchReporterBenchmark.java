@@ -0,0 +1,88 @@
+package org.stagemonitor.benchmark.metrics;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Timer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.metrics.metrics2.ElasticsearchReporter;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+
+/**
+ * Measures how long it takes to serialize a report of 10,000 timers into the bulk request of the
+ * {@link ElasticsearchReporter}
+ */
+@State(value = Scope.Benchmark)
+public class ElasticsearchReporterBenchmark {
+
+	private static final int TIMERS = 10000;
+
+	@Param({"exponentially_decaying", "sliding_window"})
+	public String reservoir;
+
+	private ElasticsearchReporter reporter;
+	private Map<MetricName, Timer> timers;
+	private byte[] bulkActionBytes;
+	private CountingOutputStream outputStream;
+
+	@Setup
+	public void init() throws Exception {
+		final Metric2Registry registry = new Metric2Registry();
+		reporter = ElasticsearchReporter.forRegistry(registry, new CorePlugin())
+				.globalTags(Collections.singletonMap("application", "benchmark"))
+				.build();
+		bulkActionBytes = ElasticsearchClient.getBulkHeader("index", "stagemonitor-metrics-benchmark", "metrics").getBytes("UTF-8");
+		outputStream = new CountingOutputStream();
+
+		final Random random = new Random(0);
+		timers = new HashMap<MetricName, Timer>();
+		for (int i = 0; i < TIMERS; i++) {
+			final Timer timer = "sliding_window".equals(reservoir) ? new Timer(new SlidingWindowReservoir(1028)) : new Timer();
+			for (int j = 0; j < 1028; j++) {
+				timer.update(random.nextInt(1000000), TimeUnit.NANOSECONDS);
+			}
+			timers.put(name("response_time_server").tag("request_name", "Request " + i).layer("All").build(), timer);
+		}
+	}
+
+	@Benchmark
+	public long reportTimers() throws IOException {
+		reporter.reportMetrics(Collections.<MetricName, Gauge>emptyMap(), Collections.<MetricName, Counter>emptyMap(),
+				Collections.<MetricName, Histogram>emptyMap(), Collections.<MetricName, Meter>emptyMap(), timers,
+				outputStream, bulkActionBytes);
+		return outputStream.count;
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
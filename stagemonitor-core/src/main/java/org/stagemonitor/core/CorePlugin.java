@@ -21,7 +21,7 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.graphite.Graphite;
-import com.codahale.metrics.graphite.GraphiteReporter;
+import com.codahale.metrics.graphite.PickledGraphite;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stagemonitor.core.configuration.Configuration;
@@ -37,6 +37,7 @@ import org.stagemonitor.core.metrics.MetricsWithCountFilter;
 import org.stagemonitor.core.metrics.SortedTableLogReporter;
 import org.stagemonitor.core.metrics.metrics2.AndMetric2Filter;
 import org.stagemonitor.core.metrics.metrics2.ElasticsearchReporter;
+import org.stagemonitor.core.metrics.metrics2.GraphiteReporter;
 import org.stagemonitor.core.metrics.metrics2.InfluxDbReporter;
 import org.stagemonitor.core.metrics.metrics2.Metric2Filter;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
@@ -129,11 +130,31 @@ public class CorePlugin extends StagemonitorPlugin {
 			.key("stagemonitor.reporting.graphite.port")
 			.dynamic(false)
 			.label("Carbon port")
-			.description("The port where carbon is listening.")
+			.description("The port where carbon is listening. If stagemonitor.reporting.graphite.pickle is enabled, " +
+					"this has to be the port of the pickle receiver (usually 2004).")
 			.defaultValue(2003)
 			.tags(METRICS_STORE, "graphite")
 			.configurationCategory(CORE_PLUGIN_NAME)
 			.build();
+	private final ConfigurationOption<Boolean> graphitePickle = ConfigurationOption.booleanOption()
+			.key("stagemonitor.reporting.graphite.pickle")
+			.dynamic(false)
+			.label("Use the Graphite pickle protocol")
+			.description("If set to true, the metrics are sent in batches via carbon's pickle protocol instead of " +
+					"sending one line per value via the plaintext protocol.")
+			.defaultValue(false)
+			.tags(METRICS_STORE, "graphite")
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
+	private final ConfigurationOption<Integer> graphitePickleBatchSize = ConfigurationOption.integerOption()
+			.key("stagemonitor.reporting.graphite.pickle.batchSize")
+			.dynamic(false)
+			.label("Graphite pickle batch size")
+			.description("The maximum number of values that are sent in one pickle frame.")
+			.defaultValue(500)
+			.tags(METRICS_STORE, "graphite")
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
 	private final ConfigurationOption<String> influxDbUrl = ConfigurationOption.stringOption()
 			.key("stagemonitor.reporting.influxdb.url")
 			.dynamic(true)
@@ -181,6 +202,17 @@ public class CorePlugin extends StagemonitorPlugin {
 			.tags(METRICS_STORE, ELASTICSEARCH)
 			.configurationCategory(CORE_PLUGIN_NAME)
 			.build();
+	private final ConfigurationOption<Integer> elasticsearchReportingShardSize = ConfigurationOption.integerOption()
+			.key("stagemonitor.reporting.elasticsearch.shardSize")
+			.dynamic(false)
+			.label("Metrics per Elasticsearch bulk request")
+			.description("If there are more metrics than this, the metrics are split into shards of this size. " +
+					"The shards are serialized and sent to Elasticsearch in parallel, using at most as many threads as " +
+					"there are available processors. Set below 1 to always report all metrics in a single bulk request.")
+			.defaultValue(10000)
+			.tags(METRICS_STORE, ELASTICSEARCH)
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.build();
 	private final ConfigurationOption<Integer> deleteElasticsearchMetricsAfterDays = ConfigurationOption.integerOption()
 			.key("stagemonitor.reporting.elasticsearch.deleteMetricsAfterDays")
 			.dynamic(false)
@@ -349,6 +381,18 @@ public class CorePlugin extends StagemonitorPlugin {
 			.defaultValue(false)
 			.configurationCategory(CORE_PLUGIN_NAME)
 			.build();
+	private final ConfigurationOption<String> instrumentationPlanFile = ConfigurationOption.stringOption()
+			.key("stagemonitor.instrument.planFile")
+			.dynamic(false)
+			.label("Instrumentation plan file")
+			.description("The path to a file where stagemonitor remembers the classes that have not been instrumented. " +
+					"On the next start, these classes are skipped without evaluating the matchers of all instrumenters, " +
+					"which speeds up the startup. The file is invalidated automatically when the class path, " +
+					"the instrumenters or the instrumentation settings change. Leave empty to deactivate.")
+			.defaultValue(null)
+			.configurationCategory(CORE_PLUGIN_NAME)
+			.tags("advanced")
+			.build();
 	private final ConfigurationOption<String> grafanaUrl = ConfigurationOption.stringOption()
 			.key("stagemonitor.grafana.url")
 			.dynamic(true)
@@ -446,9 +490,8 @@ public class CorePlugin extends StagemonitorPlugin {
 		}
 		
 		Metric2Filter allFilters = new AndMetric2Filter(regexFilter, new MetricsWithCountFilter());
-		MetricRegistry metricRegistry = metric2Registry.getMetricRegistry();
 
-		reportToGraphite(metricRegistry, getGraphiteReportingInterval(), measurementSession);
+		reportToGraphite(metric2Registry, getGraphiteReportingInterval(), measurementSession);
 		reportToInfluxDb(metric2Registry, reportingIntervalInfluxDb.getValue(),
 				measurementSession);
 		reportToElasticsearch(metric2Registry, reportingIntervalElasticsearch.getValue(),
@@ -460,7 +503,8 @@ public class CorePlugin extends StagemonitorPlugin {
 		if (configuration.getConfig(CorePlugin.class).isReportToJMX()) {
 			// Because JMX reporter is on registration and not periodic only the
 			// regex filter is applicable here (not filtering metrics by count)
-			reportToJMX(metricRegistry);
+			// This is the only reporter which requires the legacy MetricRegistry
+			reportToJMX(metric2Registry.getMetricRegistry());
 		}
 	}
 
@@ -474,14 +518,15 @@ public class CorePlugin extends StagemonitorPlugin {
 		}
 	}
 
-	private void reportToGraphite(MetricRegistry metricRegistry, long reportingInterval, MeasurementSession measurementSession) {
+	private void reportToGraphite(Metric2Registry metricRegistry, long reportingInterval, MeasurementSession measurementSession) {
 		String graphiteHostName = getGraphiteHostName();
 		if (isReportToGraphite()) {
+			final InetSocketAddress address = new InetSocketAddress(graphiteHostName, getGraphitePort());
 			final GraphiteReporter graphiteReporter = GraphiteReporter.forRegistry(metricRegistry)
 					.prefixedWith(getGraphitePrefix(measurementSession))
 					.convertRatesTo(TimeUnit.SECONDS)
 					.convertDurationsTo(TimeUnit.MILLISECONDS)
-					.build(new Graphite(new InetSocketAddress(graphiteHostName, getGraphitePort())));
+					.build(graphitePickle.getValue() ? new PickledGraphite(address, graphitePickleBatchSize.getValue()) : new Graphite(address));
 
 			graphiteReporter.start(reportingInterval, TimeUnit.SECONDS);
 			reporters.add(graphiteReporter);
@@ -765,7 +810,15 @@ public class CorePlugin extends StagemonitorPlugin {
 		return onlyLogElasticsearchMetricReports.getValue();
 	}
 
+	public int getElasticsearchReportingShardSize() {
+		return elasticsearchReportingShardSize.getValue();
+	}
+
 	public boolean isDebugInstrumentation() {
 		return debugInstrumentation.getValue();
 	}
+
+	public String getInstrumentationPlanFile() {
+		return instrumentationPlanFile.getValue();
+	}
 }
@@ -13,6 +13,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +24,7 @@ public class Configuration {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	private final String updateConfigPasswordKey;
 	private final List<ConfigurationSource> configurationSources = new CopyOnWriteArrayList<ConfigurationSource>();
+	private final AtomicLong version = new AtomicLong();
 
 	private Map<Class<? extends ConfigurationOptionProvider>, ConfigurationOptionProvider> optionProvidersByClass = new HashMap<Class<? extends ConfigurationOptionProvider>, ConfigurationOptionProvider>();
 	private Map<String, ConfigurationOption<?>> configurationOptionsByKey = new LinkedHashMap<String, ConfigurationOption<?>>();
@@ -200,8 +202,8 @@ public class Configuration {
 	 * @param key the key of the configuration option
 	 */
 	public void reload(String key) {
-		if (configurationOptionsByKey.containsKey(key)) {
-			configurationOptionsByKey.get(key).reload(false);
+		if (configurationOptionsByKey.containsKey(key) && configurationOptionsByKey.get(key).reload(false)) {
+			version.incrementAndGet();
 		}
 	}
 
@@ -230,9 +232,25 @@ public class Configuration {
 				logger.warn(e.getMessage() + " (this exception is ignored)", e);
 			}
 		}
+		boolean changed = false;
 		for (ConfigurationOption<?> configurationOption : configurationOptionsByKey.values()) {
-			configurationOption.reload(reloadNonDynamicValues);
+			changed |= configurationOption.reload(reloadNonDynamicValues);
 		}
+		if (changed) {
+			version.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the version of the configuration which is incremented each time the value of at least one
+	 * {@link ConfigurationOption} has changed due to a reload or an update.
+	 * <p/>
+	 * This can be used to cheaply find out whether derived data (for example compiled patterns) has to be recomputed.
+	 *
+	 * @return the current version of the configuration
+	 */
+	public long getVersion() {
+		return version.get();
 	}
 
 	/**
@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -46,11 +47,10 @@ public class ConfigurationOption<T> {
 	private final String configurationCategory;
 	private final ValueConverter<T> valueConverter;
 	private final Class<? super T> valueType;
-	private String valueAsString;
-	private T value;
+	private final ValueSnapshot<T> defaultValueSnapshot;
+	private final List<ChangeListener<T>> changeListeners = new CopyOnWriteArrayList<ChangeListener<T>>();
+	private volatile ValueSnapshot<T> snapshot;
 	private List<ConfigurationSource> configurationSources;
-	private String nameOfCurrentConfigurationSource;
-	private String errorMessage;
 	private Configuration configuration;
 
 	public static <T> ConfigurationOptionBuilder<T> builder(ValueConverter<T> valueConverter, Class<? super T> valueType) {
@@ -188,7 +188,8 @@ public class ConfigurationOption<T> {
 		this.valueConverter = valueConverter;
 		this.valueType = valueType;
 		this.sensitive = sensitive;
-		setToDefault();
+		this.defaultValueSnapshot = new ValueSnapshot<T>(defaultValue, defaultValueAsString, "Default Value", null);
+		this.snapshot = defaultValueSnapshot;
 	}
 
 	/**
@@ -242,7 +243,7 @@ public class ConfigurationOption<T> {
 	 * @return the current value as string
 	 */
 	public String getValueAsString() {
-		return valueAsString;
+		return snapshot.valueAsString;
 	}
 
 	/**
@@ -263,7 +264,27 @@ public class ConfigurationOption<T> {
 	 */
 	@JsonIgnore
 	public T getValue() {
-		return value;
+		return snapshot.value;
+	}
+
+	/**
+	 * Registers a listener that is notified each time the value of this option changes.
+	 * <p/>
+	 * This is an alternative to periodically comparing the result of {@link #getValue()}.
+	 *
+	 * @param changeListener the listener
+	 */
+	public void addChangeListener(ChangeListener<T> changeListener) {
+		changeListeners.add(changeListener);
+	}
+
+	/**
+	 * Removes a previously registered listener
+	 *
+	 * @param changeListener the listener
+	 */
+	public void removeChangeListener(ChangeListener<T> changeListener) {
+		changeListeners.remove(changeListener);
 	}
 
 	void setConfigurationSources(List<ConfigurationSource> configurationSources) {
@@ -281,7 +302,7 @@ public class ConfigurationOption<T> {
 	 * @return the name of the configuration source that provided the current value
 	 */
 	public String getNameOfCurrentConfigurationSource() {
-		return nameOfCurrentConfigurationSource;
+		return snapshot.nameOfCurrentConfigurationSource;
 	}
 
 
@@ -319,17 +340,25 @@ public class ConfigurationOption<T> {
 	 * @return a error message or null if there was no error
 	 */
 	public String getErrorMessage() {
-		return errorMessage;
+		return snapshot.errorMessage;
 	}
 
-	synchronized void reload(boolean reloadNonDynamicValues) {
+	/**
+	 * Reloads the value from the configuration sources
+	 *
+	 * @param reloadNonDynamicValues whether non {@link #dynamic} values should be reloaded as well
+	 * @return <code>true</code>, if the value has changed, <code>false</code> otherwise
+	 */
+	synchronized boolean reload(boolean reloadNonDynamicValues) {
 		if (dynamic || reloadNonDynamicValues) {
-			loadValue();
+			return loadValue();
 		}
+		return false;
 	}
 
-	private void loadValue() {
+	private synchronized boolean loadValue() {
 		String newValue = null;
+		String nameOfCurrentConfigurationSource = null;
 		for (ConfigurationSource configurationSource : configurationSources) {
 			newValue = configurationSource.getValue(key);
 			nameOfCurrentConfigurationSource = configurationSource.getName();
@@ -337,37 +366,44 @@ public class ConfigurationOption<T> {
 				break;
 			}
 		}
-		if (newValue == null || !trySetValue(newValue)) {
-			setToDefault();
+		final ValueSnapshot<T> oldSnapshot = snapshot;
+		if (newValue == null) {
+			snapshot = defaultValueSnapshot;
+		} else {
+			snapshot = createSnapshot(newValue.trim(), nameOfCurrentConfigurationSource, oldSnapshot);
 		}
+		return notifyIfChanged(oldSnapshot, snapshot);
 	}
 
-	private boolean trySetValue(String newValue) {
-		newValue = newValue.trim();
-		if (hasChanges(newValue)) {
-			this.valueAsString = newValue;
-			try {
-				value = valueConverter.convert(newValue);
-				errorMessage = null;
-				return true;
-			} catch (IllegalArgumentException e) {
-				errorMessage = "Error in " + nameOfCurrentConfigurationSource + ": " + e.getMessage();
-				logger.warn(errorMessage + " Default value '" + defaultValueAsString + "' for '" + key + "' will be applied.");
-				return false;
-			}
-		} else {
-			return true;
+	private ValueSnapshot<T> createSnapshot(String newValue, String nameOfCurrentConfigurationSource, ValueSnapshot<T> oldSnapshot) {
+		if (!hasChanges(newValue, oldSnapshot)) {
+			return new ValueSnapshot<T>(oldSnapshot.value, oldSnapshot.valueAsString, nameOfCurrentConfigurationSource, null);
+		}
+		try {
+			return new ValueSnapshot<T>(valueConverter.convert(newValue), newValue, nameOfCurrentConfigurationSource, null);
+		} catch (IllegalArgumentException e) {
+			final String errorMessage = "Error in " + nameOfCurrentConfigurationSource + ": " + e.getMessage();
+			logger.warn(errorMessage + " Default value '" + defaultValueAsString + "' for '" + key + "' will be applied.");
+			return new ValueSnapshot<T>(defaultValue, defaultValueAsString, defaultValueSnapshot.nameOfCurrentConfigurationSource, errorMessage);
 		}
 	}
 
-	private void setToDefault() {
-		valueAsString = defaultValueAsString;
-		value = defaultValue;
-		nameOfCurrentConfigurationSource = "Default Value";
+	private boolean hasChanges(String property, ValueSnapshot<T> oldSnapshot) {
+		return !property.equals(oldSnapshot.valueAsString);
 	}
 
-	private boolean hasChanges(String property) {
-		return !property.equals(valueAsString);
+	private boolean notifyIfChanged(ValueSnapshot<T> oldSnapshot, ValueSnapshot<T> newSnapshot) {
+		if (oldSnapshot.valueAsString == null ? newSnapshot.valueAsString == null : oldSnapshot.valueAsString.equals(newSnapshot.valueAsString)) {
+			return false;
+		}
+		for (ChangeListener<T> changeListener : changeListeners) {
+			try {
+				changeListener.onChange(this, oldSnapshot.value, newSnapshot.value);
+			} catch (RuntimeException e) {
+				logger.warn("Error in change listener for '" + key + "' (this exception is ignored)", e);
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -396,6 +432,43 @@ public class ConfigurationOption<T> {
 		configuration.save(key, newValueAsString, configurationSourceName);
 	}
 
+	/**
+	 * Gets notified when the value of a {@link ConfigurationOption} changes
+	 *
+	 * @param <T> the type of the configuration value
+	 */
+	public interface ChangeListener<T> {
+
+		/**
+		 * Called after the value of a {@link ConfigurationOption} has changed
+		 *
+		 * @param configurationOption the configuration option whose value has changed
+		 * @param oldValue            the previous value
+		 * @param newValue            the current value
+		 */
+		void onChange(ConfigurationOption<?> configurationOption, T oldValue, T newValue);
+	}
+
+	/**
+	 * An immutable snapshot of the current value and its metadata.
+	 * <p/>
+	 * The snapshot is replaced as a whole on reload which makes sure that readers never see a value that does not
+	 * match its string representation or source and that reading the value does not require any locking.
+	 */
+	private static class ValueSnapshot<T> {
+		private final T value;
+		private final String valueAsString;
+		private final String nameOfCurrentConfigurationSource;
+		private final String errorMessage;
+
+		private ValueSnapshot(T value, String valueAsString, String nameOfCurrentConfigurationSource, String errorMessage) {
+			this.value = value;
+			this.valueAsString = valueAsString;
+			this.nameOfCurrentConfigurationSource = nameOfCurrentConfigurationSource;
+			this.errorMessage = errorMessage;
+		}
+	}
+
 	public static class ConfigurationOptionBuilder<T> {
 		private boolean dynamic = false;
 		private boolean sensitive = false;
@@ -11,9 +11,16 @@ public class DeleteIndicesTask extends TimerTask {
 	private final int deleteIndicesOlderThanDays;
 	private final ElasticsearchClient elasticsearchClient;
 	private final IndexSelector indexSelector;
+	private final IndexRollover rollover;
 
 	public DeleteIndicesTask(IndexSelector indexSelector, String indexPrefix, int deleteIndicesOlderThanDays, ElasticsearchClient elasticsearchClient) {
+		this(indexSelector, indexPrefix, deleteIndicesOlderThanDays, elasticsearchClient, IndexRollover.DAILY);
+	}
+
+	public DeleteIndicesTask(IndexSelector indexSelector, String indexPrefix, int deleteIndicesOlderThanDays,
+							 ElasticsearchClient elasticsearchClient, IndexRollover rollover) {
 		this.indexSelector = indexSelector;
+		this.rollover = rollover;
 		this.indexPrefix = indexPrefix;
 		this.deleteIndicesOlderThanDays = deleteIndicesOlderThanDays;
 		this.elasticsearchClient = elasticsearchClient;
@@ -21,7 +28,7 @@ public class DeleteIndicesTask extends TimerTask {
 
 	@Override
 	public void run() {
-		final String indexPatternOlderThanDays = indexSelector.getIndexPatternOlderThanDays(indexPrefix, deleteIndicesOlderThanDays);
+		final String indexPatternOlderThanDays = indexSelector.getIndexPatternOlderThanDays(indexPrefix, deleteIndicesOlderThanDays, rollover);
 		elasticsearchClient.deleteIndices(indexPatternOlderThanDays);
 	}
 }
@@ -226,6 +226,49 @@ public class ElasticsearchClient {
 		});
 	}
 
+	/**
+	 * @return <code>true</code>, if an elasticsearch url is configured
+	 */
+	public boolean isElasticsearchConfigured() {
+		return StringUtils.isNotEmpty(corePlugin.getElasticsearchUrl());
+	}
+
+	/**
+	 * Sends a _bulk request synchronously and returns the response so that the caller can inspect the result of each
+	 * action
+	 *
+	 * @param path             the path of the bulk endpoint including query parameters (e.g. <code>/_bulk?refresh=true</code>)
+	 * @param bulkRequestLines the lines of the bulk request
+	 * @return the bulk response or <code>null</code>, if the request failed
+	 * @throws IllegalStateException if no elasticsearch url is configured
+	 */
+	public JsonNode sendBulk(String path, List<String> bulkRequestLines) {
+		if (!isElasticsearchConfigured()) {
+			throw new IllegalStateException("No elasticsearch url is configured");
+		}
+		final String url = corePlugin.getElasticsearchUrl() + path;
+		final StringBuilder requestBody = new StringBuilder();
+		for (String line : bulkRequestLines) {
+			requestBody.append(line).append('\n');
+		}
+		return httpClient.send("POST", url, null, new HttpClient.OutputStreamHandler() {
+			@Override
+			public void withHttpURLConnection(OutputStream os) throws IOException {
+				os.write(requestBody.toString().getBytes("UTF-8"));
+				os.close();
+			}
+		}, new HttpClient.ResponseHandler<JsonNode>() {
+			@Override
+			public JsonNode handleResponse(InputStream is, Integer statusCode) throws IOException {
+				if (statusCode == null || statusCode >= 400) {
+					logger.warn("{}: {} {}", url, statusCode, IOUtils.toString(is));
+					return null;
+				}
+				return JsonUtils.getMapper().readTree(is);
+			}
+		});
+	}
+
 	private void reportBulkErrors(JsonNode items) {
 		final StringBuilder sb = new StringBuilder("Error(s) while sending a _bulk request to elasticsearch:");
 		for (JsonNode item : items) {
@@ -316,21 +359,33 @@ public class ElasticsearchClient {
 	 * @param indexPrefix the prefix of the logstash-style index pattern
 	 */
 	public void scheduleIndexManagement(String indexPrefix, int optimizeAndMoveIndicesToColdNodesOlderThanDays, int deleteIndicesOlderThanDays) {
+		scheduleIndexManagement(indexPrefix, optimizeAndMoveIndicesToColdNodesOlderThanDays, deleteIndicesOlderThanDays, IndexRollover.DAILY);
+	}
+
+	/**
+	 * Performs an optimize and delete on logstash-style indices that have been created with the given
+	 * {@link IndexRollover}
+	 *
+	 * @param indexPrefix the prefix of the logstash-style index pattern
+	 * @param rollover    the rollover of the indices
+	 */
+	public void scheduleIndexManagement(String indexPrefix, int optimizeAndMoveIndicesToColdNodesOlderThanDays,
+										int deleteIndicesOlderThanDays, IndexRollover rollover) {
 		if (deleteIndicesOlderThanDays > 0) {
 			final TimerTask deleteIndicesTask = new DeleteIndicesTask(corePlugin.getIndexSelector(), indexPrefix,
-					deleteIndicesOlderThanDays, this);
+					deleteIndicesOlderThanDays, this, rollover);
 			timer.schedule(deleteIndicesTask, 0, DateUtils.getDayInMillis());
 		}
 
 		if (optimizeAndMoveIndicesToColdNodesOlderThanDays > 0) {
 			final TimerTask shardAllocationTask = new ShardAllocationTask(corePlugin.getIndexSelector(), indexPrefix,
-					optimizeAndMoveIndicesToColdNodesOlderThanDays, this, "cold");
+					optimizeAndMoveIndicesToColdNodesOlderThanDays, this, "cold", rollover);
 			timer.schedule(shardAllocationTask, 0, DateUtils.getDayInMillis());
 		}
 
 		if (optimizeAndMoveIndicesToColdNodesOlderThanDays > 0) {
 			final TimerTask optimizeIndicesTask = new OptimizeIndicesTask(corePlugin.getIndexSelector(), indexPrefix,
-					optimizeAndMoveIndicesToColdNodesOlderThanDays, this);
+					optimizeAndMoveIndicesToColdNodesOlderThanDays, this, rollover);
 			timer.schedule(optimizeIndicesTask, DateUtils.getNextDateAtHour(3), DateUtils.getDayInMillis());
 		}
 
@@ -0,0 +1,124 @@
+package org.stagemonitor.core.elasticsearch;
+
+/**
+ * Determines how often a new logstash-style index (like stagemonitor-requests-2016.03.15) is created.
+ * <p/>
+ * All times are in UTC.
+ */
+public enum IndexRollover {
+
+	/**
+	 * Creates a new index every hour. Example: stagemonitor-requests-2016.03.15.13
+	 */
+	HOURLY(60 * 60 * 1000L) {
+		@Override
+		long getStartOfPeriod(long time) {
+			return floorDiv(time, HOUR_IN_MILLIS) * HOUR_IN_MILLIS;
+		}
+
+		@Override
+		public String getIndexSuffix(long time) {
+			final StringBuilder sb = appendDate(new StringBuilder(13), time).append('.');
+			return appendTwoDigits(sb, (int) (floorMod(time, DAY_IN_MILLIS) / HOUR_IN_MILLIS)).toString();
+		}
+	},
+	/**
+	 * Creates a new index every day. Example: stagemonitor-requests-2016.03.15
+	 */
+	DAILY(24 * 60 * 60 * 1000L) {
+		@Override
+		long getStartOfPeriod(long time) {
+			return floorDiv(time, DAY_IN_MILLIS) * DAY_IN_MILLIS;
+		}
+
+		@Override
+		public String getIndexSuffix(long time) {
+			return appendDate(new StringBuilder(10), time).toString();
+		}
+	},
+	/**
+	 * Creates a new index every week. The index is named after the monday the week starts with.
+	 * Example: stagemonitor-requests-2016.03.14
+	 */
+	WEEKLY(7 * 24 * 60 * 60 * 1000L) {
+		@Override
+		long getStartOfPeriod(long time) {
+			final long epochDay = floorDiv(time, DAY_IN_MILLIS);
+			// 1970-01-01 was a thursday
+			final long daysSinceMonday = floorMod(epochDay + 3, 7);
+			return (epochDay - daysSinceMonday) * DAY_IN_MILLIS;
+		}
+
+		@Override
+		public String getIndexSuffix(long time) {
+			return appendDate(new StringBuilder(10), getStartOfPeriod(time)).toString();
+		}
+	};
+
+	private static final long HOUR_IN_MILLIS = 60 * 60 * 1000L;
+	private static final long DAY_IN_MILLIS = 24 * HOUR_IN_MILLIS;
+
+	private final long periodInMillis;
+
+	IndexRollover(long periodInMillis) {
+		this.periodInMillis = periodInMillis;
+	}
+
+	/**
+	 * @param time the time in milliseconds since epoch
+	 * @return the start of the period the time belongs to in milliseconds since epoch
+	 */
+	abstract long getStartOfPeriod(long time);
+
+	/**
+	 * Returns the date suffix of the index the given time belongs to
+	 *
+	 * @param time the time in milliseconds since epoch
+	 * @return the suffix of the index, for example 2016.03.15
+	 */
+	public abstract String getIndexSuffix(long time);
+
+	/**
+	 * @param time the time in milliseconds since epoch
+	 * @return the start of the next period in milliseconds since epoch
+	 */
+	long getStartOfNextPeriod(long time) {
+		return getStartOfPeriod(time) + periodInMillis;
+	}
+
+	/**
+	 * Appends the UTC date of the time in the format yyyy.MM.dd without creating a {@link java.text.SimpleDateFormat}
+	 * or {@link java.util.Calendar}
+	 */
+	static StringBuilder appendDate(StringBuilder sb, long time) {
+		// see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+		final long z = floorDiv(time, DAY_IN_MILLIS) + 719468;
+		final long era = floorDiv(z, 146097);
+		final long dayOfEra = z - era * 146097;
+		final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		final long mp = (5 * dayOfYear + 2) / 153;
+		final int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		sb.append(year).append('.');
+		appendTwoDigits(sb, month).append('.');
+		return appendTwoDigits(sb, day);
+	}
+
+	private static StringBuilder appendTwoDigits(StringBuilder sb, int i) {
+		if (i < 10) {
+			sb.append('0');
+		}
+		return sb.append(i);
+	}
+
+	private static long floorDiv(long x, long y) {
+		final long quotient = x / y;
+		return (x % y != 0 && ((x ^ y) < 0)) ? quotient - 1 : quotient;
+	}
+
+	private static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+}
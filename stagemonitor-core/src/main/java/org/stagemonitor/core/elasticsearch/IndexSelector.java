@@ -27,6 +27,24 @@ public class IndexSelector {
 	 * @return The Elasticsearch index pattern that only includes indices that are older than the specified amount of days
 	 */
 	public String getIndexPatternOlderThanDays(String prefix, int days) {
+		return getIndexPatternOlderThanDays(prefix, days, IndexRollover.DAILY);
+	}
+
+	/**
+	 * Returns an Elasticsearch index pattern that only includes indices that are older than the specified amount of days
+	 * <p/>
+	 * Weekly indices are only included if the whole week is older than the specified amount of days.
+	 *
+	 * @param prefix   the index prefix e.g. 'stagemonitor-metrics-'
+	 * @param days     the number days that should be excluded
+	 * @param rollover the {@link IndexRollover} the indices have been created with
+	 * @return The Elasticsearch index pattern that only includes indices that are older than the specified amount of days
+	 */
+	public String getIndexPatternOlderThanDays(String prefix, int days, IndexRollover rollover) {
+		if (rollover == IndexRollover.WEEKLY) {
+			// weekly indices are named after the first day of the week
+			days += 6;
+		}
 		// select all indices, then exclude months and days that are not older than the days parameter
 		// Example:
 		// stagemonitor-metrics-*,-stagemonitor-metrics-2015.10.*,-stagemonitor-metrics-2015.09.30
@@ -37,7 +55,9 @@ public class IndexSelector {
 		final GregorianCalendar alreadyExcluded = getNowUTC();
 
 		excludeMonths(prefix, now, indexPattern, lastDayToExclude, alreadyExcluded);
-		excludeDays(prefix, indexPattern, lastDayToExclude, alreadyExcluded);
+		// hourly indices are named [prefix]YYYY.MM.DD.HH
+		// the suffix also matches daily indices, which still exist if the rollover has been changed from daily to hourly
+		excludeDays(prefix, rollover == IndexRollover.HOURLY ? "*" : "", indexPattern, lastDayToExclude, alreadyExcluded);
 
 		return indexPattern.toString();
 	}
@@ -61,9 +81,9 @@ public class IndexSelector {
 		}
 	}
 
-	private void excludeDays(String prefix, StringBuilder sb, GregorianCalendar lastDayToExclude, GregorianCalendar alreadyExcluded) {
+	private void excludeDays(String prefix, String suffix, StringBuilder sb, GregorianCalendar lastDayToExclude, GregorianCalendar alreadyExcluded) {
 		for (; alreadyExcluded.after(lastDayToExclude) || alreadyExcluded.equals(lastDayToExclude); alreadyExcluded.add(Calendar.DAY_OF_YEAR, -1)) {
-			sb.append(",-").append(prefix).append(StringUtils.getLogstashStyleDate(alreadyExcluded.getTimeInMillis()));
+			sb.append(",-").append(prefix).append(StringUtils.getLogstashStyleDate(alreadyExcluded.getTimeInMillis())).append(suffix);
 		}
 	}
 
@@ -14,9 +14,16 @@ public class OptimizeIndicesTask extends TimerTask {
 	private final int optimizeIndicesOlderThanDays;
 	private final ElasticsearchClient elasticsearchClient;
 	private final IndexSelector indexSelector;
+	private final IndexRollover rollover;
 
 	public OptimizeIndicesTask(IndexSelector indexSelector, String indexPrefix, int optimizeIndicesOlderThanDays, ElasticsearchClient elasticsearchClient) {
+		this(indexSelector, indexPrefix, optimizeIndicesOlderThanDays, elasticsearchClient, IndexRollover.DAILY);
+	}
+
+	public OptimizeIndicesTask(IndexSelector indexSelector, String indexPrefix, int optimizeIndicesOlderThanDays,
+							   ElasticsearchClient elasticsearchClient, IndexRollover rollover) {
 		this.indexSelector = indexSelector;
+		this.rollover = rollover;
 		this.indexPrefix = indexPrefix;
 		this.optimizeIndicesOlderThanDays = optimizeIndicesOlderThanDays;
 		this.elasticsearchClient = elasticsearchClient;
@@ -24,7 +31,7 @@ public class OptimizeIndicesTask extends TimerTask {
 
 	@Override
 	public void run() {
-		final String indexPatternOlderThanDays = indexSelector.getIndexPatternOlderThanDays(indexPrefix, optimizeIndicesOlderThanDays);
+		final String indexPatternOlderThanDays = indexSelector.getIndexPatternOlderThanDays(indexPrefix, optimizeIndicesOlderThanDays, rollover);
 		elasticsearchClient.optimizeIndices(indexPatternOlderThanDays);
 	}
 }
@@ -21,10 +21,17 @@ public class ShardAllocationTask extends TimerTask {
 	private final ElasticsearchClient elasticsearchClient;
 	private final String boxType;
 	private final IndexSelector indexSelector;
+	private final IndexRollover rollover;
 
 	public ShardAllocationTask(IndexSelector indexSelector, String indexPrefix, int invokeForIndicesOlderThanDays,
 							   ElasticsearchClient elasticsearchClient, String boxType) {
+		this(indexSelector, indexPrefix, invokeForIndicesOlderThanDays, elasticsearchClient, boxType, IndexRollover.DAILY);
+	}
+
+	public ShardAllocationTask(IndexSelector indexSelector, String indexPrefix, int invokeForIndicesOlderThanDays,
+							   ElasticsearchClient elasticsearchClient, String boxType, IndexRollover rollover) {
 		this.indexSelector = indexSelector;
+		this.rollover = rollover;
 		this.indexPrefix = indexPrefix;
 		this.moveToColdNodesAfterDays = invokeForIndicesOlderThanDays;
 		this.elasticsearchClient = elasticsearchClient;
@@ -33,7 +40,7 @@ public class ShardAllocationTask extends TimerTask {
 
 	@Override
 	public void run() {
-		final String indexPatternOlderThanDays = indexSelector.getIndexPatternOlderThanDays(indexPrefix, moveToColdNodesAfterDays);
+		final String indexPatternOlderThanDays = indexSelector.getIndexPatternOlderThanDays(indexPrefix, moveToColdNodesAfterDays, rollover);
 		elasticsearchClient.updateIndexSettings(indexPatternOlderThanDays, Collections.singletonMap("index.routing.allocation.require.box_type", boxType));
 	}
 }
@@ -0,0 +1,64 @@
+package org.stagemonitor.core.elasticsearch;
+
+/**
+ * Provides the name of the current logstash-style index, for example stagemonitor-requests-2016.03.15.
+ * <p/>
+ * The name is only computed once per {@link IndexRollover} period (for example at midnight UTC for daily indices)
+ * and is cached in between, so that getting the name of the index for each document that is indexed is cheap.
+ * This class is thread safe.
+ */
+public class TimeBasedIndexName {
+
+	private final String prefix;
+	private final IndexRollover rollover;
+	private volatile CachedName cachedName = new CachedName(null, Long.MIN_VALUE, Long.MIN_VALUE);
+
+	/**
+	 * @param prefix   the prefix of the index, for example stagemonitor-requests-
+	 * @param rollover how often a new index should be created
+	 */
+	public TimeBasedIndexName(String prefix, IndexRollover rollover) {
+		this.prefix = prefix;
+		this.rollover = rollover;
+	}
+
+	/**
+	 * @return the name of the index for the current time
+	 */
+	public String getIndexName() {
+		return getIndexName(System.currentTimeMillis());
+	}
+
+	/**
+	 * @param time the time in milliseconds since epoch
+	 * @return the name of the index for the given time
+	 */
+	public String getIndexName(long time) {
+		CachedName name = cachedName;
+		if (time < name.validFrom || time >= name.validUntil) {
+			name = new CachedName(prefix + rollover.getIndexSuffix(time), rollover.getStartOfPeriod(time), rollover.getStartOfNextPeriod(time));
+			cachedName = name;
+		}
+		return name.indexName;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public IndexRollover getRollover() {
+		return rollover;
+	}
+
+	private static class CachedName {
+		private final String indexName;
+		private final long validFrom;
+		private final long validUntil;
+
+		private CachedName(String indexName, long validFrom, long validUntil) {
+			this.indexName = indexName;
+			this.validFrom = validFrom;
+			this.validUntil = validUntil;
+		}
+	}
+}
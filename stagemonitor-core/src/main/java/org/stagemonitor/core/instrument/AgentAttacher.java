@@ -18,6 +18,7 @@ import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
 import java.lang.stagemonitor.dispatcher.Dispatcher;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -38,6 +39,7 @@ import org.stagemonitor.core.CorePlugin;
 import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.util.ClassUtils;
 import org.stagemonitor.core.util.IOUtils;
+import org.stagemonitor.core.util.StringUtils;
 
 /**
  * Attaches the {@link ByteBuddyAgent} at runtime and registers all {@link StagemonitorByteBuddyTransformer}s
@@ -57,6 +59,7 @@ public class AgentAttacher {
 	private static boolean runtimeAttached = false;
 	private static Set<String> hashCodesOfClassLoadersToIgnore = Collections.emptySet();
 	private static Instrumentation instrumentation;
+	private static InstrumentationPlan instrumentationPlan;
 
 	private AgentAttacher() {
 	}
@@ -89,6 +92,9 @@ public class AgentAttacher {
 				}
 				// This ClassLoader is shutting down so don't try to retransform classes of it in the future
 				hashCodesOfClassLoadersToIgnore.add(ClassUtils.getIdentityString(AgentAttacher.class.getClassLoader()));
+				if (instrumentationPlan != null) {
+					instrumentationPlan.save();
+				}
 			}
 		};
 	}
@@ -142,8 +148,10 @@ public class AgentAttacher {
 	}
 
 	private static ClassFileTransformer initByteBuddyClassFileTransformer() {
+		final Iterable<StagemonitorByteBuddyTransformer> transformers = getStagemonitorByteBuddyTransformers();
+		instrumentationPlan = createInstrumentationPlan(transformers);
 		AgentBuilder agentBuilder = createAgentBuilder();
-		for (StagemonitorByteBuddyTransformer transformer : getStagemonitorByteBuddyTransformers()) {
+		for (StagemonitorByteBuddyTransformer transformer : transformers) {
 			agentBuilder = agentBuilder
 					.type(transformer.getMatcher())
 					.transform(transformer.getTransformer())
@@ -160,15 +168,33 @@ public class AgentAttacher {
 		}
 	}
 
+	private static InstrumentationPlan createInstrumentationPlan(Iterable<StagemonitorByteBuddyTransformer> transformers) {
+		final String planFile = corePlugin.getInstrumentationPlanFile();
+		if (StringUtils.isEmpty(planFile)) {
+			return null;
+		}
+		final List<Collection<String>> config = new ArrayList<Collection<String>>();
+		config.add(corePlugin.getIncludePackages());
+		config.add(corePlugin.getExcludePackages());
+		config.add(corePlugin.getExcludeContaining());
+		config.add(corePlugin.getExcludedInstrumenters());
+		final String fingerprint = InstrumentationPlan.fingerprint(AgentAttacher.class.getClassLoader(), transformers, config);
+		return new InstrumentationPlan(new File(planFile), fingerprint);
+	}
+
 	private static AgentBuilder createAgentBuilder() {
-		return new AgentBuilder.Default(new ByteBuddy().with(TypeValidation.of(corePlugin.isDebugInstrumentation())))
+		AgentBuilder.Ignored ignored = new AgentBuilder.Default(new ByteBuddy().with(TypeValidation.of(corePlugin.isDebugInstrumentation())))
 				.with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
-				.with(corePlugin.isDebugInstrumentation() ? new ErrorLoggingListener() : AgentBuilder.Listener.NoOp.INSTANCE)
+				.with(getListener())
 				.with(binaryLocator)
 				.ignore(any(), timed("classloader", "bootstrap", isBootstrapClassLoader()))
 				.or(any(), timed("classloader", "reflection", isReflectionClassLoader()))
 				.or(any(), timed("classloader", "groovy-call-site", classLoaderWithName("org.codehaus.groovy.runtime.callsite.CallSiteClassLoader")))
-				.or(any(), new IsIgnoredClassLoaderElementMatcher())
+				.or(any(), new IsIgnoredClassLoaderElementMatcher());
+		if (instrumentationPlan != null) {
+			ignored = ignored.or(instrumentationPlan.isKnownToBeIgnored());
+		}
+		return ignored
 				.or(timed("type", "global-exclude", nameStartsWith("java")
 						.or(nameStartsWith("com.sun."))
 						.or(nameStartsWith("sun."))
@@ -186,6 +212,14 @@ public class AgentAttacher {
 				.disableClassFormatChanges();
 	}
 
+	private static AgentBuilder.Listener getListener() {
+		final AgentBuilder.Listener listener = corePlugin.isDebugInstrumentation() ? new ErrorLoggingListener() : AgentBuilder.Listener.NoOp.INSTANCE;
+		if (instrumentationPlan != null) {
+			return new AgentBuilder.Listener.Compound(listener, instrumentationPlan);
+		}
+		return listener;
+	}
+
 	private static Iterable<StagemonitorByteBuddyTransformer> getStagemonitorByteBuddyTransformers() {
 		List<StagemonitorByteBuddyTransformer> transformers = new ArrayList<StagemonitorByteBuddyTransformer>();
 		for (StagemonitorByteBuddyTransformer transformer : ServiceLoader.load(StagemonitorByteBuddyTransformer.class, Stagemonitor.class.getClassLoader())) {
@@ -0,0 +1,255 @@
+package org.stagemonitor.core.instrument;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.ProtectionDomain;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stagemonitor.core.util.StringUtils;
+
+/**
+ * Remembers the types that have not been transformed by any {@link StagemonitorByteBuddyTransformer} so that on the
+ * next start of the application the matchers of the transformers don't have to be evaluated for those types again.
+ * <p/>
+ * The plan is keyed by a fingerprint of the class path, the active transformers and the instrumentation related
+ * configuration. If the fingerprint of a persisted plan does not match the current one, the plan is discarded and
+ * rebuilt during this run.
+ * <p/>
+ * A type is remembered together with its class loader, as the same type name can refer to different types in
+ * different class loaders, for example in two web applications. Class loaders are identified by their type and by
+ * their class path, including the size and the last modification of each entry, so that types whose class files have
+ * changed are matched again. Types of other class loaders can't be identified reliably across restarts and are
+ * therefore not remembered.
+ */
+public class InstrumentationPlan extends AgentBuilder.Listener.Adapter {
+
+	private static final Logger logger = LoggerFactory.getLogger(InstrumentationPlan.class);
+
+	private final File file;
+	private final String fingerprint;
+	private final Set<String> previouslyIgnoredTypes;
+	private final Set<String> ignoredTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Set<String> transformedTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Map<ClassLoader, String> classLoaderIds = Collections.synchronizedMap(new WeakHashMap<ClassLoader, String>());
+
+	InstrumentationPlan(File file, String fingerprint) {
+		this.file = file;
+		this.fingerprint = fingerprint;
+		this.previouslyIgnoredTypes = load(file, fingerprint);
+	}
+
+	/**
+	 * Computes the fingerprint of the current instrumentation setup.
+	 *
+	 * @param classLoader  the class loader whose class path should be considered
+	 * @param transformers the active transformers
+	 * @param config       additional configuration values that influence which types are matched
+	 * @return the fingerprint
+	 */
+	static String fingerprint(ClassLoader classLoader, Iterable<StagemonitorByteBuddyTransformer> transformers, Collection<?> config) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(System.getProperty("java.class.path")).append('\n');
+		for (ClassLoader cl = classLoader; cl != null; cl = cl.getParent()) {
+			if (cl instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) cl).getURLs()) {
+					appendClassPathEntry(sb, url);
+				}
+			}
+		}
+		for (StagemonitorByteBuddyTransformer transformer : transformers) {
+			sb.append(transformer.getClass().getName()).append('\n');
+		}
+		sb.append(config);
+		return StringUtils.sha1Hash(sb.toString());
+	}
+
+	private static void appendClassPathEntry(StringBuilder sb, URL url) {
+		sb.append(url).append(':');
+		if ("file".equals(url.getProtocol())) {
+			final File file = new File(url.getFile());
+			sb.append(file.length()).append(':').append(lastModified(file));
+		}
+		sb.append('\n');
+	}
+
+	/**
+	 * The last modification of a directory does not reflect modifications of nested files,
+	 * that's why the newest file of a directory tree is determined
+	 */
+	private static long lastModified(File file) {
+		long lastModified = file.lastModified();
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				lastModified = Math.max(lastModified, lastModified(child));
+			}
+		}
+		return lastModified;
+	}
+
+	private static Set<String> load(File file, String fingerprint) {
+		if (!file.isFile()) {
+			return Collections.emptySet();
+		}
+		final Set<String> types = new HashSet<String>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			if (!fingerprint.equals(reader.readLine())) {
+				logger.info("Discarding outdated instrumentation plan {}", file);
+				return Collections.emptySet();
+			}
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				types.add(line);
+			}
+			logger.info("Loaded instrumentation plan {} ({} ignored types)", file, types.size());
+			return types;
+		} catch (IOException e) {
+			logger.warn("Failed to load instrumentation plan " + file, e);
+			return Collections.emptySet();
+		} finally {
+			close(reader);
+		}
+	}
+
+	/**
+	 * Persists the types that have been ignored by all transformers during this run.
+	 * <p/>
+	 * The plan is written to a temporary file which then replaces the plan file, so that other JVMs that share the plan
+	 * file never read a partially written plan.
+	 */
+	public void save() {
+		final Set<String> types = new LinkedHashSet<String>(ignoredTypes);
+		types.removeAll(transformedTypes);
+		File tempFile = null;
+		BufferedWriter writer = null;
+		try {
+			tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+			writer.write(fingerprint);
+			for (String type : types) {
+				writer.newLine();
+				writer.write(type);
+			}
+			writer.close();
+			replace(tempFile, file);
+			logger.info("Saved instrumentation plan {} ({} ignored types)", file, types.size());
+		} catch (IOException e) {
+			logger.warn("Failed to save instrumentation plan " + file, e);
+		} finally {
+			close(writer);
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private static void replace(File source, File target) throws IOException {
+		// renaming is atomic on POSIX file systems, but fails on Windows if the target exists
+		if (!source.renameTo(target) && !(target.delete() && source.renameTo(target))) {
+			throw new IOException("Failed to rename " + source + " to " + target);
+		}
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Matches types which have not been transformed by any transformer the last time the application was started
+	 *
+	 * @return the matcher
+	 */
+	public AgentBuilder.RawMatcher isKnownToBeIgnored() {
+		return new AgentBuilder.RawMatcher() {
+			@Override
+			public boolean matches(TypeDescription typeDescription, ClassLoader classLoader, Class<?> classBeingRedefined,
+								   ProtectionDomain protectionDomain) {
+				if (previouslyIgnoredTypes.isEmpty()) {
+					return false;
+				}
+				final String key = getKey(typeDescription, classLoader);
+				return key != null && previouslyIgnoredTypes.contains(key);
+			}
+		};
+	}
+
+	@Override
+	public void onTransformation(TypeDescription typeDescription, ClassLoader classLoader, DynamicType dynamicType) {
+		final String key = getKey(typeDescription, classLoader);
+		if (key != null) {
+			transformedTypes.add(key);
+		}
+	}
+
+	@Override
+	public void onIgnored(TypeDescription typeDescription, ClassLoader classLoader) {
+		final String key = getKey(typeDescription, classLoader);
+		if (key != null) {
+			ignoredTypes.add(key);
+		}
+	}
+
+	/**
+	 * @return the key of the type or <code>null</code>, if the type can't be remembered
+	 */
+	private String getKey(TypeDescription typeDescription, ClassLoader classLoader) {
+		final String classLoaderId = getClassLoaderId(classLoader);
+		if (classLoaderId.isEmpty()) {
+			return null;
+		}
+		return classLoaderId + ' ' + typeDescription.getName();
+	}
+
+	/**
+	 * @return the id of the class loader or an empty string, if the class loader can't be identified
+	 */
+	private String getClassLoaderId(ClassLoader classLoader) {
+		if (classLoader == null) {
+			return "bootstrap";
+		}
+		String id = classLoaderIds.get(classLoader);
+		if (id == null) {
+			id = "";
+			if (classLoader instanceof URLClassLoader) {
+				final URL[] urls = ((URLClassLoader) classLoader).getURLs();
+				if (urls.length > 0) {
+					final StringBuilder classPath = new StringBuilder();
+					for (URL url : urls) {
+						appendClassPathEntry(classPath, url);
+					}
+					id = classLoader.getClass().getName() + '@' + StringUtils.sha1Hash(classPath.toString());
+				}
+			}
+			classLoaderIds.put(classLoader, id);
+		}
+		return id;
+	}
+}
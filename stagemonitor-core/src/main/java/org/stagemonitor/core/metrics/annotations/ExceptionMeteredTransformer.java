@@ -10,18 +10,26 @@ import java.lang.annotation.Target;
 import java.util.Arrays;
 import java.util.List;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.annotation.ExceptionMetered;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.annotation.AnnotationDescription;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.method.ParameterDescription;
 import net.bytebuddy.matcher.ElementMatcher;
-import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.instrument.StagemonitorByteBuddyTransformer;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.core.metrics.metrics2.MetricName;
 
 public class ExceptionMeteredTransformer extends StagemonitorByteBuddyTransformer {
 
+	private static final SignatureMetricCache<Meter> meters = new SignatureMetricCache<Meter>() {
+		@Override
+		protected Meter getOrCreate(Metric2Registry registry, String signature) {
+			return registry.meter(getMetricName(signature));
+		}
+	};
+
 	@Override
 	protected ElementMatcher.Junction<MethodDescription.InDefinedShape> getExtraMethodElementMatcher() {
 		return isAnnotatedWith(ExceptionMetered.class);
@@ -30,10 +38,14 @@ public class ExceptionMeteredTransformer extends StagemonitorByteBuddyTransforme
 	@Advice.OnMethodExit(onThrowable = Exception.class, inline = false)
 	public static void meterException(@ExceptionMeteredSignature String signature, @MeterExceptionsFor Class<? extends Exception> cause, @Advice.Thrown Throwable e) {
 		if (e != null && cause.isInstance(e)) {
-			Stagemonitor.getMetric2Registry().meter(getMetricName(signature)).mark();
+			getMeter(signature).mark();
 		}
 	}
 
+	public static Meter getMeter(String signature) {
+		return meters.get(signature);
+	}
+
 	public static MetricName getMetricName(String signature) {
 		return name("exception_rate").tag("signature", signature).build();
 	}
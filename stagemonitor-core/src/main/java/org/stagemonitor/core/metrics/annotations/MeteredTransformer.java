@@ -10,18 +10,27 @@ import java.lang.annotation.Target;
 import java.util.Collections;
 import java.util.List;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.annotation.Metered;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.matcher.ElementMatcher;
-import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.instrument.StagemonitorByteBuddyTransformer;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
 
 /**
  * Implementation for the {@link Metered} annotation
  */
 public class MeteredTransformer extends StagemonitorByteBuddyTransformer {
 
+	private static final SignatureMetricCache<Meter> meters = new SignatureMetricCache<Meter>() {
+		@Override
+		protected Meter getOrCreate(Metric2Registry registry, String signature) {
+			return registry.meter(getMetricName(signature));
+		}
+	};
+
 	@Override
 	protected ElementMatcher.Junction<MethodDescription.InDefinedShape> getExtraMethodElementMatcher() {
 		return isAnnotatedWith(Metered.class);
@@ -29,7 +38,15 @@ public class MeteredTransformer extends StagemonitorByteBuddyTransformer {
 
 	@Advice.OnMethodEnter
 	public static void meter(@MeteredSignature String signature) {
-		Stagemonitor.getMetric2Registry().meter(name("rate").tag("signature", signature).build()).mark();
+		getMeter(signature).mark();
+	}
+
+	public static Meter getMeter(String signature) {
+		return meters.get(signature);
+	}
+
+	public static MetricName getMetricName(String signature) {
+		return name("rate").tag("signature", signature).build();
 	}
 
 	@Override
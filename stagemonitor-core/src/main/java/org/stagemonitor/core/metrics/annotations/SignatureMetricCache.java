@@ -0,0 +1,54 @@
+package org.stagemonitor.core.metrics.annotations;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.codahale.metrics.Metric;
+import org.stagemonitor.core.Stagemonitor;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+
+/**
+ * Caches the metric of each instrumented method so that the {@link org.stagemonitor.core.metrics.metrics2.MetricName}
+ * does not have to be created and looked up in the {@link Metric2Registry} on every invocation.
+ * <p/>
+ * The signature which is passed to the advice is a constant of the instrumented class, so its hash code is only
+ * calculated once. A cached metric is discarded if it might have been removed from the registry in the meantime, for
+ * example by {@link Stagemonitor#reset()}.
+ *
+ * @param <T> the type of the metric
+ */
+abstract class SignatureMetricCache<T extends Metric> {
+
+	private final ConcurrentMap<String, CachedMetric<T>> metricsBySignature = new ConcurrentHashMap<String, CachedMetric<T>>();
+
+	T get(String signature) {
+		final Metric2Registry registry = Stagemonitor.getMetric2Registry();
+		final CachedMetric<T> cachedMetric = metricsBySignature.get(signature);
+		if (cachedMetric != null && cachedMetric.isValid(registry)) {
+			return cachedMetric.metric;
+		}
+		// has to be read before the metric is obtained so that a concurrent removal invalidates the cached metric
+		final long removalCount = registry.getRemovalCount();
+		final T metric = getOrCreate(registry, signature);
+		metricsBySignature.put(signature, new CachedMetric<T>(metric, registry, removalCount));
+		return metric;
+	}
+
+	protected abstract T getOrCreate(Metric2Registry registry, String signature);
+
+	private static class CachedMetric<T> {
+		private final T metric;
+		private final Metric2Registry registry;
+		private final long removalCount;
+
+		private CachedMetric(T metric, Metric2Registry registry, long removalCount) {
+			this.metric = metric;
+			this.registry = registry;
+			this.removalCount = removalCount;
+		}
+
+		private boolean isValid(Metric2Registry currentRegistry) {
+			return registry == currentRegistry && removalCount == currentRegistry.getRemovalCount();
+		}
+	}
+}
@@ -18,8 +18,8 @@ import com.codahale.metrics.annotation.Timed;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.matcher.ElementMatcher;
-import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.instrument.StagemonitorByteBuddyTransformer;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.core.metrics.metrics2.MetricName;
 import org.stagemonitor.core.util.ClassUtils;
 
@@ -28,6 +28,13 @@ import org.stagemonitor.core.util.ClassUtils;
  */
 public class TimedTransformer extends StagemonitorByteBuddyTransformer {
 
+	private static final SignatureMetricCache<Timer> timers = new SignatureMetricCache<Timer>() {
+		@Override
+		protected Timer getOrCreate(Metric2Registry registry, String signature) {
+			return registry.timer(getTimerName(signature));
+		}
+	};
+
 	private final Set<Class<?>> asyncCallAnnotations = new HashSet<Class<?>>();
 
 	public TimedTransformer() {
@@ -56,7 +63,11 @@ public class TimedTransformer extends StagemonitorByteBuddyTransformer {
 
 	@Advice.OnMethodEnter
 	public static Timer.Context startTimer(@TimedSignature String signature) {
-		return Stagemonitor.getMetric2Registry().timer(getTimerName(signature)).time();
+		return getTimer(signature).time();
+	}
+
+	public static Timer getTimer(String signature) {
+		return timers.get(signature);
 	}
 
 	public static MetricName getTimerName(String signature) {
@@ -5,7 +5,15 @@ import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
@@ -15,15 +23,21 @@ import com.codahale.metrics.Metered;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.Snapshot;
 import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformSnapshot;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.io.SerializedString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stagemonitor.core.CorePlugin;
 import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.elasticsearch.IndexRollover;
+import org.stagemonitor.core.elasticsearch.TimeBasedIndexName;
+import org.stagemonitor.core.util.ExecutorUtils;
 import org.stagemonitor.core.util.HttpClient;
 import org.stagemonitor.core.util.JsonUtils;
-import org.stagemonitor.core.util.StringUtils;
 
 public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 
@@ -35,9 +49,15 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 	private final Logger elasticsearchMetricsLogger;
 
 	private final Map<String, String> globalTags;
+	/**
+	 * The global tags as JSON fields (including a leading comma) which are the same for each metric
+	 */
+	private final SerializableString globalTagsFragment;
 	private final CorePlugin corePlugin;
 	private final HttpClient httpClient;
 	private final JsonFactory jfactory = new JsonFactory();
+	private final TimeBasedIndexName metricsIndexName = new TimeBasedIndexName(STAGEMONITOR_METRICS_INDEX_PREFIX, IndexRollover.DAILY);
+	private volatile ExecutorService shardExecutor;
 
 	public static ElasticsearchReporter.Builder forRegistry(Metric2Registry registry, CorePlugin corePlugin) {
 		return new Builder(registry, corePlugin);
@@ -49,9 +69,25 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 		this.globalTags = builder.getGlobalTags();
 		this.httpClient = builder.getHttpClient();
 		this.jfactory.setCodec(JsonUtils.getMapper());
+		this.jfactory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		this.globalTagsFragment = new SerializedString(toJsonFieldsFragment(globalTags));
 		this.corePlugin = builder.getCorePlugin();
 	}
 
+	private String toJsonFieldsFragment(Map<String, String> tags) {
+		final StringBuilder sb = new StringBuilder();
+		final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+		for (Map.Entry<String, String> entry : tags.entrySet()) {
+			sb.append(",\"").append(encoder.quoteAsString(entry.getKey())).append("\":");
+			if (entry.getValue() == null) {
+				sb.append("null");
+			} else {
+				sb.append('"').append(encoder.quoteAsString(entry.getValue())).append('"');
+			}
+		}
+		return sb.toString();
+	}
+
 	@Override
 	public void reportMetrics(final Map<MetricName, Gauge> gauges,
 							  final Map<MetricName, Counter> counters,
@@ -59,14 +95,18 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 							  final Map<MetricName, Meter> meters,
 							  final Map<MetricName, Timer> timers) {
 		final Timer.Context time = registry.timer(name("reporting_time").tag("reporter", "elasticsearch").build()).time();
-		final MetricsOutputStreamHandler metricsOutputStreamHandler = new MetricsOutputStreamHandler(gauges, counters, histograms, meters, timers);
+		final long timestamp = clock.getTime();
 		if (!corePlugin.isOnlyLogElasticsearchMetricReports()) {
-			httpClient.send("POST", corePlugin.getElasticsearchUrl() + "/_bulk", null,
-					metricsOutputStreamHandler);
+			final List<MetricsOutputStreamHandler> shards = splitIntoShards(timestamp, gauges, counters, histograms, meters, timers);
+			if (shards.size() == 1) {
+				sendBulkRequest(shards.get(0));
+			} else {
+				sendInParallel(shards);
+			}
 		} else {
 			try {
 				final ByteArrayOutputStream os = new ByteArrayOutputStream();
-				metricsOutputStreamHandler.withHttpURLConnection(os);
+				new MetricsOutputStreamHandler(timestamp, gauges, counters, histograms, meters, timers).withHttpURLConnection(os);
 				elasticsearchMetricsLogger.info(os.toString("UTF-8"));
 			} catch (IOException e) {
 				logger.warn(e.getMessage(), e);
@@ -75,10 +115,99 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 		time.stop();
 	}
 
+	/**
+	 * Splits the metrics into shards of {@link CorePlugin#getElasticsearchReportingShardSize()} metrics, so that
+	 * large registries can be serialized and sent in parallel
+	 */
+	private List<MetricsOutputStreamHandler> splitIntoShards(long timestamp, Map<MetricName, Gauge> gauges,
+															 Map<MetricName, Counter> counters,
+															 Map<MetricName, Histogram> histograms,
+															 Map<MetricName, Meter> meters,
+															 Map<MetricName, Timer> timers) {
+		final int shardSize = corePlugin.getElasticsearchReportingShardSize();
+		final int size = gauges.size() + counters.size() + histograms.size() + meters.size() + timers.size();
+		if (shardSize < 1 || size <= shardSize) {
+			return Collections.singletonList(new MetricsOutputStreamHandler(timestamp, gauges, counters, histograms, meters, timers));
+		}
+		final Shards shards = new Shards(timestamp, shardSize);
+		for (Map.Entry<MetricName, Gauge> entry : gauges.entrySet()) {
+			shards.next().gauges.put(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<MetricName, Counter> entry : counters.entrySet()) {
+			shards.next().counters.put(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<MetricName, Histogram> entry : histograms.entrySet()) {
+			shards.next().histograms.put(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<MetricName, Meter> entry : meters.entrySet()) {
+			shards.next().meters.put(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<MetricName, Timer> entry : timers.entrySet()) {
+			shards.next().timers.put(entry.getKey(), entry.getValue());
+		}
+		return shards.shards;
+	}
+
+	private void sendInParallel(List<MetricsOutputStreamHandler> shards) {
+		final List<Future<?>> futures = new ArrayList<Future<?>>(shards.size());
+		for (final MetricsOutputStreamHandler shard : shards) {
+			futures.add(getShardExecutor().submit(new Runnable() {
+				@Override
+				public void run() {
+					sendBulkRequest(shard);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				logger.warn(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	private void sendBulkRequest(MetricsOutputStreamHandler metricsOutputStreamHandler) {
+		httpClient.send("POST", corePlugin.getElasticsearchUrl() + "/_bulk", null, metricsOutputStreamHandler);
+	}
+
+	/**
+	 * The executor is only created if the metrics actually have to be split into multiple shards. It is only accessed
+	 * by the reporting thread.
+	 */
+	private ExecutorService getShardExecutor() {
+		if (shardExecutor == null) {
+			shardExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new ExecutorUtils.NamedThreadFactory("stagemonitor-elasticsearch-reporter-shard"));
+		}
+		return shardExecutor;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		if (shardExecutor != null) {
+			shardExecutor.shutdown();
+		}
+	}
+
 	public void reportMetrics(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters,
 							  Map<MetricName, Histogram> histograms, final Map<MetricName, Meter> meters,
 							  Map<MetricName, Timer> timers, OutputStream os, byte[] bulkActionBytes) throws IOException {
-		long timestamp = clock.getTime();
+		reportMetrics(gauges, counters, histograms, meters, timers, os, bulkActionBytes, clock.getTime());
+	}
+
+	private void reportMetrics(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters,
+							   Map<MetricName, Histogram> histograms, final Map<MetricName, Meter> meters,
+							   Map<MetricName, Timer> timers, OutputStream os, byte[] bulkActionBytes,
+							   long timestamp) throws IOException {
+		final JsonGenerator jg = jfactory.createGenerator(os);
+		// the documents are separated by the bulk action header and a new line
+		jg.setRootValueSeparator(null);
+		final SerializableString bulkAction = new SerializedString(new String(bulkActionBytes, "UTF-8"));
 
 		reportMetric(gauges, timestamp, new ValueWriter<Gauge>() {
 			public void writeValues(Gauge gauge, JsonGenerator jg) throws IOException {
@@ -94,33 +223,38 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 					jg.writeStringField("value_string", value.toString());
 				}
 			}
-		}, os, bulkActionBytes);
+		}, jg, bulkAction);
 		reportMetric(counters, timestamp, new ValueWriter<Counter>() {
 			public void writeValues(Counter counter, JsonGenerator jg) throws IOException {
 				jg.writeObjectField("count", counter.getCount());
 			}
-		}, os, bulkActionBytes);
+		}, jg, bulkAction);
 		reportMetric(histograms, timestamp, new ValueWriter<Histogram>() {
 			public void writeValues(Histogram histogram, JsonGenerator jg) throws IOException {
 				final Snapshot snapshot = histogram.getSnapshot();
 				jg.writeNumberField("count", histogram.getCount());
 				writeSnapshot(snapshot, jg);
 			}
-		}, os, bulkActionBytes);
+		}, jg, bulkAction);
 		reportMetric(meters, timestamp, new ValueWriter<Meter>() {
 			public void writeValues(Meter meter, JsonGenerator jg) throws IOException {
 				writeMetered(meter, jg);
 			}
-		}, os, bulkActionBytes);
+		}, jg, bulkAction);
 		reportMetric(timers, timestamp, new ValueWriter<Timer>() {
 			public void writeValues(Timer timer, JsonGenerator jg) throws IOException {
 				writeMetered(timer, jg);
 				writeSnapshot(timer.getSnapshot(), jg);
 			}
-		}, os, bulkActionBytes);
+		}, jg, bulkAction);
+		jg.close();
 	}
 
 	private void writeSnapshot(Snapshot snapshot, JsonGenerator jg) throws IOException {
+		if (snapshot instanceof UniformSnapshot) {
+			writeUniformSnapshot(snapshot.getValues(), jg);
+			return;
+		}
 		writeDoubleUnlessNaN(jg, "min", convertDuration(snapshot.getMin()));
 		writeDoubleUnlessNaN(jg, "max", convertDuration(snapshot.getMax()));
 		writeDoubleUnlessNaN(jg, "mean", convertDuration(snapshot.getMean()));
@@ -134,6 +268,56 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 		writeDoubleUnlessNaN(jg, "p999", convertDuration(snapshot.get999thPercentile()));
 	}
 
+	/**
+	 * Calculates all values of a {@link UniformSnapshot} in a single pass over the sorted values. The results are the
+	 * same as the ones of the corresponding methods of {@link UniformSnapshot}, which each iterate over the values.
+	 * <p/>
+	 * The values of a {@link com.codahale.metrics.WeightedSnapshot} can't be calculated this way, because the weights
+	 * of the values are not accessible.
+	 */
+	private void writeUniformSnapshot(long[] sortedValues, JsonGenerator jg) throws IOException {
+		final int length = sortedValues.length;
+		double mean = 0;
+		double sumOfSquaredDeviations = 0;
+		for (int i = 0; i < length; i++) {
+			// Welford's algorithm
+			final double delta = sortedValues[i] - mean;
+			mean += delta / (i + 1);
+			sumOfSquaredDeviations += delta * (sortedValues[i] - mean);
+		}
+		writeDoubleUnlessNaN(jg, "min", convertDuration(length == 0 ? 0 : sortedValues[0]));
+		writeDoubleUnlessNaN(jg, "max", convertDuration(length == 0 ? 0 : sortedValues[length - 1]));
+		writeDoubleUnlessNaN(jg, "mean", convertDuration(mean));
+		writeDoubleUnlessNaN(jg, "median", convertDuration(getQuantile(sortedValues, 0.5)));
+		writeDoubleUnlessNaN(jg, "std", convertDuration(length <= 1 ? 0 : Math.sqrt(sumOfSquaredDeviations / (length - 1))));
+		writeDoubleUnlessNaN(jg, "p25", convertDuration(getQuantile(sortedValues, 0.25)));
+		writeDoubleUnlessNaN(jg, "p75", convertDuration(getQuantile(sortedValues, 0.75)));
+		writeDoubleUnlessNaN(jg, "p95", convertDuration(getQuantile(sortedValues, 0.95)));
+		writeDoubleUnlessNaN(jg, "p98", convertDuration(getQuantile(sortedValues, 0.98)));
+		writeDoubleUnlessNaN(jg, "p99", convertDuration(getQuantile(sortedValues, 0.99)));
+		writeDoubleUnlessNaN(jg, "p999", convertDuration(getQuantile(sortedValues, 0.999)));
+	}
+
+	/**
+	 * Same as {@link UniformSnapshot#getValue(double)}
+	 */
+	private static double getQuantile(long[] sortedValues, double quantile) {
+		if (sortedValues.length == 0) {
+			return 0.0;
+		}
+		final double pos = quantile * (sortedValues.length + 1);
+		final int index = (int) pos;
+		if (index < 1) {
+			return sortedValues[0];
+		}
+		if (index >= sortedValues.length) {
+			return sortedValues[sortedValues.length - 1];
+		}
+		final double lower = sortedValues[index - 1];
+		final double upper = sortedValues[index];
+		return lower + (pos - Math.floor(pos)) * (upper - lower);
+	}
+
 	private void writeMetered(Metered metered, JsonGenerator jg) throws IOException {
 		jg.writeNumberField("count", metered.getCount());
 		writeDoubleUnlessNaN(jg, "m1_rate", convertRate(metered.getOneMinuteRate()));
@@ -143,21 +327,19 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 	}
 
 	private <T extends Metric> void reportMetric(Map<MetricName, T> metrics, long timestamp, ValueWriter<T> valueWriter,
-												 OutputStream os, byte[] bulkActionBytes) throws IOException {
+												 JsonGenerator jg, SerializableString bulkAction) throws IOException {
 
 		for (Map.Entry<MetricName, T> entry : metrics.entrySet()) {
-			os.write(bulkActionBytes);
-			final JsonGenerator jg = jfactory.createGenerator(os);
+			jg.writeRaw(bulkAction);
 			jg.writeStartObject();
 			MetricName metricName = entry.getKey();
 			jg.writeNumberField("@timestamp", timestamp);
 			jg.writeStringField("name", metricName.getName());
 			writeMap(jg, metricName.getTags());
-			writeMap(jg, globalTags);
+			jg.writeRaw(globalTagsFragment);
 			valueWriter.writeValues(entry.getValue(), jg);
 			jg.writeEndObject();
-			jg.flush();
-			os.write('\n');
+			jg.writeRaw('\n');
 		}
 	}
 
@@ -169,7 +351,7 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 
 	private void writeMap(JsonGenerator jg, Map<String, String> map) throws IOException {
 		for (Map.Entry<String, String> entry : map.entrySet()) {
-			jg.writeObjectField(entry.getKey(), entry.getValue());
+			jg.writeStringField(entry.getKey(), entry.getValue());
 		}
 	}
 
@@ -178,13 +360,20 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 	}
 
 	private class MetricsOutputStreamHandler implements HttpClient.OutputStreamHandler {
+		private final long timestamp;
 		private final Map<MetricName, Gauge> gauges;
 		private final Map<MetricName, Counter> counters;
 		private final Map<MetricName, Histogram> histograms;
 		private final Map<MetricName, Meter> meters;
 		private final Map<MetricName, Timer> timers;
 
-		public MetricsOutputStreamHandler(Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters, Map<MetricName, Histogram> histograms, Map<MetricName, Meter> meters, Map<MetricName, Timer> timers) {
+		private MetricsOutputStreamHandler(long timestamp) {
+			this(timestamp, new HashMap<MetricName, Gauge>(), new HashMap<MetricName, Counter>(),
+					new HashMap<MetricName, Histogram>(), new HashMap<MetricName, Meter>(), new HashMap<MetricName, Timer>());
+		}
+
+		private MetricsOutputStreamHandler(long timestamp, Map<MetricName, Gauge> gauges, Map<MetricName, Counter> counters, Map<MetricName, Histogram> histograms, Map<MetricName, Meter> meters, Map<MetricName, Timer> timers) {
+			this.timestamp = timestamp;
 			this.gauges = gauges;
 			this.counters = counters;
 			this.histograms = histograms;
@@ -194,13 +383,37 @@ public class ElasticsearchReporter extends ScheduledMetrics2Reporter {
 
 		@Override
 		public void withHttpURLConnection(OutputStream os) throws IOException {
-			String bulkAction = ElasticsearchClient.getBulkHeader("index", STAGEMONITOR_METRICS_INDEX_PREFIX + StringUtils.getLogstashStyleDate(), METRICS_TYPE);
+			String bulkAction = ElasticsearchClient.getBulkHeader("index", metricsIndexName.getIndexName(), METRICS_TYPE);
 			byte[] bulkActionBytes = bulkAction.getBytes("UTF-8");
-			reportMetrics(gauges, counters, histograms, meters, timers, os, bulkActionBytes);
+			reportMetrics(gauges, counters, histograms, meters, timers, os, bulkActionBytes, timestamp);
 			os.close();
 		}
 	}
 
+	private class Shards {
+		private final long timestamp;
+		private final int shardSize;
+		private final List<MetricsOutputStreamHandler> shards = new ArrayList<MetricsOutputStreamHandler>();
+		private int sizeOfCurrentShard;
+
+		private Shards(long timestamp, int shardSize) {
+			this.timestamp = timestamp;
+			this.shardSize = shardSize;
+		}
+
+		/**
+		 * Returns the shard the next metric should be added to
+		 */
+		private MetricsOutputStreamHandler next() {
+			if (shards.isEmpty() || sizeOfCurrentShard == shardSize) {
+				shards.add(new MetricsOutputStreamHandler(timestamp));
+				sizeOfCurrentShard = 0;
+			}
+			sizeOfCurrentShard++;
+			return shards.get(shards.size() - 1);
+		}
+	}
+
 	public static class Builder extends ScheduledMetrics2Reporter.Builder<ElasticsearchReporter, Builder> {
 		private HttpClient httpClient = new HttpClient();
 		private Logger elasticsearchMetricsLogger = LoggerFactory.getLogger(ES_METRICS_LOGGER);
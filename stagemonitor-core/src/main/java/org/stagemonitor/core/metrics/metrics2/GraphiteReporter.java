@@ -0,0 +1,235 @@
+package org.stagemonitor.core.metrics.metrics2;
+
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.graphite.GraphiteSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports the metrics of a {@link Metric2Registry} to Graphite.
+ * <p/>
+ * In contrast to Dropwizard's {@link com.codahale.metrics.graphite.GraphiteReporter}, this reporter does not need the
+ * legacy {@link com.codahale.metrics.MetricRegistry} and caches the graphite names of the metrics. The connection to
+ * Graphite is kept open between reports and is only re-established if sending fails. If the
+ * {@link GraphiteSender} is a {@link com.codahale.metrics.graphite.PickledGraphite}, the values are sent in batches
+ * via the pickle protocol.
+ * <p/>
+ * The metric names are compatible with the ones of Dropwizard's GraphiteReporter.
+ */
+public class GraphiteReporter extends ScheduledMetrics2Reporter {
+
+	private static final Logger logger = LoggerFactory.getLogger(GraphiteReporter.class);
+
+	private final GraphiteSender graphite;
+	private final String prefix;
+	/**
+	 * The graphite names (including the prefix) by metric name. Only accessed by the reporting thread.
+	 */
+	private final Map<MetricName, String> graphiteNames = new HashMap<MetricName, String>();
+	private long removalCount;
+
+	public static Builder forRegistry(Metric2Registry registry) {
+		return new Builder(registry);
+	}
+
+	private GraphiteReporter(Builder builder) {
+		super(builder);
+		this.graphite = builder.getGraphite();
+		this.prefix = builder.getPrefix();
+		this.removalCount = registry.getRemovalCount();
+	}
+
+	@Override
+	public void reportMetrics(Map<MetricName, Gauge> gauges,
+							  Map<MetricName, Counter> counters,
+							  Map<MetricName, Histogram> histograms,
+							  Map<MetricName, Meter> meters,
+							  Map<MetricName, Timer> timers) {
+		final Timer.Context time = registry.timer(name("reporting_time").tag("reporter", "graphite").build()).time();
+		evictRemovedMetrics();
+		final long timestamp = clock.getTime() / 1000;
+		try {
+			if (!graphite.isConnected()) {
+				graphite.connect();
+			}
+			reportGauges(gauges, timestamp);
+			reportCounters(counters, timestamp);
+			reportHistograms(histograms, timestamp);
+			reportMeters(meters, timestamp);
+			reportTimers(timers, timestamp);
+			graphite.flush();
+		} catch (IOException e) {
+			logger.warn("Unable to report to Graphite: {}. Reconnecting on next report.", e.getMessage());
+			closeConnection();
+		} finally {
+			time.stop();
+		}
+	}
+
+	private void evictRemovedMetrics() {
+		final long currentRemovalCount = registry.getRemovalCount();
+		if (currentRemovalCount != removalCount) {
+			graphiteNames.clear();
+			removalCount = currentRemovalCount;
+		}
+	}
+
+	private void reportGauges(Map<MetricName, Gauge> gauges, long timestamp) throws IOException {
+		for (Map.Entry<MetricName, Gauge> entry : gauges.entrySet()) {
+			final Object value = entry.getValue().getValue();
+			if (value instanceof Number) {
+				send(getGraphiteName(entry.getKey()), ((Number) value).doubleValue(), timestamp);
+			}
+		}
+	}
+
+	private void reportCounters(Map<MetricName, Counter> counters, long timestamp) throws IOException {
+		for (Map.Entry<MetricName, Counter> entry : counters.entrySet()) {
+			send(entry.getKey(), "count", entry.getValue().getCount(), timestamp);
+		}
+	}
+
+	private void reportHistograms(Map<MetricName, Histogram> histograms, long timestamp) throws IOException {
+		for (Map.Entry<MetricName, Histogram> entry : histograms.entrySet()) {
+			final Histogram histogram = entry.getValue();
+			send(entry.getKey(), "count", histogram.getCount(), timestamp);
+			reportSnapshot(entry.getKey(), histogram.getSnapshot(), false, timestamp);
+		}
+	}
+
+	private void reportMeters(Map<MetricName, Meter> meters, long timestamp) throws IOException {
+		for (Map.Entry<MetricName, Meter> entry : meters.entrySet()) {
+			reportMetered(entry.getKey(), entry.getValue(), timestamp);
+		}
+	}
+
+	private void reportTimers(Map<MetricName, Timer> timers, long timestamp) throws IOException {
+		for (Map.Entry<MetricName, Timer> entry : timers.entrySet()) {
+			final Timer timer = entry.getValue();
+			reportSnapshot(entry.getKey(), timer.getSnapshot(), true, timestamp);
+			reportMetered(entry.getKey(), timer, timestamp);
+		}
+	}
+
+	private void reportSnapshot(MetricName name, Snapshot snapshot, boolean convertDurations, long timestamp) throws IOException {
+		send(name, "max", convert(snapshot.getMax(), convertDurations), timestamp);
+		send(name, "mean", convert(snapshot.getMean(), convertDurations), timestamp);
+		send(name, "min", convert(snapshot.getMin(), convertDurations), timestamp);
+		send(name, "stddev", convert(snapshot.getStdDev(), convertDurations), timestamp);
+		send(name, "p50", convert(snapshot.getMedian(), convertDurations), timestamp);
+		send(name, "p75", convert(snapshot.get75thPercentile(), convertDurations), timestamp);
+		send(name, "p95", convert(snapshot.get95thPercentile(), convertDurations), timestamp);
+		send(name, "p98", convert(snapshot.get98thPercentile(), convertDurations), timestamp);
+		send(name, "p99", convert(snapshot.get99thPercentile(), convertDurations), timestamp);
+		send(name, "p999", convert(snapshot.get999thPercentile(), convertDurations), timestamp);
+	}
+
+	private void reportMetered(MetricName name, Metered metered, long timestamp) throws IOException {
+		send(name, "count", metered.getCount(), timestamp);
+		send(name, "m1_rate", convertRate(metered.getOneMinuteRate()), timestamp);
+		send(name, "m5_rate", convertRate(metered.getFiveMinuteRate()), timestamp);
+		send(name, "m15_rate", convertRate(metered.getFifteenMinuteRate()), timestamp);
+		send(name, "mean_rate", convertRate(metered.getMeanRate()), timestamp);
+	}
+
+	private double convert(double value, boolean convertDuration) {
+		return convertDuration ? convertDuration(value) : value;
+	}
+
+	private void send(MetricName name, String suffix, long value, long timestamp) throws IOException {
+		graphite.send(getGraphiteName(name) + '.' + suffix, Long.toString(value), timestamp);
+	}
+
+	private void send(MetricName name, String suffix, double value, long timestamp) throws IOException {
+		send(getGraphiteName(name) + '.' + suffix, value, timestamp);
+	}
+
+	private void send(String graphiteName, double value, long timestamp) throws IOException {
+		if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+			graphite.send(graphiteName, Double.toString(value), timestamp);
+		}
+	}
+
+	private String getGraphiteName(MetricName name) {
+		String graphiteName = graphiteNames.get(name);
+		if (graphiteName == null) {
+			graphiteName = prefix + name.toGraphiteName();
+			graphiteNames.put(name, graphiteName);
+		}
+		return graphiteName;
+	}
+
+	private void closeConnection() {
+		try {
+			graphite.close();
+		} catch (IOException e) {
+			logger.debug("Error closing the connection to Graphite", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		closeConnection();
+	}
+
+	public static class Builder extends ScheduledMetrics2Reporter.Builder<GraphiteReporter, Builder> {
+		private GraphiteSender graphite;
+		private String prefix = "";
+
+		private Builder(Metric2Registry registry) {
+			super(registry, "stagemonitor-graphite-reporter");
+		}
+
+		public GraphiteSender getGraphite() {
+			return graphite;
+		}
+
+		public String getPrefix() {
+			return prefix;
+		}
+
+		/**
+		 * Prefix all metric names with the given string.
+		 *
+		 * @param prefix the prefix for all metric names
+		 * @return {@code this}
+		 */
+		public Builder prefixedWith(String prefix) {
+			this.prefix = prefix == null || prefix.isEmpty() ? "" : prefix + '.';
+			return this;
+		}
+
+		/**
+		 * Builds a reporter that sends the metrics via the given {@link GraphiteSender}
+		 *
+		 * @param graphite a {@link com.codahale.metrics.graphite.Graphite} or a
+		 *                 {@link com.codahale.metrics.graphite.PickledGraphite}
+		 * @return a {@link GraphiteReporter}
+		 */
+		public GraphiteReporter build(GraphiteSender graphite) {
+			this.graphite = graphite;
+			return build();
+		}
+
+		@Override
+		public GraphiteReporter build() {
+			if (graphite == null) {
+				throw new IllegalStateException("No GraphiteSender configured, use build(GraphiteSender)");
+			}
+			return new GraphiteReporter(this);
+		}
+	}
+}
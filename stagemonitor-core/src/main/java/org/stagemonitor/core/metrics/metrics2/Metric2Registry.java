@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.ExponentiallyDecayingReservoir;
@@ -18,19 +19,27 @@ import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricSet;
 import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A metrics registry that does not use a simple dotted metric name but a key-value pair for the metric identity
  */
 public class Metric2Registry implements Metric2Set {
 
+	private static final Logger logger = LoggerFactory.getLogger(Metric2Registry.class);
+
 	private final ConcurrentMap<MetricName, Metric> metrics;
 	
 	// An internal reference to a legacy Dropwizard Metric Registry
 	// that we echo registration/removal of Metrics to so that it
 	// matches the state of our registry and supports the Dropwizard
 	// Metrics listener and reporting patterns.
-	private final MetricRegistry metricRegistry;
+	// It is only created if it is requested via getMetricRegistry() as
+	// keeping it in sync doubles the memory and the cost of registering metrics.
+	private volatile MetricRegistry metricRegistry;
+
+	private final AtomicLong removalCount = new AtomicLong();
 
 	public Metric2Registry() {
 		this(new ConcurrentHashMap<MetricName, Metric>());
@@ -38,7 +47,6 @@ public class Metric2Registry implements Metric2Set {
 
 	public Metric2Registry(ConcurrentMap<MetricName, Metric> metrics) {
 		this.metrics = metrics;
-		this.metricRegistry = new MetricRegistry();
 	}
 
 	/**
@@ -63,7 +71,10 @@ public class Metric2Registry implements Metric2Set {
 				// This is a new metric - we have to register the Metric with
 				// the legacy Dropwizard Metric registry as
 				// well to support existing reports and listeners
-				metricRegistry.register(name.toGraphiteName(), metric);
+				final MetricRegistry legacyRegistry = this.metricRegistry;
+				if (legacyRegistry != null) {
+					registerLegacy(legacyRegistry, name, metric);
+				}
 			}
 		}
 		return metric;
@@ -159,14 +170,30 @@ public class Metric2Registry implements Metric2Set {
 	public boolean remove(MetricName name) {
 		final Metric metric = metrics.remove(name);
 		if (metric != null) {
+			removalCount.incrementAndGet();
 			// We have to unregister the Metric with the legacy Dropwizard Metric registry as
 			// well to support existing reports and listeners
-			metricRegistry.remove(name.toGraphiteName());
+			final MetricRegistry legacyRegistry = this.metricRegistry;
+			if (legacyRegistry != null) {
+				legacyRegistry.remove(name.toGraphiteName());
+			}
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Returns the number of metrics which have been removed from this registry so far.
+	 * <p/>
+	 * If the count has not changed, a metric which has been obtained from this registry is guaranteed to be still
+	 * registered. This makes it possible to safely cache metrics without looking them up every time.
+	 *
+	 * @return the number of removed metrics
+	 */
+	public long getRemovalCount() {
+		return removalCount.get();
+	}
+
 	/**
 	 * Returns a set of the names of all the metrics in the registry.
 	 *
@@ -403,11 +430,42 @@ public class Metric2Registry implements Metric2Set {
 
 	/**
 	 * Returns the wrapped legacy {@link MetricRegistry}
+	 * <p/>
+	 * The legacy registry is created on the first call of this method and is kept in sync with this registry from then
+	 * on. Stagemonitor's reporters work directly with the {@link Metric2Registry}, so the legacy registry is only
+	 * created if it is needed, for example to expose the metrics via JMX.
 	 *
 	 * @return the wrapped legacy {@link MetricRegistry}
 	 */
 	public MetricRegistry getMetricRegistry() {
-		return metricRegistry;
+		MetricRegistry legacyRegistry = metricRegistry;
+		if (legacyRegistry == null) {
+			synchronized (this) {
+				legacyRegistry = metricRegistry;
+				if (legacyRegistry == null) {
+					legacyRegistry = new MetricRegistry();
+					// publish the registry before copying the metrics so that concurrently registered metrics are
+					// either copied or registered by the registering thread
+					metricRegistry = legacyRegistry;
+					for (Map.Entry<MetricName, Metric> entry : metrics.entrySet()) {
+						registerLegacy(legacyRegistry, entry.getKey(), entry.getValue());
+					}
+				}
+			}
+		}
+		return legacyRegistry;
+	}
+
+	private static void registerLegacy(MetricRegistry legacyRegistry, MetricName name, Metric metric) {
+		try {
+			legacyRegistry.register(name.toGraphiteName(), metric);
+		} catch (IllegalArgumentException e) {
+			// the metric may have been registered by a concurrent call already
+			if (legacyRegistry.getMetrics().get(name.toGraphiteName()) != metric) {
+				logger.warn("Can't register the metric {} in the legacy metric registry, because another metric " +
+						"is already registered as {}", name, name.toGraphiteName());
+			}
+		}
 	}
 
 }
@@ -0,0 +1,125 @@
+package org.stagemonitor.core.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * Hashes strings and returns the hex representation of the hash
+ */
+public enum HashFunction {
+
+	/**
+	 * A cryptographic hash. Use this if it must not be possible to find out the original value.
+	 */
+	SHA1 {
+		@Override
+		public String hash(String s) {
+			return StringUtils.sha1Hash(s);
+		}
+	},
+	/**
+	 * A fast, non-cryptographic 128 bit hash (MurmurHash3 x64 128). Use this if only the uniqueness of the hash
+	 * matters.
+	 */
+	MURMUR3_128 {
+		@Override
+		public String hash(String s) {
+			if (s == null) {
+				return null;
+			}
+			return murmur3Hash128(s.getBytes(UTF_8));
+		}
+	};
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	/**
+	 * @param s the string to hash
+	 * @return the hex representation of the hash or <code>null</code>, if the string is <code>null</code>
+	 */
+	public abstract String hash(String s);
+
+	static String murmur3Hash128(byte[] data) {
+		final int length = data.length;
+		final int blocks = length / 16;
+		long h1 = 0;
+		long h2 = 0;
+
+		for (int i = 0; i < blocks; i++) {
+			long k1 = getLittleEndianLong(data, i * 16);
+			long k2 = getLittleEndianLong(data, i * 16 + 8);
+
+			h1 ^= mixK1(k1);
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			h2 ^= mixK2(k2);
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+
+		final int tail = blocks * 16;
+		long k1 = 0;
+		long k2 = 0;
+		for (int i = length - tail - 1; i >= 8; i--) {
+			k2 = (k2 << 8) | (data[tail + i] & 0xffL);
+		}
+		for (int i = Math.min(length - tail, 8) - 1; i >= 0; i--) {
+			k1 = (k1 << 8) | (data[tail + i] & 0xffL);
+		}
+		h1 ^= mixK1(k1);
+		h2 ^= mixK2(k2);
+
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		h2 += h1;
+
+		final byte[] hash = new byte[16];
+		putLittleEndianLong(hash, 0, h1);
+		putLittleEndianLong(hash, 8, h2);
+		return StringUtils.bytesToHex(hash);
+	}
+
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		return k1 * C2;
+	}
+
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		return k2 * C1;
+	}
+
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	private static long getLittleEndianLong(byte[] data, int offset) {
+		long value = 0;
+		for (int i = 7; i >= 0; i--) {
+			value = (value << 8) | (data[offset + i] & 0xffL);
+		}
+		return value;
+	}
+
+	private static void putLittleEndianLong(byte[] bytes, int offset, long value) {
+		for (int i = 0; i < 8; i++) {
+			bytes[offset + i] = (byte) (value >>> (i * 8));
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package org.stagemonitor.core.util;
+
+/**
+ * Generates the ids of requests, for example the id of a request trace or the request id that is put into the MDC.
+ * <p/>
+ * To use a custom implementation, add the fully qualified class name of your implementation to
+ * <code>src/main/resources/META-INF/services/org.stagemonitor.core.util.RequestIdGenerator</code>.
+ * If there is no custom implementation, {@link TimeBasedRequestIdGenerator} is used.
+ * <p/>
+ * Implementations must be thread safe and should be fast, as a id is generated for each request.
+ */
+public interface RequestIdGenerator {
+
+	/**
+	 * @return a new, unique request id
+	 */
+	String generateRequestId();
+
+}
@@ -0,0 +1,47 @@
+package org.stagemonitor.core.util;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides access to the {@link RequestIdGenerator} that is registered via {@link ServiceLoader}
+ */
+public final class RequestIdGenerators {
+
+	private static final Logger logger = LoggerFactory.getLogger(RequestIdGenerators.class);
+
+	private static final RequestIdGenerator requestIdGenerator = loadRequestIdGenerator();
+
+	private RequestIdGenerators() {
+	}
+
+	private static RequestIdGenerator loadRequestIdGenerator() {
+		final Iterator<RequestIdGenerator> generators = ServiceLoader.load(RequestIdGenerator.class,
+				RequestIdGenerators.class.getClassLoader()).iterator();
+		if (generators.hasNext()) {
+			final RequestIdGenerator generator = generators.next();
+			logger.info("Using {} to generate request ids", generator.getClass().getName());
+			return generator;
+		}
+		return new TimeBasedRequestIdGenerator();
+	}
+
+	/**
+	 * @return the {@link RequestIdGenerator} in use
+	 */
+	public static RequestIdGenerator getRequestIdGenerator() {
+		return requestIdGenerator;
+	}
+
+	/**
+	 * Generates a request id with the registered {@link RequestIdGenerator}
+	 *
+	 * @return a new, unique request id
+	 */
+	public static String generateRequestId() {
+		return requestIdGenerator.generateRequestId();
+	}
+}
@@ -12,10 +12,26 @@ import java.util.Date;
 import java.util.TimeZone;
 import java.util.regex.Pattern;
 
+import org.stagemonitor.core.elasticsearch.IndexRollover;
+
 public class StringUtils {
 
 	private static final Pattern CAMEL_CASE = Pattern.compile("(?<=[A-Z])(?=[A-Z][a-z])|(?<=[^A-Z])(?=[A-Z])|(?<=[A-Za-z])(?=[^A-Za-z])");
 	private static final char[] hexArray = "0123456789abcdef".toCharArray();
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	/**
+	 * {@link MessageDigest#getInstance(String)} is comparatively expensive, so each thread reuses its digest
+	 */
+	private static final ThreadLocal<MessageDigest> sha1 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
 
 	private StringUtils() {
 	}
@@ -77,9 +93,7 @@ public class StringUtils {
 	}
 
 	public static String getLogstashStyleDate(long time) {
-		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd");
-		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-		return dateFormat.format(new Date(time));
+		return IndexRollover.DAILY.getIndexSuffix(time);
 	}
 
 	public static String replaceWhitespacesWithDash(String s) {
@@ -109,13 +123,7 @@ public class StringUtils {
 		if (s == null) {
 			return null;
 		}
-		final MessageDigest messageDigest;
-		try {
-			messageDigest = MessageDigest.getInstance("SHA-1");
-		} catch (NoSuchAlgorithmException e) {
-			throw new IllegalStateException(e);
-		}
-		final byte[] digest = messageDigest.digest(s.getBytes(Charset.forName("UTF-8")));
+		final byte[] digest = sha1.get().digest(s.getBytes(UTF_8));
 		return bytesToHex(digest);
 	}
 
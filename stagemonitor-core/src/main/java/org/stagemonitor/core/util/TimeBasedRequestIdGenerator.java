@@ -0,0 +1,64 @@
+package org.stagemonitor.core.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time ordered request ids that consist of the current time, a counter and a random node id.
+ * <p/>
+ * Example: <code>0154a1b2c3d40001-3f5a9c0e12ab</code>
+ * <p/>
+ * The first part contains the milliseconds since epoch in the upper 48 bits and a counter in the lower 16 bits.
+ * It is strictly increasing within a JVM, even if more than 65536 ids are generated per millisecond or if the clock
+ * goes backwards. The second part identifies the JVM and is created once on startup. As all parts are hex encoded with
+ * a fixed width, the ids sort in the order they have been created, which keeps the index of Elasticsearch compact.
+ * <p/>
+ * In contrast to {@link java.util.UUID#randomUUID()} generating an id does not need a lock or a {@link SecureRandom},
+ * it is just a compare and set of an {@link AtomicLong}.
+ */
+public class TimeBasedRequestIdGenerator implements RequestIdGenerator {
+
+	private static final int COUNTER_BITS = 16;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final AtomicLong lastTimeAndCounter = new AtomicLong();
+	private final String nodeId;
+
+	public TimeBasedRequestIdGenerator() {
+		this(new SecureRandom().nextLong());
+	}
+
+	TimeBasedRequestIdGenerator(long nodeId) {
+		final char[] chars = new char[12];
+		appendHex(chars, 0, nodeId, 12);
+		this.nodeId = new String(chars);
+	}
+
+	@Override
+	public String generateRequestId() {
+		final long timeAndCounter = nextTimeAndCounter(System.currentTimeMillis());
+		final char[] chars = new char[16 + 1 + nodeId.length()];
+		appendHex(chars, 0, timeAndCounter, 16);
+		chars[16] = '-';
+		nodeId.getChars(0, nodeId.length(), chars, 17);
+		return new String(chars);
+	}
+
+	long nextTimeAndCounter(long currentTimeMillis) {
+		final long now = currentTimeMillis << COUNTER_BITS;
+		while (true) {
+			final long last = lastTimeAndCounter.get();
+			final long next = now > last ? now : last + 1;
+			if (lastTimeAndCounter.compareAndSet(last, next)) {
+				return next;
+			}
+		}
+	}
+
+	private static void appendHex(char[] chars, int offset, long value, int digits) {
+		for (int i = digits - 1; i >= 0; i--) {
+			chars[offset + i] = HEX[(int) (value & 0xf)];
+			value >>>= 4;
+		}
+	}
+}
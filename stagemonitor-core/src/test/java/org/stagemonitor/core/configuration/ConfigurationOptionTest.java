@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -136,4 +137,24 @@ public class ConfigurationOptionTest {
 		testUpdate.update("updated!", "Test Configuration Source");
 		assertEquals("updated!", testUpdate.getValue());
 	}
+
+	@Test
+	public void testChangeListener() throws IOException {
+		final List<String> changes = new ArrayList<String>();
+		testUpdate.addChangeListener(new ConfigurationOption.ChangeListener<String>() {
+			@Override
+			public void onChange(ConfigurationOption<?> configurationOption, String oldValue, String newValue) {
+				changes.add(oldValue + "->" + newValue);
+			}
+		});
+		final long version = configuration.getVersion();
+
+		configuration.reloadDynamicConfigurationOptions();
+		assertEquals(Collections.<String>emptyList(), changes);
+		assertEquals(version, configuration.getVersion());
+
+		testUpdate.update("updated!", "Test Configuration Source");
+		assertEquals(Collections.singletonList("null->updated!"), changes);
+		assertEquals(version + 1, configuration.getVersion());
+	}
 }
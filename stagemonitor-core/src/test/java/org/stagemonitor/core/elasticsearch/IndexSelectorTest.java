@@ -3,6 +3,11 @@ package org.stagemonitor.core.elasticsearch;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
 import com.codahale.metrics.Clock;
 import org.junit.Before;
 import org.junit.Test;
@@ -39,4 +44,53 @@ public class IndexSelectorTest {
 		final String indexPattern = indexSelector.getIndexPatternOlderThanDays("metrics-", 2);
 		assertEquals("metrics-*,-metrics-1970.01.08,-metrics-1970.01.07,-metrics-1970.01.06", indexPattern);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testSelectHourlyIndices() throws Exception {
+		when(clock.getTime()).thenReturn(DateUtils.getDayInMillis() * 7);
+		final String indexPattern = indexSelector.getIndexPatternOlderThanDays("requests-", 2, IndexRollover.HOURLY);
+		assertEquals("requests-*,-requests-1970.01.08*,-requests-1970.01.07*,-requests-1970.01.06*", indexPattern);
+	}
+
+	@Test
+	public void testSelectMixedDailyAndHourlyIndices() throws Exception {
+		when(clock.getTime()).thenReturn(DateUtils.getDayInMillis() * 7);
+		final String indexPattern = indexSelector.getIndexPatternOlderThanDays("requests-", 2, IndexRollover.HOURLY);
+		final List<String> indices = Arrays.asList("requests-1970.01.05", "requests-1970.01.05.23", "requests-1970.01.06",
+				"requests-1970.01.06.00", "requests-1970.01.07", "requests-1970.01.08.12");
+		assertEquals(Arrays.asList("requests-1970.01.05", "requests-1970.01.05.23"), selectIndices(indexPattern, indices));
+	}
+
+	@Test
+	public void testSelectWeeklyIndices() throws Exception {
+		when(clock.getTime()).thenReturn(DateUtils.getDayInMillis() * 14);
+		final String indexPattern = indexSelector.getIndexPatternOlderThanDays("requests-", 1, IndexRollover.WEEKLY);
+		assertEquals("requests-*,-requests-1970.01.15,-requests-1970.01.14,-requests-1970.01.13,-requests-1970.01.12," +
+				"-requests-1970.01.11,-requests-1970.01.10,-requests-1970.01.09,-requests-1970.01.08", indexPattern);
+	}
+
+	/**
+	 * Resolves a multi index pattern like elasticsearch does
+	 */
+	private static List<String> selectIndices(String indexPattern, List<String> indices) {
+		final List<String> selected = new ArrayList<String>();
+		for (String index : indices) {
+			boolean included = false;
+			for (String pattern : indexPattern.split(",")) {
+				if (pattern.startsWith("-")) {
+					included &= !matches(pattern.substring(1), index);
+				} else {
+					included |= matches(pattern, index);
+				}
+			}
+			if (included) {
+				selected.add(index);
+			}
+		}
+		return selected;
+	}
+
+	private static boolean matches(String pattern, String index) {
+		return index.matches(Pattern.quote(pattern).replace("*", "\\E.*\\Q"));
+	}
+}
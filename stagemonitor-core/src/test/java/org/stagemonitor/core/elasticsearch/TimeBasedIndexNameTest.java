@@ -0,0 +1,60 @@
+package org.stagemonitor.core.elasticsearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class TimeBasedIndexNameTest {
+
+	@Test
+	public void testDaily() throws Exception {
+		final TimeBasedIndexName indexName = new TimeBasedIndexName("stagemonitor-requests-", IndexRollover.DAILY);
+		assertEquals("stagemonitor-requests-2016.03.15", indexName.getIndexName(parse("2016-03-15 00:00:00")));
+		assertEquals("stagemonitor-requests-2016.03.15", indexName.getIndexName(parse("2016-03-15 23:59:59")));
+		assertEquals("stagemonitor-requests-2016.03.16", indexName.getIndexName(parse("2016-03-16 00:00:00")));
+		assertEquals("stagemonitor-requests-2016.02.29", indexName.getIndexName(parse("2016-02-29 12:00:00")));
+		assertEquals("stagemonitor-requests-1969.12.31", indexName.getIndexName(-1));
+	}
+
+	@Test
+	public void testNameIsCached() throws Exception {
+		final TimeBasedIndexName indexName = new TimeBasedIndexName("stagemonitor-requests-", IndexRollover.DAILY);
+		assertSame(indexName.getIndexName(parse("2016-03-15 01:00:00")), indexName.getIndexName(parse("2016-03-15 02:00:00")));
+	}
+
+	@Test
+	public void testHourly() throws Exception {
+		final TimeBasedIndexName indexName = new TimeBasedIndexName("stagemonitor-requests-", IndexRollover.HOURLY);
+		assertEquals("stagemonitor-requests-2016.03.15.00", indexName.getIndexName(parse("2016-03-15 00:59:59")));
+		assertEquals("stagemonitor-requests-2016.03.15.13", indexName.getIndexName(parse("2016-03-15 13:00:00")));
+		assertEquals("stagemonitor-requests-1969.12.31.23", indexName.getIndexName(-1));
+	}
+
+	@Test
+	public void testWeekly() throws Exception {
+		final TimeBasedIndexName indexName = new TimeBasedIndexName("stagemonitor-requests-", IndexRollover.WEEKLY);
+		assertEquals("stagemonitor-requests-2016.03.14", indexName.getIndexName(parse("2016-03-14 00:00:00")));
+		assertEquals("stagemonitor-requests-2016.03.14", indexName.getIndexName(parse("2016-03-20 23:59:59")));
+		assertEquals("stagemonitor-requests-2016.03.21", indexName.getIndexName(parse("2016-03-21 00:00:00")));
+		assertEquals("stagemonitor-requests-2015.12.28", indexName.getIndexName(parse("2016-01-01 00:00:00")));
+	}
+
+	@Test
+	public void testSameAsSimpleDateFormat() throws Exception {
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		for (long time = parse("1900-01-01 00:00:00"); time < parse("2200-01-01 00:00:00"); time += 12345678901L) {
+			assertEquals(dateFormat.format(time), IndexRollover.DAILY.getIndexSuffix(time));
+		}
+	}
+
+	private static long parse(String date) throws Exception {
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return dateFormat.parse(date).getTime();
+	}
+}
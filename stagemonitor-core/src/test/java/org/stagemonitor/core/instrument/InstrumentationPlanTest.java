@@ -0,0 +1,128 @@
+package org.stagemonitor.core.instrument;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import net.bytebuddy.description.type.TypeDescription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstrumentationPlanTest {
+
+	private final TypeDescription ignoredType = new TypeDescription.ForLoadedType(String.class);
+	private final TypeDescription transformedType = new TypeDescription.ForLoadedType(Integer.class);
+	private final ClassLoader classLoader = getClass().getClassLoader();
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("instrumentation-plan", ".txt");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	@Test
+	public void testEmptyPlanIgnoresNothing() throws Exception {
+		final InstrumentationPlan plan = new InstrumentationPlan(file, "fingerprint");
+		assertFalse(isKnownToBeIgnored(plan, ignoredType, classLoader));
+	}
+
+	@Test
+	public void testRememberIgnoredTypes() throws Exception {
+		final InstrumentationPlan plan = new InstrumentationPlan(file, "fingerprint");
+		plan.onIgnored(ignoredType, classLoader);
+		plan.onIgnored(transformedType, classLoader);
+		plan.onTransformation(transformedType, classLoader, null);
+		plan.save();
+
+		final InstrumentationPlan nextPlan = new InstrumentationPlan(file, "fingerprint");
+		assertTrue(isKnownToBeIgnored(nextPlan, ignoredType, classLoader));
+		assertFalse(isKnownToBeIgnored(nextPlan, transformedType, classLoader));
+	}
+
+	@Test
+	public void testIgnoredTypesAreKeyedByClassLoader() throws Exception {
+		final ClassLoader otherClassLoader = new URLClassLoader(new URL[]{new File("other").toURI().toURL()}, null);
+		final InstrumentationPlan plan = new InstrumentationPlan(file, "fingerprint");
+		plan.onIgnored(ignoredType, classLoader);
+		plan.save();
+
+		final InstrumentationPlan nextPlan = new InstrumentationPlan(file, "fingerprint");
+		assertTrue(isKnownToBeIgnored(nextPlan, ignoredType, classLoader));
+		assertFalse(isKnownToBeIgnored(nextPlan, ignoredType, otherClassLoader));
+	}
+
+	@Test
+	public void testDontRememberTypesOfClassLoadersWithoutClassPath() throws Exception {
+		final ClassLoader otherClassLoader = new ClassLoader(null) {
+		};
+		final InstrumentationPlan plan = new InstrumentationPlan(file, "fingerprint");
+		plan.onIgnored(ignoredType, otherClassLoader);
+		plan.save();
+
+		assertFalse(isKnownToBeIgnored(new InstrumentationPlan(file, "fingerprint"), ignoredType, new ClassLoader(null) {
+		}));
+	}
+
+	@Test
+	public void testMatchTypesAgainIfClassPathEntryChanged() throws Exception {
+		final File classes = File.createTempFile("classes", ".jar");
+		try {
+			final URL[] classPath = {classes.toURI().toURL()};
+			final InstrumentationPlan plan = new InstrumentationPlan(file, "fingerprint");
+			plan.onIgnored(ignoredType, new URLClassLoader(classPath, null));
+			plan.save();
+			assertTrue(isKnownToBeIgnored(new InstrumentationPlan(file, "fingerprint"), ignoredType, new URLClassLoader(classPath, null)));
+
+			// the application has been redeployed with different classes
+			final FileOutputStream out = new FileOutputStream(classes);
+			out.write(42);
+			out.close();
+
+			assertFalse(isKnownToBeIgnored(new InstrumentationPlan(file, "fingerprint"), ignoredType, new URLClassLoader(classPath, null)));
+		} finally {
+			classes.delete();
+		}
+	}
+
+	@Test
+	public void testDiscardPlanIfFingerprintChanged() throws Exception {
+		final InstrumentationPlan plan = new InstrumentationPlan(file, "fingerprint");
+		plan.onIgnored(ignoredType, classLoader);
+		plan.save();
+
+		assertFalse(isKnownToBeIgnored(new InstrumentationPlan(file, "changed"), ignoredType, classLoader));
+	}
+
+	@Test
+	public void testSaveReplacesPlanWithoutLeavingTemporaryFiles() throws Exception {
+		final InstrumentationPlan plan = new InstrumentationPlan(file, "fingerprint");
+		plan.onIgnored(ignoredType, classLoader);
+		plan.save();
+		plan.save();
+
+		assertTrue(isKnownToBeIgnored(new InstrumentationPlan(file, "fingerprint"), ignoredType, classLoader));
+		assertArrayEquals(new String[]{file.getName()}, file.getParentFile().list(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(file.getName());
+			}
+		}));
+	}
+
+	private static boolean isKnownToBeIgnored(InstrumentationPlan plan, TypeDescription type, ClassLoader classLoader) {
+		return plan.isKnownToBeIgnored().matches(type, classLoader, null, null);
+	}
+}
@@ -61,6 +61,17 @@ public class TimedInstrumenterTest {
 		assertOneTimerExists(name("timer").tag("signature", "TimedInstrumenterTest$TestObject#timedDefault").build());
 	}
 
+	@Test
+	public void testTimerIsRecreatedAfterRemoval() {
+		testObject.timedDefault();
+		Stagemonitor.getMetric2Registry().removeMatching(MetricFilter.ALL);
+		testObject.timedDefault();
+		testObject.timedDefault();
+		final MetricName timerName = name("timer").tag("signature", "TimedInstrumenterTest$TestObject#timedDefault").build();
+		assertOneTimerExists(timerName);
+		assertEquals(2, Stagemonitor.getMetric2Registry().getTimers().get(timerName).getCount());
+	}
+
 	@Test
 	public void testTimedAspectPrivate() {
 		testObject.timedPrivate();
@@ -3,9 +3,11 @@ package org.stagemonitor.core.metrics.metrics2;
 import static java.util.Collections.singleton;
 import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.counter;
@@ -29,6 +31,8 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Snapshot;
 import com.codahale.metrics.Timer;
 import org.junit.After;
 import org.junit.Before;
@@ -51,13 +55,14 @@ public class ElasticsearchReporterTest {
 	private CorePlugin corePlugin;
 	private Metric2Registry registry;
 	private Clock clock;
+	private HttpClient httpClient;
 
 	@Before
 	public void setUp() throws Exception {
 		this.clock = mock(Clock.class);
 		timestamp = System.currentTimeMillis();
 		when(clock.getTime()).thenReturn(timestamp);
-		final HttpClient httpClient = mock(HttpClient.class);
+		httpClient = mock(HttpClient.class);
 		when(httpClient.send(any(), any(), any(), any())).thenAnswer(new Answer<Integer>() {
 			@Override
 			public Integer answer(InvocationOnMock invocation) throws Throwable {
@@ -315,6 +320,52 @@ public class ElasticsearchReporterTest {
 				asMap(out));
 	}
 
+	@Test
+	public void testReportInShards() throws Exception {
+		when(corePlugin.getElasticsearchReportingShardSize()).thenReturn(2);
+		elasticsearchReporter.reportMetrics(
+				metricNameMap(name("gauge").build(), gauge(1)),
+				metricNameMap(name("counter1").build(), counter(1), name("counter2").build(), counter(2)),
+				metricNameMap(Histogram.class),
+				metricNameMap(Meter.class),
+				metricNameMap(Timer.class));
+
+		verify(httpClient, times(2)).send(eq("POST"), any(), any(), any());
+		final String jsons = new String(out.toByteArray());
+		assertEquals(jsons, 6, jsons.split("\n").length);
+		assertTrue(jsons.contains("\"name\":\"gauge\""));
+		assertTrue(jsons.contains("\"name\":\"counter1\""));
+		assertTrue(jsons.contains("\"name\":\"counter2\""));
+	}
+
+	@Test
+	public void testReportUniformSnapshot() throws Exception {
+		final Histogram histogram = new Histogram(new SlidingWindowReservoir(100));
+		for (long value : new long[]{3, 17, 1, 8, 42, 8, 5, 23, 13, 2}) {
+			histogram.update(value);
+		}
+		final Snapshot snapshot = histogram.getSnapshot();
+		elasticsearchReporter.reportMetrics(
+				metricNameMap(Gauge.class),
+				metricNameMap(Counter.class),
+				metricNameMap(name("histogram").build(), histogram),
+				metricNameMap(Meter.class),
+				metricNameMap(Timer.class));
+
+		final Map<String, Object> values = asMap(out);
+		assertEquals(snapshot.getMin(), (Double) values.get("min"), 0);
+		assertEquals(snapshot.getMax(), (Double) values.get("max"), 0);
+		assertEquals(snapshot.getMean(), (Double) values.get("mean"), 0.000001);
+		assertEquals(snapshot.getStdDev(), (Double) values.get("std"), 0.000001);
+		assertEquals(snapshot.getMedian(), (Double) values.get("median"), 0);
+		assertEquals(snapshot.getValue(0.25), (Double) values.get("p25"), 0);
+		assertEquals(snapshot.get75thPercentile(), (Double) values.get("p75"), 0);
+		assertEquals(snapshot.get95thPercentile(), (Double) values.get("p95"), 0);
+		assertEquals(snapshot.get98thPercentile(), (Double) values.get("p98"), 0);
+		assertEquals(snapshot.get99thPercentile(), (Double) values.get("p99"), 0);
+		assertEquals(snapshot.get999thPercentile(), (Double) values.get("p999"), 0);
+	}
+
 	private Map<String, Object> asMap(ByteArrayOutputStream os) throws java.io.IOException {
 		return asMap(new String(os.toByteArray()).split("\n")[1]);
 	}
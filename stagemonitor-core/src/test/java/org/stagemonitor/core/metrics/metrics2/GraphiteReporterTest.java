@@ -0,0 +1,129 @@
+package org.stagemonitor.core.metrics.metrics2;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.counter;
+import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.gauge;
+import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.meter;
+import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.metricNameMap;
+import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.snapshot;
+import static org.stagemonitor.core.metrics.MetricsReporterTestHelper.timer;
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.graphite.GraphiteSender;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class GraphiteReporterTest {
+
+	private static final long TIMESTAMP = 1400000000L;
+
+	private GraphiteSender graphite;
+	private GraphiteReporter graphiteReporter;
+
+	@Before
+	public void setUp() throws Exception {
+		graphite = mock(GraphiteSender.class);
+		Clock clock = mock(Clock.class);
+		when(clock.getTime()).thenReturn(TIMESTAMP * 1000);
+		graphiteReporter = GraphiteReporter.forRegistry(new Metric2Registry())
+				.prefixedWith("stagemonitor.app")
+				.convertRatesTo(TimeUnit.SECONDS)
+				.convertDurationsTo(TimeUnit.MILLISECONDS)
+				.clock(clock)
+				.build(graphite);
+	}
+
+	@Test
+	public void testReportGaugesAndCounters() throws Exception {
+		graphiteReporter.reportMetrics(
+				metricNameMap(name("cpu_usage").type("user").tag("core", "1").build(), gauge(3)),
+				metricNameMap(name("web_sessions").build(), counter(5)),
+				metricNameMap(Histogram.class),
+				metricNameMap(Meter.class),
+				metricNameMap(Timer.class));
+
+		final InOrder inOrder = inOrder(graphite);
+		inOrder.verify(graphite).connect();
+		inOrder.verify(graphite).send("stagemonitor.app.cpu_usage.user.1", "3.0", TIMESTAMP);
+		inOrder.verify(graphite).send("stagemonitor.app.web_sessions.count", "5", TIMESTAMP);
+		inOrder.verify(graphite).flush();
+	}
+
+	@Test
+	public void testReportTimers() throws Exception {
+		graphiteReporter.reportMetrics(
+				metricNameMap(Gauge.class),
+				metricNameMap(Counter.class),
+				metricNameMap(Histogram.class),
+				metricNameMap(Meter.class),
+				metricNameMap(name("response_time").tag("request_name", "Search").build(),
+						timer(1, 2, 3, 4, 5, snapshot(1000000, 2000000, 500000, 0, 1000000, 1500000, 2000000, 2000000, 2000000, 2000000))));
+
+		verify(graphite).send("stagemonitor.app.response_time.Search.mean", "1.0", TIMESTAMP);
+		verify(graphite).send("stagemonitor.app.response_time.Search.max", "2.0", TIMESTAMP);
+		verify(graphite).send("stagemonitor.app.response_time.Search.p75", "1.5", TIMESTAMP);
+		verify(graphite).send("stagemonitor.app.response_time.Search.count", "1", TIMESTAMP);
+		verify(graphite).send("stagemonitor.app.response_time.Search.m1_rate", "3.0", TIMESTAMP);
+		verify(graphite).send("stagemonitor.app.response_time.Search.mean_rate", "2.0", TIMESTAMP);
+	}
+
+	@Test
+	public void testKeepConnectionBetweenReports() throws Exception {
+		reportMeter();
+		when(graphite.isConnected()).thenReturn(true);
+		reportMeter();
+
+		verify(graphite, times(1)).connect();
+		verify(graphite, never()).close();
+		verify(graphite, times(2)).send("stagemonitor.app.requests.count", "1", TIMESTAMP);
+	}
+
+	@Test
+	public void testReconnectAfterFailure() throws Exception {
+		doThrow(new IOException("Broken pipe")).when(graphite).flush();
+		reportMeter();
+		verify(graphite).close();
+
+		reportMeter();
+		verify(graphite, times(2)).connect();
+	}
+
+	@Test
+	public void testDontReportNaN() throws Exception {
+		graphiteReporter.reportMetrics(
+				metricNameMap(name("ratio").build(), gauge(Double.NaN)),
+				metricNameMap(Counter.class),
+				metricNameMap(Histogram.class),
+				metricNameMap(Meter.class),
+				metricNameMap(Timer.class));
+
+		verify(graphite, never()).send(anyString(), anyString(), anyLong());
+	}
+
+	private void reportMeter() {
+		graphiteReporter.reportMetrics(
+				metricNameMap(Gauge.class),
+				metricNameMap(Counter.class),
+				metricNameMap(Histogram.class),
+				metricNameMap(name("requests").build(), meter(1)),
+				metricNameMap(Timer.class));
+	}
+}
@@ -47,6 +47,18 @@ public class Metric2RegistryTest {
 		assertEquals(0, registry.getMetricRegistry().getGauges().size());
 	}
 
+	@Test
+	public void testLegacyRegistryContainsMetricsRegisteredBeforeItWasCreated() {
+		Metric2Registry registry = new Metric2Registry();
+		registry.register(MetricName.name("test").tag("foo", "bar").build(), getGauge());
+
+		assertEquals(1, registry.getMetricRegistry().getGauges().size());
+		assertNotNull(registry.getMetricRegistry().getGauges().get("test.bar"));
+
+		registry.remove(MetricName.name("test").tag("foo", "bar").build());
+		assertEquals(0, registry.getMetricRegistry().getGauges().size());
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testDuplicateMetricNameEndsWithIllegalArgumentException() {
 		Metric2Registry registry = new Metric2Registry();
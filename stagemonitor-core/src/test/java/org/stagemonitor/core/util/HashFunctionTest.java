@@ -0,0 +1,31 @@
+package org.stagemonitor.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class HashFunctionTest {
+
+	@Test
+	public void testMurmur3Hash128() throws Exception {
+		// results from com.google.common.hash.Hashing.murmur3_128().hashString(s, UTF_8).toString()
+		assertEquals("00000000000000000000000000000000", HashFunction.MURMUR3_128.hash(""));
+		assertEquals("029bbd41b3a7d8cb191dae486a901e5b", HashFunction.MURMUR3_128.hash("hello"));
+		assertEquals("6c1b07bc7bbc4be347939ac4a93c437a", HashFunction.MURMUR3_128.hash("The quick brown fox jumps over the lazy dog"));
+		assertEquals("35edb12836153186c2ce15d086713736", HashFunction.MURMUR3_128.hash("127.0.0.1nullMozilla/5.0 äöü"));
+	}
+
+	@Test
+	public void testSha1() throws Exception {
+		assertEquals("a94a8fe5ccb19ba61c4c0873d391e987982fbbd3", HashFunction.SHA1.hash("test"));
+		assertEquals("a94a8fe5ccb19ba61c4c0873d391e987982fbbd3", HashFunction.SHA1.hash("test"));
+	}
+
+	@Test
+	public void testNull() throws Exception {
+		for (HashFunction hashFunction : HashFunction.values()) {
+			assertNull(hashFunction.hash(null));
+		}
+	}
+}
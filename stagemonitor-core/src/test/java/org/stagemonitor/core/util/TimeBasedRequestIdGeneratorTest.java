@@ -0,0 +1,71 @@
+package org.stagemonitor.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TimeBasedRequestIdGeneratorTest {
+
+	private final TimeBasedRequestIdGenerator generator = new TimeBasedRequestIdGenerator(0xabcdefL);
+
+	@Test
+	public void testFormat() throws Exception {
+		final String id = generator.generateRequestId();
+		assertTrue(id, id.matches("[0-9a-f]{16}-[0-9a-f]{12}"));
+		assertTrue(id, id.endsWith("-000000abcdef"));
+	}
+
+	@Test
+	public void testIdsAreOrdered() throws Exception {
+		String previous = generator.generateRequestId();
+		for (int i = 0; i < 100000; i++) {
+			final String id = generator.generateRequestId();
+			assertTrue(previous + " < " + id, previous.compareTo(id) < 0);
+			previous = id;
+		}
+	}
+
+	@Test
+	public void testCounterOverflowAndClockGoingBackwards() throws Exception {
+		assertEquals(1000L << 16, generator.nextTimeAndCounter(1000));
+		assertEquals((1000L << 16) + 1, generator.nextTimeAndCounter(1000));
+		assertEquals((1000L << 16) + 2, generator.nextTimeAndCounter(999));
+		for (int i = 0; i < 65535; i++) {
+			generator.nextTimeAndCounter(1000);
+		}
+		assertEquals((1001L << 16) + 2, generator.nextTimeAndCounter(1000));
+		assertEquals(1002L << 16, generator.nextTimeAndCounter(1002));
+	}
+
+	@Test
+	public void testUniqueAcrossThreads() throws Exception {
+		final ConcurrentHashMap<String, Boolean> ids = new ConcurrentHashMap<String, Boolean>();
+		final ExecutorService executorService = Executors.newFixedThreadPool(4);
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 4; i++) {
+			futures.add(executorService.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					for (int j = 0; j < 10000; j++) {
+						ids.put(generator.generateRequestId(), Boolean.TRUE);
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executorService.shutdown();
+		assertEquals(40000, ids.size());
+	}
+}
@@ -0,0 +1,21 @@
+package org.stagemonitor.requestmonitor;
+
+/**
+ * A {@link MonitoredRequest} whose processing may continue in another thread after {@link #execute()} has returned,
+ * for example a request of a Servlet 3 container that has been put into asynchronous mode.
+ * <p/>
+ * If {@link #isAsyncStarted()} returns <code>true</code>, {@link RequestMonitor#monitor(MonitoredRequest)} does not
+ * stop the monitoring when {@link #execute()} returns, but detaches the request from the current thread and returns a
+ * {@link RequestMonitor.RequestInformation} for which {@link RequestMonitor.RequestInformation#isAsync()} is
+ * <code>true</code>. The caller then has to call {@link RequestMonitor#monitorStop(RequestMonitor.RequestInformation)}
+ * as soon as the asynchronous processing has completed.
+ */
+public interface AsyncMonitoredRequest<T extends RequestTrace> extends MonitoredRequest<T> {
+
+	/**
+	 * Is called on the thread that executed the request after {@link #execute()} has returned normally
+	 *
+	 * @return <code>true</code>, if the processing of the request continues asynchronously
+	 */
+	boolean isAsyncStarted();
+}
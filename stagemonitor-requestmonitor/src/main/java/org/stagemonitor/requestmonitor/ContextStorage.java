@@ -0,0 +1,29 @@
+package org.stagemonitor.requestmonitor;
+
+/**
+ * Stores a value that belongs to the request the current thread is executing, like the current request itself or
+ * the current position in its call tree.
+ * <p/>
+ * Instances are created by {@link ContextStorageStrategy#newContextStorage()}.
+ *
+ * @param <T> the type of the value
+ */
+public interface ContextStorage<T> {
+
+	/**
+	 * @return the value of the current thread or <code>null</code>, if there is none
+	 */
+	T get();
+
+	/**
+	 * Sets the value of the current thread
+	 *
+	 * @param value the value, may be <code>null</code>
+	 */
+	void set(T value);
+
+	/**
+	 * Removes the value of the current thread, so that no state is retained for the current thread
+	 */
+	void remove();
+}
@@ -0,0 +1,48 @@
+package org.stagemonitor.requestmonitor;
+
+/**
+ * Determines how the context of a request is attached to the threads that execute it
+ */
+public enum ContextStorageStrategy {
+
+	/**
+	 * Every {@link ContextStorage} is a {@link ThreadLocal} of its own. The values are retained by the thread after
+	 * the request, which allows to reuse objects for the next request of the thread.
+	 */
+	THREAD_LOCAL {
+		@Override
+		public <T> ContextStorage<T> newContextStorage() {
+			return new ThreadLocalContextStorage<T>();
+		}
+
+		@Override
+		public boolean isRetainedByThread() {
+			return true;
+		}
+	},
+	/**
+	 * All {@link ContextStorage}s share a single carrier per thread, which only exists while a value is set. As all
+	 * values are removed at the end of {@link RequestMonitor#monitor(MonitoredRequest)}, the carrier is bound to the
+	 * duration of the request and no state is left behind by the thread. This suits applications which execute
+	 * requests on a lot of short lived threads, like virtual threads.
+	 */
+	SCOPED {
+		@Override
+		public <T> ContextStorage<T> newContextStorage() {
+			return new ScopedContextStorage<T>();
+		}
+
+		@Override
+		public boolean isRetainedByThread() {
+			return false;
+		}
+	};
+
+	public abstract <T> ContextStorage<T> newContextStorage();
+
+	/**
+	 * @return <code>true</code>, if the state of a thread outlives the request, so that it makes sense to keep
+	 *         objects per thread for reuse
+	 */
+	public abstract boolean isRetainedByThread();
+}
@@ -0,0 +1,56 @@
+package org.stagemonitor.requestmonitor;
+
+import static net.bytebuddy.matcher.ElementMatchers.isSubTypeOf;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.stagemonitor.core.instrument.StagemonitorByteBuddyTransformer;
+
+/**
+ * Wraps the {@link Runnable}s that are submitted to {@link Executor}s of the application with
+ * {@link RequestContextPropagation#wrap(Runnable)}, so that they are executed in the context of the current request.
+ * <p/>
+ * {@link ForCallable} does the same for {@link Callable}s.
+ */
+public class ExecutorContextPropagationTransformer extends StagemonitorByteBuddyTransformer {
+
+	@Override
+	protected ElementMatcher.Junction<TypeDescription> getIncludeTypeMatcher() {
+		return isSubTypeOf(Executor.class);
+	}
+
+	@Override
+	protected ElementMatcher.Junction<MethodDescription.InDefinedShape> getExtraMethodElementMatcher() {
+		return named("execute").or(named("submit")).and(takesArgument(0, Runnable.class));
+	}
+
+	@Override
+	public boolean isActive() {
+		return configuration.getConfig(RequestMonitorPlugin.class).isPropagateContextToExecutors();
+	}
+
+	@Advice.OnMethodEnter
+	public static void enter(@Advice.Argument(value = 0, readOnly = false) Runnable task) {
+		task = RequestContextPropagation.wrap(task);
+	}
+
+	public static class ForCallable extends ExecutorContextPropagationTransformer {
+
+		@Override
+		protected ElementMatcher.Junction<MethodDescription.InDefinedShape> getExtraMethodElementMatcher() {
+			return named("submit").and(takesArgument(0, Callable.class));
+		}
+
+		@Advice.OnMethodEnter
+		public static void enter(@Advice.Argument(value = 0, readOnly = false) Callable<?> task) {
+			task = RequestContextPropagation.wrap(task);
+		}
+	}
+}
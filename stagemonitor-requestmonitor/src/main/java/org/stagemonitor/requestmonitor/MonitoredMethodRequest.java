@@ -2,9 +2,9 @@ package org.stagemonitor.requestmonitor;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.UUID;
 
 import org.stagemonitor.core.configuration.Configuration;
+import org.stagemonitor.core.util.RequestIdGenerators;
 
 public class MonitoredMethodRequest implements MonitoredRequest<RequestTrace> {
 
@@ -31,7 +31,7 @@ public class MonitoredMethodRequest implements MonitoredRequest<RequestTrace> {
 
 	@Override
 	public RequestTrace createRequestTrace() {
-		RequestTrace requestTrace = new RequestTrace(UUID.randomUUID().toString());
+		RequestTrace requestTrace = new RequestTrace(RequestIdGenerators.generateRequestId());
 		requestTrace.setName(methodSignature);
 		if (parameters != null && parameters.size() > 0) {
 			Map<String, String> params = new LinkedHashMap<String, String>();
@@ -0,0 +1,153 @@
+package org.stagemonitor.requestmonitor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.stagemonitor.requestmonitor.profiler.CallStackElement;
+import org.stagemonitor.requestmonitor.profiler.Profiler;
+
+/**
+ * Wraps {@link Runnable}s and {@link Callable}s, so that they are executed in the context of the request that has
+ * created them, even if they are executed by another thread, for example by a thread pool.
+ * <p/>
+ * While a wrapped task is executed, {@link RequestMonitor#getRequest()} returns the request trace of the request
+ * that has handed off the task. That way, for example database calls of the task are attributed to the request. If
+ * the call tree of the request is collected, the task gets its own call tree which is merged into the call tree of
+ * the request at the position where the task has been handed off. The call trees of all tasks share the node limit
+ * of the call tree of the request. Once it is reached, no call trees are collected for further tasks.
+ * <p/>
+ * If <code>stagemonitor.requestmonitor.propagateContextToExecutors</code> is enabled, the tasks that are submitted
+ * to {@link java.util.concurrent.Executor}s of the application are wrapped automatically by the
+ * {@link ExecutorContextPropagationTransformer}. The executors of the JDK are loaded by the bootstrap class loader
+ * and can't be instrumented, so tasks that are submitted to them have to be wrapped manually.
+ */
+public final class RequestContextPropagation {
+
+	private RequestContextPropagation() {
+	}
+
+	/**
+	 * Wraps the task, so that it is executed in the context of the current request
+	 *
+	 * @param task the task
+	 * @return the wrapped task or the task itself, if there is no current request
+	 */
+	public static Runnable wrap(Runnable task) {
+		if (task == null || task instanceof ContextPropagatingRunnable) {
+			return task;
+		}
+		final RequestContext context = RequestContext.capture();
+		if (context == null) {
+			return task;
+		}
+		return new ContextPropagatingRunnable(task, context);
+	}
+
+	/**
+	 * Wraps the task, so that it is executed in the context of the current request
+	 *
+	 * @param task the task
+	 * @return the wrapped task or the task itself, if there is no current request
+	 */
+	public static <V> Callable<V> wrap(Callable<V> task) {
+		if (task == null || task instanceof ContextPropagatingCallable) {
+			return task;
+		}
+		final RequestContext context = RequestContext.capture();
+		if (context == null) {
+			return task;
+		}
+		return new ContextPropagatingCallable<V>(task, context);
+	}
+
+	/**
+	 * The request and the position in its call tree at the time a task has been handed off
+	 */
+	private static class RequestContext {
+		private final RequestMonitor.RequestInformation<? extends RequestTrace> requestInformation;
+		private final CallStackElement methodCallParent;
+
+		private RequestContext(RequestMonitor.RequestInformation<? extends RequestTrace> requestInformation,
+							   CallStackElement methodCallParent) {
+			this.requestInformation = requestInformation;
+			this.methodCallParent = methodCallParent;
+		}
+
+		private static RequestContext capture() {
+			final RequestMonitor.RequestInformation<? extends RequestTrace> requestInformation = RequestMonitor.getCurrentRequestInformation();
+			if (requestInformation == null || requestInformation.getRequestTrace() == null) {
+				return null;
+			}
+			requestInformation.preventRecycling();
+			return new RequestContext(requestInformation, Profiler.getMethodCallParent());
+		}
+
+		/**
+		 * @return <code>true</code>, if the task is executed by the thread that handed it off, for example because
+		 *         the executor uses a caller runs policy. In that case, the context is already present.
+		 */
+		private boolean isCurrentThreadOfRequest() {
+			return RequestMonitor.getCurrentRequestInformation() == requestInformation;
+		}
+
+		private <V> V call(Callable<V> task, String signature) throws Exception {
+			if (isCurrentThreadOfRequest()) {
+				return task.call();
+			}
+			final RequestMonitor requestMonitor = requestInformation.getRequestMonitor();
+			final RequestMonitor.RequestInformation<? extends RequestTrace> previous = requestMonitor.enterPropagatedRequest(requestInformation);
+			final CallStackElement methodCallParentOfThread = Profiler.getMethodCallParent();
+			final CallStackElement subCallTree = methodCallParent != null ? CallStackElement.createSubTreeRoot(methodCallParent, signature) : null;
+			Profiler.setMethodCallParent(subCallTree);
+			try {
+				return task.call();
+			} finally {
+				Profiler.setMethodCallParent(methodCallParentOfThread);
+				requestMonitor.exitPropagatedRequest(requestInformation, previous);
+				if (subCallTree != null) {
+					subCallTree.executionStopped(System.nanoTime(), Profiler.MIN_EXECUTION_TIME_NANOS);
+					if (subCallTree.getExecutionTime() >= Profiler.MIN_EXECUTION_TIME_NANOS) {
+						requestInformation.addSubCallTree(methodCallParent, subCallTree);
+					}
+				}
+			}
+		}
+	}
+
+	private static class ContextPropagatingRunnable implements Runnable {
+		private final Runnable task;
+		private final RequestContext context;
+
+		private ContextPropagatingRunnable(Runnable task, RequestContext context) {
+			this.task = task;
+			this.context = context;
+		}
+
+		@Override
+		public void run() {
+			try {
+				context.call(Executors.callable(task), "void " + task.getClass().getName() + ".run()");
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				// can't happen, as Runnable#run does not throw checked exceptions
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private static class ContextPropagatingCallable<V> implements Callable<V> {
+		private final Callable<V> task;
+		private final RequestContext context;
+
+		private ContextPropagatingCallable(Callable<V> task, RequestContext context) {
+			this.task = task;
+			this.context = context;
+		}
+
+		@Override
+		public V call() throws Exception {
+			return context.call(task, "Object " + task.getClass().getName() + ".call()");
+		}
+	}
+}
@@ -6,9 +6,12 @@ import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Queue;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -28,7 +31,6 @@ import org.stagemonitor.core.configuration.Configuration;
 import org.stagemonitor.core.instrument.AgentAttacher;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.core.metrics.metrics2.MetricName;
-import org.stagemonitor.core.util.ClassUtils;
 import org.stagemonitor.core.util.ExecutorUtils;
 import org.stagemonitor.core.util.StringUtils;
 import org.stagemonitor.requestmonitor.profiler.CallStackElement;
@@ -40,6 +42,8 @@ public class RequestMonitor {
 
 	private static final Logger logger = LoggerFactory.getLogger(RequestMonitor.class);
 
+	private static final ContextStorageStrategy contextStorageStrategy = Stagemonitor.getPlugin(RequestMonitorPlugin.class).getContextStorage();
+
 	/**
 	 * Helps to detect, if this request is the 'real' one or just the forwarding one.
 	 * Example: /a is forwarding the request to /b. /a is the forwarding request /b is the real or forwarded request.
@@ -47,9 +51,31 @@ public class RequestMonitor {
 	 * <p/>
 	 * To enable this behaviour in a web environment, make sure to set stagemonitor.web.monitorOnlyForwardedRequests to true.
 	 */
-	private static ThreadLocal<RequestInformation<? extends RequestTrace>> request = new ThreadLocal<RequestInformation<? extends RequestTrace>>();
+	private static final ContextStorage<RequestInformation<? extends RequestTrace>> request = contextStorageStrategy.newContextStorage();
 
-	private final List<RequestTraceReporter> requestTraceReporters = new CopyOnWriteArrayList<RequestTraceReporter>();
+	/**
+	 * The request on whose behalf the current thread executes a task that has been handed off by the thread of the
+	 * request (see {@link RequestContextPropagation}).
+	 * <p/>
+	 * This is not stored in {@link #request}, because requests that are started by the task must not be treated as
+	 * forwarded requests of the propagated request.
+	 */
+	private static final ContextStorage<RequestInformation<? extends RequestTrace>> propagatedRequest = contextStorageStrategy.newContextStorage();
+
+	/**
+	 * The reporters in the order they are invoked. New reporters are added to the front, so the position of a
+	 * reporter counted from the end of the array never changes. This position is the slot of the reporter which is
+	 * used to cache the result of {@link RequestTraceReporter#isActive} per request.
+	 */
+	private volatile RequestTraceReporter[] requestTraceReporters = new RequestTraceReporter[0];
+
+	/**
+	 * A {@link RequestInformation} that can be reused by the next execution of the current thread.
+	 * <p/>
+	 * Only used, if the {@link ContextStorageStrategy#isRetainedByThread() state of threads is retained}, as otherwise
+	 * the next execution of the thread would never find it.
+	 */
+	private final ThreadLocal<RequestInformation<?>> recycledRequestInformation = new ThreadLocal<RequestInformation<?>>();
 
 	private final List<Runnable> onBeforeRequestCallbacks = new CopyOnWriteArrayList<Runnable>();
 
@@ -93,8 +119,17 @@ public class RequestMonitor {
 	}
 
 	public <T extends RequestTrace> void monitorStart(MonitoredRequest<T> monitoredRequest) {
+		monitorStart(monitoredRequest, true);
+	}
+
+	/**
+	 * @param recyclable whether the {@link RequestInformation} can be reused after {@link #monitorStop()} because it is
+	 *                   not handed out to the caller
+	 */
+	private <T extends RequestTrace> void monitorStart(MonitoredRequest<T> monitoredRequest, boolean recyclable) {
 		final long start = System.nanoTime();
-		RequestInformation<T> info = new RequestInformation<T>();
+		RequestInformation<T> info = getRequestInformation(start);
+		info.recyclable = recyclable;
 		info.monitoredRequest = monitoredRequest;
 		detectForwardedRequest(info);
 		request.set(info);
@@ -113,6 +148,7 @@ public class RequestMonitor {
 			}
 
 			if (info.monitorThisRequest()) {
+				info.startCpu = getCpuTime();
 				if (!Stagemonitor.isStarted()) {
 					info.startup = Stagemonitor.startMonitoring();
 				}
@@ -127,7 +163,81 @@ public class RequestMonitor {
 		long overhead2 = System.nanoTime();
 		final RequestInformation<T> info = (RequestInformation<T>) request.get();
 		request.set(info.parent);
+		stop(info, overhead2);
+		runAfterRequestCallbacks(info);
+		recycle(info);
+	}
+
+	/**
+	 * Stops the monitoring of a request whose processing has continued asynchronously after
+	 * {@link MonitoredRequest#execute()} has returned (see {@link AsyncMonitoredRequest}).
+	 * <p/>
+	 * This method can be called from any thread, for example from the thread that completes the asynchronous
+	 * processing. The call tree of the request is only attached to the calling thread while the request is stopped.
+	 *
+	 * @param info the {@link RequestInformation} that has been returned by {@link #monitor(MonitoredRequest)}
+	 */
+	public <T extends RequestTrace> void monitorStop(RequestInformation<T> info) {
+		long overhead2 = System.nanoTime();
+		final CallStackElement methodCallParentOfThread = Profiler.getMethodCallParent();
+		Profiler.setMethodCallParent(info.callTreeParent);
+		try {
+			stop(info, overhead2);
+		} finally {
+			Profiler.setMethodCallParent(methodCallParentOfThread);
+		}
+	}
+
+	/**
+	 * Continues the monitoring of an asynchronous request on the current thread, for example if the request is
+	 * dispatched to another thread of the servlet container. The call tree of the request is attached to the current
+	 * thread, so that the calls of this thread are added to it.
+	 * <p/>
+	 * Each call has to be followed by a call to {@link #suspend(RequestInformation)} on the same thread.
+	 *
+	 * @param info the {@link RequestInformation} of an asynchronous request
+	 */
+	public void resume(RequestInformation<? extends RequestTrace> info) {
+		info.requestOfThread = request.get();
+		request.set(info);
+		if (info.requestTrace != null) {
+			info.startCpu = getCpuTime();
+			if (info.callTreeParent != null) {
+				Profiler.setMethodCallParent(info.callTreeParent);
+			}
+			runBeforeRequestCallbacks(info);
+		}
+	}
+
+	/**
+	 * Detaches an asynchronous request from the current thread after it has been resumed by
+	 * {@link #resume(RequestInformation)}
+	 *
+	 * @param info the {@link RequestInformation} of an asynchronous request
+	 */
+	public void suspend(RequestInformation<? extends RequestTrace> info) {
+		final RequestInformation<? extends RequestTrace> requestOfThread = info.requestOfThread;
+		info.requestOfThread = null;
+		detach(info, requestOfThread);
+	}
+
+	/**
+	 * Detaches the request from the current thread, as the processing of the request continues on another thread
+	 */
+	private void detach(RequestInformation<? extends RequestTrace> info, RequestInformation<? extends RequestTrace> requestOfThread) {
+		info.async = true;
+		request.set(requestOfThread);
+		if (info.requestTrace != null) {
+			info.cpuTime += getCpuTime() - info.startCpu;
+			info.callTreeParent = Profiler.getMethodCallParent();
+		}
+		cleanUpAfter(info);
+		runAfterRequestCallbacks(info);
+	}
+
+	private <T extends RequestTrace> void stop(RequestInformation<T> info, long overhead2) {
 		if (info.monitorThisRequest() && info.hasRequestName()) {
+			info.reported = true;
 			try {
 				if (info.startup != null) {
 					info.startup.get();
@@ -145,7 +255,9 @@ public class RequestMonitor {
 		if (!info.firstRequest) {
 			trackOverhead(info.overhead1, overhead2);
 		}
+	}
 
+	private void runAfterRequestCallbacks(RequestInformation<? extends RequestTrace> info) {
 		for (Runnable onAfterRequestCallback : onAfterRequestCallbacks) {
 			try {
 				onAfterRequestCallback.run();
@@ -155,26 +267,75 @@ public class RequestMonitor {
 		}
 	}
 
-	private <T extends RequestTrace> void cleanUpAfter(RequestInformation<T> info) {
+	/**
+	 * Reuses the {@link RequestInformation} which has been recycled by the last unreported execution of the current
+	 * thread, if there is one
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends RequestTrace> RequestInformation<T> getRequestInformation(long start) {
+		// accessing the thread local would bind state to threads which are not supposed to retain any
+		RequestInformation<T> info = contextStorageStrategy.isRetainedByThread() ?
+				(RequestInformation<T>) recycledRequestInformation.get() : null;
+		if (info != null) {
+			recycledRequestInformation.set(null);
+		} else {
+			info = new RequestInformation<T>();
+		}
+		info.start = start;
+		return info;
+	}
+
+	/**
+	 * Executions which have neither been reported nor have been handed out to the caller are not referenced anymore
+	 * and can be reused by the next execution of the current thread.
+	 */
+	private <T extends RequestTrace> void recycle(RequestInformation<T> info) {
+		if (info.recyclable && !info.reported && contextStorageStrategy.isRetainedByThread()) {
+			info.reset();
+			recycledRequestInformation.set(info);
+		}
+	}
+
+	private void cleanUpAfter(RequestInformation<? extends RequestTrace> info) {
 		if (info.requestTrace != null) {
 			Profiler.clearMethodCallParent();
 		}
 	}
 
+	/**
+	 * Monitors the execution of a request.
+	 * <p/>
+	 * If the request is a {@link AsyncMonitoredRequest} whose processing continues asynchronously, the monitoring is
+	 * not stopped when this method returns. In that case, {@link RequestInformation#isAsync()} is <code>true</code>
+	 * and {@link #monitorStop(RequestInformation)} has to be called as soon as the processing has completed.
+	 *
+	 * @param monitoredRequest the request to monitor
+	 * @return the {@link RequestInformation} of the request
+	 */
 	public <T extends RequestTrace> RequestInformation<T> monitor(MonitoredRequest<T> monitoredRequest) throws Exception {
+		RequestInformation<T> info = null;
 		try {
-			monitorStart(monitoredRequest);
-			final RequestInformation<T> info = (RequestInformation<T>) request.get();
+			monitorStart(monitoredRequest, false);
+			info = (RequestInformation<T>) request.get();
 			info.executionResult = monitoredRequest.execute();
+			info.async = isAsyncStarted(monitoredRequest);
 			return info;
 		} catch (Exception e) {
 			recordException(e);
 			throw e;
 		} finally {
-			monitorStop();
+			if (info != null && info.async) {
+				detach(info, info.parent);
+			} else {
+				monitorStop();
+			}
 		}
 	}
 
+	private static boolean isAsyncStarted(MonitoredRequest<?> monitoredRequest) {
+		return monitoredRequest instanceof AsyncMonitoredRequest && ((AsyncMonitoredRequest<?>) monitoredRequest).isAsyncStarted();
+	}
+
 	public void recordException(Exception e) {
 		final RequestInformation<? extends RequestTrace> info = request.get();
 		if (info.requestTrace != null) {
@@ -221,6 +382,10 @@ public class RequestMonitor {
 		} catch (RuntimeException e) {
 			logger.warn(e.getMessage() + " (this exception is ignored) " + info.toString(), e);
 		}
+		runBeforeRequestCallbacks(info);
+	}
+
+	private void runBeforeRequestCallbacks(RequestInformation<? extends RequestTrace> info) {
 		for (Runnable onBeforeRequestCallback : onBeforeRequestCallbacks) {
 			try {
 				onBeforeRequestCallback.run();
@@ -241,7 +406,7 @@ public class RequestMonitor {
 	private <T extends RequestTrace> void monitorAfterExecution(MonitoredRequest<T> monitoredRequest, RequestInformation<T> info) {
 		final T requestTrace = info.requestTrace;
 		final long executionTime = System.nanoTime() - info.start;
-		final long cpuTime = getCpuTime() - info.startCpu;
+		final long cpuTime = info.async ? info.cpuTime : getCpuTime() - info.startCpu;
 		requestTrace.setExecutionTime(NANOSECONDS.toMillis(executionTime));
 		requestTrace.setExecutionTimeCpu(NANOSECONDS.toMillis(cpuTime));
 		monitoredRequest.onPostExecute(info);
@@ -249,6 +414,7 @@ public class RequestMonitor {
 
 		if (requestTrace.getCallStack() != null) {
 			Profiler.stop();
+			info.mergeSubCallTrees(requestTrace.getCallStack());
 			requestTrace.getCallStack().setSignature(requestTrace.getName());
 			final CallStackElement callTree = requestTrace.getCallStack();
 			final double minExecutionTimeMultiplier = requestMonitorPlugin.getMinExecutionTimePercent() / 100;
@@ -325,10 +491,11 @@ public class RequestMonitor {
 			asyncRequestTraceReporterPool.submit(new Runnable() {
 				@Override
 				public void run() {
-					for (RequestTraceReporter requestTraceReporter : requestTraceReporters) {
-						if (isActive(requestTrace, requestTraceReporter)) {
+					final RequestTraceReporter[] reporters = requestTraceReporters;
+					for (int i = 0; i < reporters.length; i++) {
+						if (isActive(requestTrace, reporters[i], getSlot(reporters, i))) {
 							try {
-								requestTraceReporter.reportRequestTrace(new RequestTraceReporter.ReportArguments(requestTrace));
+								reporters[i].reportRequestTrace(new RequestTraceReporter.ReportArguments(requestTrace));
 							} catch (Exception e) {
 								logger.warn(e.getMessage() + " (this exception is ignored)", e);
 							}
@@ -357,8 +524,8 @@ public class RequestMonitor {
 	public class RequestInformation<T extends RequestTrace> {
 		private boolean timerCreated = false;
 		T requestTrace = null;
-		private long start = System.nanoTime();
-		private long startCpu = getCpuTime();
+		private long start;
+		private long startCpu;
 		private Object executionResult = null;
 		private Future<?> startup;
 		private long overhead1;
@@ -366,6 +533,46 @@ public class RequestMonitor {
 		private boolean firstRequest;
 		private RequestInformation<T> parent;
 		private RequestInformation<T> child;
+		private boolean recyclable;
+		private boolean reported;
+		private boolean async;
+		/**
+		 * The cpu time the threads that have processed an asynchronous request have spent so far
+		 */
+		private long cpuTime;
+		/**
+		 * The current node of the call tree while an asynchronous request is not attached to a thread
+		 */
+		private CallStackElement callTreeParent;
+		/**
+		 * The request the current thread has been monitoring before an asynchronous request has been resumed
+		 */
+		private RequestInformation<? extends RequestTrace> requestOfThread;
+		/**
+		 * The call trees of the tasks that have been handed off to other threads and that have already completed
+		 */
+		private final Queue<SubCallTree> subCallTrees = new ConcurrentLinkedQueue<SubCallTree>();
+
+		private void reset() {
+			timerCreated = false;
+			requestTrace = null;
+			start = 0;
+			startCpu = 0;
+			executionResult = null;
+			startup = null;
+			overhead1 = 0;
+			monitoredRequest = null;
+			firstRequest = false;
+			parent = null;
+			child = null;
+			recyclable = false;
+			reported = false;
+			async = false;
+			cpuTime = 0;
+			callTreeParent = null;
+			requestOfThread = null;
+			subCallTrees.clear();
+		}
 
 		/**
 		 * If the request has no name it means that it should not be monitored.
@@ -408,6 +615,16 @@ public class RequestMonitor {
 			return requestTrace;
 		}
 
+		/**
+		 * Data that is only needed for reporting, like request parameters, should only be collected if this method
+		 * returns <code>true</code>.
+		 *
+		 * @return <code>true</code>, if at least one {@link RequestTraceReporter} is active for this request
+		 */
+		public boolean isAnyRequestTraceReporterActive() {
+			return requestTrace != null && RequestMonitor.this.isAnyRequestTraceReporterActive(requestTrace);
+		}
+
 		public Timer getRequestTimer() {
 			timerCreated = true;
 			return metricRegistry.timer(getTimerMetricName(getRequestName()));
@@ -421,8 +638,8 @@ public class RequestMonitor {
 			} else if (callTreeRateLimit <= 0) {
 				logger.debug("Not profiling this request because stagemonitor.requestmonitor.onlyReportNRequestsPerMinuteToElasticsearch <= 0");
 				return false;
-			} else if (!isAnyRequestTraceReporterActive(getRequestTrace())) {
-				logger.debug("Not profiling this request because no RequestTraceReporter is active {}", requestTraceReporters);
+			} else if (!isAnyRequestTraceReporterActive()) {
+				logger.debug("Not profiling this request because no RequestTraceReporter is active {}", Arrays.asList(requestTraceReporters));
 				return false;
 			} else if (callTreeRateLimit < 1000000d && callTreeMeter.getOneMinuteRate() >= callTreeRateLimit) {
 				logger.debug("Not profiling this request because more than {} call trees per minute where created", callTreeRateLimit);
@@ -454,6 +671,14 @@ public class RequestMonitor {
 			return executionResult;
 		}
 
+		/**
+		 * @return <code>true</code>, if the processing of the request continues asynchronously after
+		 *         {@link RequestMonitor#monitor(MonitoredRequest)} has returned
+		 */
+		public boolean isAsync() {
+			return async;
+		}
+
 		@Override
 		public String toString() {
 			return "RequestInformation{" +
@@ -468,31 +693,118 @@ public class RequestMonitor {
 		public boolean isForwarded() {
 			return parent != null;
 		}
+
+		RequestMonitor getRequestMonitor() {
+			return RequestMonitor.this;
+		}
+
+		/**
+		 * Makes sure this instance is not reused for another request, because it is referenced by a task that has
+		 * been handed off to another thread
+		 */
+		void preventRecycling() {
+			recyclable = false;
+		}
+
+		/**
+		 * Adds the call tree of a task that has been executed by another thread.
+		 * <p/>
+		 * The call tree is not added to the parent immediately, as the parent may still be modified by the thread of
+		 * the request. Instead, it is merged when the monitoring of the request stops. Call trees that are added
+		 * after that are discarded.
+		 *
+		 * @param parent      the element of the call tree that has been active when the task has been handed off
+		 * @param subCallTree the call tree of the task
+		 */
+		void addSubCallTree(CallStackElement parent, CallStackElement subCallTree) {
+			subCallTrees.offer(new SubCallTree(parent, subCallTree));
+		}
+
+		private void mergeSubCallTrees(CallStackElement callTree) {
+			SubCallTree subCallTree;
+			while ((subCallTree = subCallTrees.poll()) != null) {
+				// the parent may have been removed from the call tree in the meantime, because it was too fast
+				final CallStackElement parent = isPartOf(subCallTree.parent, callTree) ? subCallTree.parent : callTree;
+				subCallTree.root.setParent(parent);
+				parent.getChildren().add(subCallTree.root);
+			}
+		}
+
+		private boolean isPartOf(CallStackElement element, CallStackElement callTree) {
+			while (element.getParent() != null) {
+				element = element.getParent();
+			}
+			return element == callTree;
+		}
+	}
+
+	private static class SubCallTree {
+		private final CallStackElement parent;
+		private final CallStackElement root;
+
+		private SubCallTree(CallStackElement parent, CallStackElement root) {
+			this.parent = parent;
+			this.root = root;
+		}
+	}
+
+	/**
+	 * Makes the given request the propagated request of the current thread, while the current thread executes a
+	 * task on behalf of the request
+	 *
+	 * @return the request that has previously been propagated to the current thread
+	 */
+	RequestInformation<? extends RequestTrace> enterPropagatedRequest(RequestInformation<? extends RequestTrace> info) {
+		final RequestInformation<? extends RequestTrace> previous = propagatedRequest.get();
+		propagatedRequest.set(info);
+		if (request.get() == null && previous == null) {
+			runBeforeRequestCallbacks(info);
+		}
+		return previous;
+	}
+
+	void exitPropagatedRequest(RequestInformation<? extends RequestTrace> info, RequestInformation<? extends RequestTrace> previous) {
+		if (request.get() == null && previous == null) {
+			runAfterRequestCallbacks(info);
+		}
+		propagatedRequest.set(previous);
+	}
+
+	/**
+	 * @return the request of the current thread or the request that has been propagated to the current thread
+	 */
+	static RequestInformation<? extends RequestTrace> getCurrentRequestInformation() {
+		final RequestInformation<? extends RequestTrace> requestInformation = request.get();
+		return requestInformation != null ? requestInformation : propagatedRequest.get();
 	}
 
 	private boolean isAnyRequestTraceReporterActive(RequestTrace requestTrace) {
-		for (RequestTraceReporter requestTraceReporter : requestTraceReporters) {
-			if (isActive(requestTrace, requestTraceReporter)) {
+		final RequestTraceReporter[] reporters = requestTraceReporters;
+		for (int i = 0; i < reporters.length; i++) {
+			if (isActive(requestTrace, reporters[i], getSlot(reporters, i))) {
 				return true;
 			}
 		}
 		return false;
 	}
 
+	private static int getSlot(RequestTraceReporter[] reporters, int index) {
+		return reporters.length - 1 - index;
+	}
+
 	/**
 	 * Checks whether the given {@link RequestTraceReporter} is active for the current {@link RequestTrace}.
 	 * If this method was already called for a {@link RequestTraceReporter} in the context of the current request
 	 * it returns the previous result. In other words this method makes sure that {@link RequestTraceReporter#isActive(RequestTraceReporter.IsActiveArguments)}
 	 * is called at most once.
 	 */
-	private boolean isActive(RequestTrace requestTrace, RequestTraceReporter requestTraceReporter) {
-		final String requestAttributeActive = ClassUtils.getIdentityString(requestTraceReporter) + ".active";
-		final Boolean activeFromAttribute = (Boolean) requestTrace.getRequestAttribute(requestAttributeActive);
-		if (activeFromAttribute != null) {
-			return activeFromAttribute;
+	private boolean isActive(RequestTrace requestTrace, RequestTraceReporter requestTraceReporter, int reporterSlot) {
+		final Boolean cachedActive = requestTrace.isReporterActive(reporterSlot);
+		if (cachedActive != null) {
+			return cachedActive;
 		}
 		final boolean active = requestTraceReporter.isActive(new RequestTraceReporter.IsActiveArguments(requestTrace));
-		requestTrace.addRequestAttribute(requestAttributeActive, active);
+		requestTrace.setReporterActive(reporterSlot, active);
 		return active;
 	}
 
@@ -500,7 +812,7 @@ public class RequestMonitor {
 	 * @return the {@link RequestTrace} of the current request
 	 */
 	public static RequestTrace getRequest() {
-		final RequestInformation<? extends RequestTrace> requestInformation = request.get();
+		final RequestInformation<? extends RequestTrace> requestInformation = getCurrentRequestInformation();
 		return requestInformation != null ? requestInformation.getRequestTrace() : null;
 	}
 
@@ -519,7 +831,12 @@ public class RequestMonitor {
 	 * @param requestTraceReporter the {@link RequestTraceReporter} to add
 	 */
 	public void addReporter(RequestTraceReporter requestTraceReporter) {
-		requestTraceReporters.add(0, requestTraceReporter);
+		synchronized (this) {
+			final RequestTraceReporter[] reporters = new RequestTraceReporter[requestTraceReporters.length + 1];
+			reporters[0] = requestTraceReporter;
+			System.arraycopy(requestTraceReporters, 0, reporters, 1, requestTraceReporters.length);
+			requestTraceReporters = reporters;
+		}
 		requestTraceReporter.init(new RequestTraceReporter.InitArguments(configuration));
 	}
 
@@ -538,6 +855,8 @@ public class RequestMonitor {
 	public void close() {
 		asyncRequestTraceReporterPool.shutdown();
 		request.remove();
+		propagatedRequest.remove();
+		recycledRequestInformation.remove();
 	}
 
 	/**
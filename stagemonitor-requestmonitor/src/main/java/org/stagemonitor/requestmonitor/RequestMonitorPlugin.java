@@ -12,6 +12,7 @@ import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.StagemonitorPlugin;
 import org.stagemonitor.core.configuration.ConfigurationOption;
 import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.elasticsearch.IndexRollover;
 import org.stagemonitor.core.grafana.GrafanaClient;
 import org.stagemonitor.requestmonitor.reporter.ElasticsearchRequestTraceReporter;
 
@@ -87,6 +88,54 @@ public class RequestMonitorPlugin extends StagemonitorPlugin {
 			.tags("experimental")
 			.configurationCategory(REQUEST_MONITOR_PLUGIN)
 			.build();
+	private final ConfigurationOption<Integer> maxCallTreeNodes = ConfigurationOption.integerOption()
+			.key("stagemonitor.profiler.maxCallTreeNodes")
+			.dynamic(false)
+			.label("Max call tree nodes")
+			.description("The maximum number of calls that are recorded in the call tree of a request. When the limit " +
+					"is reached, further calls are not recorded individually anymore but aggregated into summary " +
+					"nodes which contain the number of calls and the total execution time per method signature. " +
+					"This limits the memory usage of requests that execute a lot of profiled methods, for example " +
+					"in a loop.")
+			.defaultValue(10000)
+			.configurationCategory(REQUEST_MONITOR_PLUGIN)
+			.build();
+	private final ConfigurationOption<Integer> maxCallTreeDepth = ConfigurationOption.integerOption()
+			.key("stagemonitor.profiler.maxCallTreeDepth")
+			.dynamic(false)
+			.label("Max call tree depth")
+			.description("The maximum depth of the call tree of a request. Calls that are nested deeper are aggregated " +
+					"into summary nodes which contain the number of calls and the total execution time per method signature.")
+			.defaultValue(100)
+			.configurationCategory(REQUEST_MONITOR_PLUGIN)
+			.build();
+	private final ConfigurationOption<Boolean> propagateContextToExecutors = ConfigurationOption.booleanOption()
+			.key("stagemonitor.requestmonitor.propagateContextToExecutors")
+			.dynamic(false)
+			.label("Propagate request context to executors")
+			.description("When set to true, tasks that are submitted to an Executor of the application (for example " +
+					"the executor of Spring's @Async methods) are executed in the context of the request that submitted " +
+					"them. That way, their database calls and call trees are part of the request. Tasks that are " +
+					"submitted to the executors of the JDK have to be wrapped with RequestContextPropagation.wrap. " +
+					"Disabled by default, because the application's executors are instrumented and the tasks may " +
+					"outlive the request, for example when a request only schedules a background job.")
+			.defaultValue(false)
+			.configurationCategory(REQUEST_MONITOR_PLUGIN)
+			.build();
+	private final ConfigurationOption<ContextStorageStrategy> contextStorage = ConfigurationOption.enumOption(ContextStorageStrategy.class)
+			.key("stagemonitor.requestmonitor.contextStorage")
+			.dynamic(false)
+			.label("Context storage")
+			.description("Defines how the current request and the current position in its call tree are attached to " +
+					"the thread that executes the request. " +
+					ContextStorageStrategy.THREAD_LOCAL + ": Each value is stored in a ThreadLocal of its own and is " +
+					"retained by the thread, which allows to reuse objects for the next request of the thread. " +
+					ContextStorageStrategy.SCOPED + ": All values share one carrier per thread, which is discarded " +
+					"when the request ends. Use this if requests are executed by a lot of short lived threads, like " +
+					"virtual threads.")
+			.defaultValue(ContextStorageStrategy.THREAD_LOCAL)
+			.configurationCategory(REQUEST_MONITOR_PLUGIN)
+			.build();
 	private final ConfigurationOption<Double> onlyCollectNCallTreesPerMinute = ConfigurationOption.doubleOption()
 			.key("stagemonitor.requestmonitor.onlyCollectNCallTreesPerMinute")
 			.dynamic(true)
@@ -253,6 +302,20 @@ public class RequestMonitorPlugin extends StagemonitorPlugin {
 			.configurationCategory(REQUEST_MONITOR_PLUGIN)
 			.tags("elasticsearch")
 			.build();
+	private final ConfigurationOption<IndexRollover> requestIndexRollover = ConfigurationOption.enumOption(IndexRollover.class)
+			.key("stagemonitor.requestmonitor.elasticsearch.indexRollover")
+			.dynamic(false)
+			.label("ES Request Index Rollover")
+			.description("How often a new stagemonitor-requests-* index is created. " +
+					IndexRollover.HOURLY + ": stagemonitor-requests-YYYY.MM.DD.HH " +
+					IndexRollover.DAILY + ": stagemonitor-requests-YYYY.MM.DD " +
+					IndexRollover.WEEKLY + ": stagemonitor-requests-YYYY.MM.DD, where the date is the monday of the week. " +
+					"Hourly indices keep the single indices small if you report a lot of request traces. " +
+					"Note that the Kibana and Grafana dashboards which are provided by stagemonitor expect daily indices.")
+			.defaultValue(IndexRollover.DAILY)
+			.configurationCategory(REQUEST_MONITOR_PLUGIN)
+			.tags("elasticsearch")
+			.build();
 
 	private static RequestMonitor requestMonitor;
 
@@ -274,8 +337,8 @@ public class RequestMonitorPlugin extends StagemonitorPlugin {
 			elasticsearchClient.sendBulkAsync("kibana/RequestAnalysis.bulk");
 			elasticsearchClient.sendBulkAsync("kibana/WebAnalytics.bulk");
 			grafanaClient.sendGrafanaDashboardAsync("grafana/ElasticsearchRequestDashboard.json");
-			elasticsearchClient.scheduleIndexManagement("stagemonitor-requests-",
-					corePlugin.getMoveToColdNodesAfterDays(), deleteRequestTracesAfterDays.getValue());
+			elasticsearchClient.scheduleIndexManagement(ElasticsearchRequestTraceReporter.STAGEMONITOR_REQUESTS_INDEX_PREFIX,
+					corePlugin.getMoveToColdNodesAfterDays(), deleteRequestTracesAfterDays.getValue(), requestIndexRollover.getValue());
 		}
 	}
 
@@ -327,6 +390,14 @@ public class RequestMonitorPlugin extends StagemonitorPlugin {
 		return profilerActive.getValue();
 	}
 
+	public boolean isPropagateContextToExecutors() {
+		return propagateContextToExecutors.getValue();
+	}
+
+	public ContextStorageStrategy getContextStorage() {
+		return contextStorage.getValue();
+	}
+
 	public BusinessTransactionNamingStrategy getBusinessTransactionNamingStrategy() {
 		return businessTransactionNamingStrategy.getValue();
 	}
@@ -376,6 +447,18 @@ public class RequestMonitorPlugin extends StagemonitorPlugin {
 		return profilerObjectPooling.getValue();
 	}
 
+	public int getMaxCallTreeNodes() {
+		return maxCallTreeNodes.getValue();
+	}
+
+	public int getMaxCallTreeDepth() {
+		return maxCallTreeDepth.getValue();
+	}
+
+	public IndexRollover getRequestIndexRollover() {
+		return requestIndexRollover.getValue();
+	}
+
 	public Collection<Pattern> getConfidentialParameters() {
 		return confidentialParameters.getValue();
 	}
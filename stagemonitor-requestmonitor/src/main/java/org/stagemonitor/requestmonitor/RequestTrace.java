@@ -1,20 +1,29 @@
 package org.stagemonitor.requestmonitor;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.stagemonitor.core.MeasurementSession;
 import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.core.util.RequestIdGenerators;
 import org.stagemonitor.core.util.StringUtils;
 import org.stagemonitor.requestmonitor.profiler.CallStackElement;
 
@@ -24,6 +33,17 @@ import org.stagemonitor.requestmonitor.profiler.CallStackElement;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class RequestTrace {
 
+	private static final Logger logger = LoggerFactory.getLogger(RequestTrace.class);
+
+	/**
+	 * Serializes request traces without the ascii representation of the call stack and without creating an
+	 * intermediate tree of the whole request trace
+	 */
+	private static final ObjectWriter JSON_WRITER_WITHOUT_CALL_STACK = JsonUtils.getMapper().copy()
+			.addMixIn(RequestTrace.class, CallStackExcludingMixIn.class)
+			.writer()
+			.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
 	@JsonIgnore
 	private final RequestMonitorPlugin requestMonitorPlugin;
 
@@ -53,9 +73,17 @@ public class RequestTrace {
 	private String disclosedUserName;
 	private String clientIp;
 	private String uniqueVisitorId;
-	private Map<String, Object> customProperties = new HashMap<String, Object>();
+	// the maps are only created when the first entry is added, as most requests don't have custom properties or
+	// request attributes
+	private Map<String, Object> customProperties;
 	@JsonIgnore
-	private Map<String, Object> requestAttributes = new HashMap<String, Object>();
+	private Map<String, Object> requestAttributes;
+	/**
+	 * Caches the result of {@link org.stagemonitor.requestmonitor.reporter.RequestTraceReporter#isActive} by the slot
+	 * of the reporter (see {@link RequestMonitor})
+	 */
+	@JsonIgnore
+	private byte[] reporterActiveStates;
 
 	public RequestTrace(String requestId) {
 		this(requestId, Stagemonitor.getMeasurementSession(), Stagemonitor.getPlugin(RequestMonitorPlugin.class));
@@ -63,7 +91,7 @@ public class RequestTrace {
 
 	public RequestTrace(String requestId, MeasurementSession measurementSession, RequestMonitorPlugin requestMonitorPlugin) {
 		this.requestMonitorPlugin = requestMonitorPlugin;
-		this.id = requestId != null ? requestId : UUID.randomUUID().toString();
+		this.id = requestId != null ? requestId : RequestIdGenerators.generateRequestId();
 		this.measurementStart = measurementSession.getStartTimestamp();
 		this.application = measurementSession.getApplicationName();
 		this.host = measurementSession.getHostName();
@@ -240,7 +268,13 @@ public class RequestTrace {
 		return executionTimeDb;
 	}
 
-	public void dbCallCompleted(long executionTimeDb) {
+	/**
+	 * Is synchronized, because tasks that the request has handed off to other threads may execute database calls
+	 * concurrently.
+	 *
+	 * @param executionTimeDb the execution time of the database call in milliseconds
+	 */
+	public synchronized void dbCallCompleted(long executionTimeDb) {
 		this.executionCountDb++;
 		this.executionTimeDb += executionTimeDb;
 	}
@@ -254,7 +288,21 @@ public class RequestTrace {
 	}
 
 	public String toJson() {
-		return JsonUtils.toJson(this, "callStack");
+		try {
+			return JSON_WRITER_WITHOUT_CALL_STACK.writeValueAsString(this);
+		} catch (JsonProcessingException e) {
+			logger.error(e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the same representation as {@link #toJson()} directly to the provided generator
+	 *
+	 * @param generator the generator to write the request trace to
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException {
+		JSON_WRITER_WITHOUT_CALL_STACK.writeValue(generator, this);
 	}
 
 	@Override
@@ -291,6 +339,9 @@ public class RequestTrace {
 
 	@JsonAnyGetter
 	public Map<String, Object> getCustomProperties() {
+		if (customProperties == null) {
+			return Collections.emptyMap();
+		}
 		return customProperties;
 	}
 
@@ -308,6 +359,9 @@ public class RequestTrace {
 	 */
 	@JsonAnySetter
 	public void addCustomProperty(String key, Object value) {
+		if (customProperties == null) {
+			customProperties = new HashMap<String, Object>();
+		}
 		customProperties.put(key, value);
 	}
 
@@ -319,13 +373,43 @@ public class RequestTrace {
 	 * @param value
 	 */
 	public void addRequestAttribute(String key, Object value) {
+		if (requestAttributes == null) {
+			requestAttributes = new HashMap<String, Object>();
+		}
 		requestAttributes.put(key, value);
 	}
 
 	public Object getRequestAttribute(String key) {
+		if (requestAttributes == null) {
+			return null;
+		}
 		return requestAttributes.get(key);
 	}
 
+	/**
+	 * Returns the cached result of {@link org.stagemonitor.requestmonitor.reporter.RequestTraceReporter#isActive}
+	 *
+	 * @param reporterSlot the slot of the reporter
+	 * @return the cached result or <code>null</code>, if the reporter has not been evaluated for this request yet
+	 */
+	Boolean isReporterActive(int reporterSlot) {
+		if (reporterActiveStates == null || reporterSlot >= reporterActiveStates.length || reporterActiveStates[reporterSlot] == 0) {
+			return null;
+		}
+		return reporterActiveStates[reporterSlot] == 2;
+	}
+
+	void setReporterActive(int reporterSlot, boolean active) {
+		if (reporterActiveStates == null || reporterSlot >= reporterActiveStates.length) {
+			final byte[] states = new byte[Math.max(reporterSlot + 1, 4)];
+			if (reporterActiveStates != null) {
+				System.arraycopy(reporterActiveStates, 0, states, 0, reporterActiveStates.length);
+			}
+			reporterActiveStates = states;
+		}
+		reporterActiveStates[reporterSlot] = (byte) (active ? 2 : 1);
+	}
+
 	public String getUniqueVisitorId() {
 		return uniqueVisitorId;
 	}
@@ -338,4 +422,8 @@ public class RequestTrace {
 	public void finalize() {
 		callStack.recycle();
 	}
+
+	@JsonIgnoreProperties("callStack")
+	private static abstract class CallStackExcludingMixIn {
+	}
 }
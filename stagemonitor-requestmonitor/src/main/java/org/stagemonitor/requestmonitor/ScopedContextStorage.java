@@ -0,0 +1,98 @@
+package org.stagemonitor.requestmonitor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ContextStorage} that occupies a slot of a carrier which is shared by all instances.
+ * <p/>
+ * A thread only references a carrier as long as at least one slot is occupied. That way, a thread needs a single
+ * {@link ThreadLocal} entry while it executes a request and none afterwards.
+ * <p/>
+ * Note that {@link ThreadLocal#get()} creates an entry for the thread if there is none, so the entry is removed again
+ * if the thread is not bound to a carrier.
+ */
+class ScopedContextStorage<T> implements ContextStorage<T> {
+
+	private static final ThreadLocal<Carrier> carrier = new ThreadLocal<Carrier>();
+
+	private static final AtomicInteger slots = new AtomicInteger();
+
+	private final int slot = slots.getAndIncrement();
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get() {
+		final Carrier currentCarrier = getCarrier();
+		return currentCarrier != null ? (T) currentCarrier.get(slot) : null;
+	}
+
+	@Override
+	public void set(T value) {
+		if (value == null) {
+			remove();
+			return;
+		}
+		Carrier currentCarrier = getCarrier();
+		if (currentCarrier == null) {
+			currentCarrier = new Carrier();
+			carrier.set(currentCarrier);
+		}
+		currentCarrier.set(slot, value);
+	}
+
+	@Override
+	public void remove() {
+		final Carrier currentCarrier = getCarrier();
+		if (currentCarrier != null && currentCarrier.clear(slot)) {
+			carrier.remove();
+		}
+	}
+
+	/**
+	 * @return <code>true</code>, if the current thread references a carrier
+	 */
+	static boolean isBound() {
+		return getCarrier() != null;
+	}
+
+	private static Carrier getCarrier() {
+		final Carrier currentCarrier = carrier.get();
+		if (currentCarrier == null) {
+			// removes the entry that has been created by ThreadLocal#get
+			carrier.remove();
+		}
+		return currentCarrier;
+	}
+
+	private static class Carrier {
+		private Object[] values = new Object[slots.get()];
+		private int occupiedSlots;
+
+		private Object get(int slot) {
+			return slot < values.length ? values[slot] : null;
+		}
+
+		private void set(int slot, Object value) {
+			if (slot >= values.length) {
+				final Object[] newValues = new Object[slots.get()];
+				System.arraycopy(values, 0, newValues, 0, values.length);
+				values = newValues;
+			}
+			if (values[slot] == null) {
+				occupiedSlots++;
+			}
+			values[slot] = value;
+		}
+
+		/**
+		 * @return <code>true</code>, if no slot is occupied anymore
+		 */
+		private boolean clear(int slot) {
+			if (slot < values.length && values[slot] != null) {
+				values[slot] = null;
+				occupiedSlots--;
+			}
+			return occupiedSlots == 0;
+		}
+	}
+}
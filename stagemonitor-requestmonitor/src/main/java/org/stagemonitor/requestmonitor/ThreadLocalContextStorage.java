@@ -0,0 +1,21 @@
+package org.stagemonitor.requestmonitor;
+
+class ThreadLocalContextStorage<T> implements ContextStorage<T> {
+
+	private final ThreadLocal<T> threadLocal = new ThreadLocal<T>();
+
+	@Override
+	public T get() {
+		return threadLocal.get();
+	}
+
+	@Override
+	public void set(T value) {
+		threadLocal.set(value);
+	}
+
+	@Override
+	public void remove() {
+		threadLocal.remove();
+	}
+}
@@ -4,6 +4,7 @@ import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -15,6 +16,8 @@ import org.stagemonitor.requestmonitor.RequestMonitorPlugin;
 public class CallStackElement {
 
 	private static final boolean useObjectPooling = Stagemonitor.getPlugin(RequestMonitorPlugin.class).isProfilerObjectPoolingActive();
+	private static final int maxCallTreeNodes = Stagemonitor.getPlugin(RequestMonitorPlugin.class).getMaxCallTreeNodes();
+	private static final int maxCallTreeDepth = Stagemonitor.getPlugin(RequestMonitorPlugin.class).getMaxCallTreeDepth();
 	private static Queue<CallStackElement> objectPool;
 	static {
 		if (useObjectPooling) {
@@ -35,9 +38,39 @@ public class CallStackElement {
 	private String signature;
 	private long executionTime;
 	private List<CallStackElement> children = new LinkedList<CallStackElement>();
+	@JsonIgnore
+	private CallTreeBudget budget;
 
+	/**
+	 * Creates the root of a new call tree, whose size is limited by stagemonitor.profiler.maxCallTreeNodes and
+	 * stagemonitor.profiler.maxCallTreeDepth
+	 */
 	public static CallStackElement createRoot(String signature) {
-		return CallStackElement.create(null, signature, System.nanoTime());
+		final CallStackElement root = CallStackElement.create(null, signature, System.nanoTime());
+		root.budget = new CallTreeBudget(maxCallTreeNodes, maxCallTreeDepth);
+		return root;
+	}
+
+	/**
+	 * Creates the root of the call tree of a task that has been handed off to another thread. The call tree shares
+	 * the number of nodes of stagemonitor.profiler.maxCallTreeNodes with the call tree of the request that has
+	 * handed off the task.
+	 *
+	 * @param callTreeOfRequest the element of the call tree of the request that has been active when the task has
+	 *                          been handed off
+	 * @return the root or <code>null</code>, if the call tree of the request has already reached its maximum size
+	 */
+	public static CallStackElement createSubTreeRoot(CallStackElement callTreeOfRequest, String signature) {
+		if (callTreeOfRequest.budget == null) {
+			return createRoot(signature);
+		}
+		final CallTreeBudget budget = callTreeOfRequest.budget.createSubTreeBudget();
+		if (budget == null) {
+			return null;
+		}
+		final CallStackElement root = CallStackElement.create(null, signature, System.nanoTime());
+		root.budget = budget;
+		return root;
 	}
 
 	public static CallStackElement create(CallStackElement parent, String signature) {
@@ -64,11 +97,56 @@ public class CallStackElement {
 		cse.signature = signature;
 		if (parent != null) {
 			cse.parent = parent;
+			cse.budget = parent.budget;
 			parent.children.add(cse);
 		}
 		return cse;
 	}
 
+	/**
+	 * Adds a child for a call that has just been started. If the call tree has reached its maximum size or depth, the
+	 * call is aggregated into the {@link SummaryCallStackElement} of its signature instead.
+	 *
+	 * @param startTimestamp the timestamp at the beginning of the method
+	 * @return the element of the call, that has to be stopped by {@link #executionStopped(long, long)}
+	 */
+	CallStackElement startCall(String signature, long startTimestamp) {
+		if (budget == null || budget.tryStartCall()) {
+			return create(this, signature, startTimestamp);
+		}
+		final SummaryCallStackElement summary = getSummary(signature);
+		summary.callStarted(startTimestamp);
+		return summary;
+	}
+
+	/**
+	 * Adds a child for a call that has already been completed. If the call tree has reached its maximum size or
+	 * depth, the call is aggregated into the {@link SummaryCallStackElement} of its signature instead.
+	 */
+	void addCall(String signature, long executionTime) {
+		if (budget == null || budget.tryAddCall()) {
+			create(this, signature, executionTime);
+		} else {
+			getSummary(signature).callCompleted(executionTime);
+		}
+	}
+
+	private SummaryCallStackElement getSummary(String signature) {
+		// once the budget is exhausted, only summaries are added, so they are always the last children
+		for (ListIterator<CallStackElement> iterator = children.listIterator(children.size()); iterator.hasPrevious(); ) {
+			final CallStackElement child = iterator.previous();
+			if (!(child instanceof SummaryCallStackElement)) {
+				break;
+			}
+			if (child.signature.equals(signature)) {
+				return (SummaryCallStackElement) child;
+			}
+		}
+		final SummaryCallStackElement summary = new SummaryCallStackElement(this, signature);
+		children.add(summary);
+		return summary;
+	}
+
 	public void recycle() {
 		if (!useObjectPooling) {
 			return;
@@ -76,6 +154,7 @@ public class CallStackElement {
 		parent = null;
 		signature = null;
 		executionTime = 0;
+		budget = null;
 		for (CallStackElement child : children) {
 			child.recycle();
 		}
@@ -181,6 +260,9 @@ public class CallStackElement {
 	 * @return the parent of this {@link CallStackElement}
 	 */
 	public CallStackElement executionStopped(long timestamp, long minExecutionTime) {
+		if (budget != null) {
+			budget.callStopped();
+		}
 		// executionTime is initialized to start timestamp
 		long localExecutionTime = timestamp - this.executionTime;
 		this.executionTime = localExecutionTime;
@@ -272,7 +354,12 @@ public class CallStackElement {
 			}
 		}
 
-		sb.append(getSignature()).append('\n');
+		appendSignature(sb);
+		sb.append('\n');
+	}
+
+	void appendSignature(StringBuilder sb) {
+		sb.append(signature);
 	}
 
 	private boolean isLastChild() {
@@ -0,0 +1,78 @@
+package org.stagemonitor.requestmonitor.profiler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of nodes and the depth of a call tree.
+ * <p/>
+ * The nodes that have been created are never subtracted, even if they are removed from the call tree later on because
+ * they were too fast. So once the budget is exhausted, it stays exhausted.
+ * <p/>
+ * The number of nodes is shared with the budgets of the call trees of the tasks that a request has handed off to
+ * other threads (see {@link #createSubTreeBudget()}), so that all call trees of a request together don't exceed the
+ * maximum number of nodes. The depth is tracked per call tree, which is only built by one thread at a time.
+ */
+final class CallTreeBudget {
+
+	private final int maxNodes;
+	private final int maxDepth;
+	private final AtomicInteger nodes;
+	private int depth;
+
+	CallTreeBudget(int maxNodes, int maxDepth) {
+		this(maxNodes, maxDepth, new AtomicInteger(1));
+	}
+
+	private CallTreeBudget(int maxNodes, int maxDepth, AtomicInteger nodes) {
+		this.maxNodes = maxNodes;
+		this.maxDepth = maxDepth;
+		this.nodes = nodes;
+	}
+
+	/**
+	 * Creates the budget for the call tree of a task that has been handed off to another thread. The root of that
+	 * call tree counts as a node.
+	 *
+	 * @return the budget that shares the number of nodes with this budget or <code>null</code>, if the budget is
+	 *         exhausted
+	 */
+	CallTreeBudget createSubTreeBudget() {
+		if (tryAddNode()) {
+			return new CallTreeBudget(maxNodes, maxDepth, nodes);
+		}
+		return null;
+	}
+
+	/**
+	 * @return <code>true</code>, if a node for a call that has just been started may be added to the call tree
+	 */
+	boolean tryStartCall() {
+		if (tryAddCall()) {
+			depth++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return <code>true</code>, if a node for a call that has already been completed may be added to the call tree
+	 */
+	boolean tryAddCall() {
+		return depth < maxDepth && tryAddNode();
+	}
+
+	private boolean tryAddNode() {
+		int current;
+		do {
+			current = nodes.get();
+			if (current >= maxNodes) {
+				return false;
+			}
+		} while (!nodes.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	void callStopped() {
+		depth--;
+	}
+}
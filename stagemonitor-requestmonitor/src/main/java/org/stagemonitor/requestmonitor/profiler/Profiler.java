@@ -1,13 +1,15 @@
 package org.stagemonitor.requestmonitor.profiler;
 
 import org.stagemonitor.core.Stagemonitor;
+import org.stagemonitor.requestmonitor.ContextStorage;
 import org.stagemonitor.requestmonitor.RequestMonitorPlugin;
 
 public final class Profiler {
 
 	public static final long MIN_EXECUTION_TIME_NANOS = Stagemonitor.getPlugin(RequestMonitorPlugin.class).getMinExecutionTimeNanos();
 
-	private static final ThreadLocal<CallStackElement> methodCallParent = new ThreadLocal<CallStackElement>();
+	private static final ContextStorage<CallStackElement> methodCallParent = Stagemonitor.getPlugin(RequestMonitorPlugin.class)
+			.getContextStorage().newContextStorage();
 
 	private Profiler() {
 	}
@@ -15,7 +17,7 @@ public final class Profiler {
 	public static void start(String signature) {
 		final CallStackElement parent = methodCallParent.get();
 		if (parent != null) {
-			methodCallParent.set(CallStackElement.create(parent, signature));
+			methodCallParent.set(parent.startCall(signature, System.nanoTime()));
 		}
 	}
 
@@ -32,7 +34,9 @@ public final class Profiler {
 
 	public static void addCall(String signature, long executionTimeNanos) {
 		final CallStackElement currentCall = methodCallParent.get();
-		CallStackElement.create(currentCall, signature, executionTimeNanos);
+		if (currentCall != null) {
+			currentCall.addCall(signature, executionTimeNanos);
+		}
 	}
 
 	public static boolean isProfilingActive() {
@@ -59,6 +63,16 @@ public final class Profiler {
 		return methodCallParent.get();
 	}
 
+	/**
+	 * Sets the current {@link CallStackElement} of this thread, for example to continue profiling a request on
+	 * another thread
+	 *
+	 * @param methodCallParent the current {@link CallStackElement} or <code>null</code> to deactivate the profiling
+	 */
+	public static void setMethodCallParent(CallStackElement methodCallParent) {
+		Profiler.methodCallParent.set(methodCallParent);
+	}
+
 	public static void clearMethodCallParent() {
 		methodCallParent.remove();
 	}
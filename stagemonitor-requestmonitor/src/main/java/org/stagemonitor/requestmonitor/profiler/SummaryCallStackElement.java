@@ -0,0 +1,67 @@
+package org.stagemonitor.requestmonitor.profiler;
+
+/**
+ * Aggregates the calls of a method that could not be added to the call tree individually, because the call tree has
+ * reached its maximum size or depth.
+ * <p/>
+ * The execution time is the total execution time of all aggregated calls. Calls that are nested in an aggregated call
+ * are not recorded, as their execution time is part of the aggregated call.
+ */
+public class SummaryCallStackElement extends CallStackElement {
+
+	private int count;
+	private long startTimestamp;
+	private int nestedCalls;
+
+	SummaryCallStackElement(CallStackElement parent, String signature) {
+		setParent(parent);
+		setSignature(signature);
+	}
+
+	/**
+	 * @return the number of aggregated calls
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	void callStarted(long startTimestamp) {
+		this.startTimestamp = startTimestamp;
+	}
+
+	void callCompleted(long executionTime) {
+		count++;
+		setExecutionTime(getExecutionTime() + executionTime);
+	}
+
+	@Override
+	CallStackElement startCall(String signature, long startTimestamp) {
+		nestedCalls++;
+		return this;
+	}
+
+	@Override
+	void addCall(String signature, long executionTime) {
+	}
+
+	@Override
+	public CallStackElement executionStopped(long timestamp, long minExecutionTime) {
+		if (nestedCalls > 0) {
+			nestedCalls--;
+			return this;
+		}
+		callCompleted(timestamp - startTimestamp);
+		return getParent();
+	}
+
+	@Override
+	public void recycle() {
+		// summaries are not pooled
+	}
+
+	@Override
+	void appendSignature(StringBuilder sb) {
+		sb.append(count).append(" x ");
+		super.appendSignature(sb);
+	}
+}
@@ -4,8 +4,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.elasticsearch.TimeBasedIndexName;
 import org.stagemonitor.core.util.JsonUtils;
-import org.stagemonitor.core.util.StringUtils;
 import org.stagemonitor.requestmonitor.RequestMonitorPlugin;
 import org.stagemonitor.requestmonitor.RequestTrace;
 
@@ -15,8 +15,10 @@ import org.stagemonitor.requestmonitor.RequestTrace;
 public class ElasticsearchRequestTraceReporter extends AbstractInterceptedRequestTraceReporter {
 
 	public static final String ES_REQUEST_TRACE_LOGGER = "ElasticsearchRequestTraces";
+	public static final String STAGEMONITOR_REQUESTS_INDEX_PREFIX = "stagemonitor-requests-";
 
 	private final Logger requestTraceLogger;
+	private TimeBasedIndexName requestIndexName;
 
 	public ElasticsearchRequestTraceReporter() {
 		this(LoggerFactory.getLogger(ES_REQUEST_TRACE_LOGGER));
@@ -26,9 +28,15 @@ public class ElasticsearchRequestTraceReporter extends AbstractInterceptedReques
 		this.requestTraceLogger = requestTraceLogger;
 	}
 
+	@Override
+	public void init(InitArguments initArguments) {
+		super.init(initArguments);
+		requestIndexName = new TimeBasedIndexName(STAGEMONITOR_REQUESTS_INDEX_PREFIX, requestMonitorPlugin.getRequestIndexRollover());
+	}
+
 	@Override
 	protected <T extends RequestTrace> void doReport(T requestTrace, PostExecutionInterceptorContext context) {
-		final String index = "stagemonitor-requests-" + StringUtils.getLogstashStyleDate();
+		final String index = requestIndexName.getIndexName();
 		final String type = "requests";
 		if (!requestMonitorPlugin.isOnlyLogElasticsearchRequestTraceReports()) {
 			if (context.getExcludedProperties().isEmpty()) {
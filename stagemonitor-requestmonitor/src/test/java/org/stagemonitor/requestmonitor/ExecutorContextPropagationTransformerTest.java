@@ -0,0 +1,85 @@
+package org.stagemonitor.requestmonitor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.stagemonitor.core.MeasurementSession;
+import org.stagemonitor.core.Stagemonitor;
+
+public class ExecutorContextPropagationTransformerTest {
+
+	private RequestTraceCapturingReporter requestTraceCapturingReporter;
+
+	@BeforeClass
+	public static void attachProfiler() {
+		Stagemonitor.init();
+	}
+
+	@Before
+	public void before() throws Exception {
+		Stagemonitor.setMeasurementSession(new MeasurementSession("ExecutorContextPropagationTransformerTest", "test", "test"));
+		Stagemonitor.startMonitoring().get();
+		requestTraceCapturingReporter = new RequestTraceCapturingReporter();
+	}
+
+	@AfterClass
+	public static void resetStagemonitor() {
+		Stagemonitor.reset();
+	}
+
+	@Test
+	public void testPropagateContextToApplicationExecutor() throws Exception {
+		new TestClass().monitorMe();
+
+		final RequestTrace requestTrace = requestTraceCapturingReporter.get();
+		assertEquals(2, requestTrace.getExecutionCountDb());
+	}
+
+	private static class TestClass {
+		private final TestExecutor executor = new TestExecutor();
+
+		@MonitorRequests
+		public void monitorMe() throws Exception {
+			final Runnable dbCall = new Runnable() {
+				@Override
+				public void run() {
+					RequestMonitor.getRequest().dbCallCompleted(1);
+				}
+			};
+			executor.submit(dbCall).get();
+			executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					dbCall.run();
+					return null;
+				}
+			}).get();
+		}
+	}
+
+	private static class TestExecutor implements Executor {
+		private final ExecutorService delegate = Executors.newSingleThreadExecutor();
+
+		@Override
+		public void execute(Runnable command) {
+			delegate.execute(command);
+		}
+
+		public Future<?> submit(Runnable task) {
+			return delegate.submit(task);
+		}
+
+		public <T> Future<T> submit(Callable<T> task) {
+			return delegate.submit(task);
+		}
+	}
+}
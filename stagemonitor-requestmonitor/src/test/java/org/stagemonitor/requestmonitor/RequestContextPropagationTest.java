@@ -0,0 +1,193 @@
+package org.stagemonitor.requestmonitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.stagemonitor.core.CorePlugin;
+import org.stagemonitor.core.Stagemonitor;
+import org.stagemonitor.core.configuration.Configuration;
+import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.requestmonitor.profiler.CallStackElement;
+import org.stagemonitor.requestmonitor.profiler.Profiler;
+import org.stagemonitor.requestmonitor.profiler.SummaryCallStackElement;
+
+public class RequestContextPropagationTest {
+
+	private RequestMonitor requestMonitor;
+	private ExecutorService executorService;
+
+	@Before
+	public void before() {
+		final RequestMonitorPlugin requestMonitorPlugin = mock(RequestMonitorPlugin.class);
+		final Configuration configuration = mock(Configuration.class);
+		final CorePlugin corePlugin = mock(CorePlugin.class);
+		final Metric2Registry registry = mock(Metric2Registry.class);
+
+		doReturn(corePlugin).when(configuration).getConfig(CorePlugin.class);
+		doReturn(requestMonitorPlugin).when(configuration).getConfig(RequestMonitorPlugin.class);
+
+		doReturn(true).when(corePlugin).isStagemonitorActive();
+		doReturn(1000).when(corePlugin).getThreadPoolQueueCapacityLimit();
+		doReturn(Collections.singletonList("http://mockhost:9200")).when(corePlugin).getElasticsearchUrls();
+		doReturn(mock(ElasticsearchClient.class)).when(corePlugin).getElasticsearchClient();
+
+		doReturn(true).when(requestMonitorPlugin).isCollectRequestStats();
+		doReturn(true).when(requestMonitorPlugin).isProfilerActive();
+		doReturn(1000000d).when(requestMonitorPlugin).getOnlyReportNRequestsPerMinuteToElasticsearch();
+		doReturn(1000000d).when(requestMonitorPlugin).getOnlyCollectNCallTreesPerMinute();
+		doReturn(mock(Timer.class)).when(registry).timer(any(MetricName.class));
+		doReturn(mock(Meter.class)).when(registry).meter(any(MetricName.class));
+		requestMonitor = new RequestMonitor(configuration, registry);
+		executorService = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void after() {
+		executorService.shutdown();
+		Stagemonitor.reset();
+		SharedMetricRegistries.clear();
+	}
+
+	@Test
+	public void testDontWrapOutsideOfRequest() throws Exception {
+		final Runnable runnable = mock(Runnable.class);
+		assertSame(runnable, RequestContextPropagation.wrap(runnable));
+	}
+
+	@Test
+	public void testPropagateRequestToOtherThread() throws Exception {
+		final RequestTrace requestTrace = monitor(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				Profiler.start("submit()");
+				final Future<?> future = executorService.submit(RequestContextPropagation.wrap(new Runnable() {
+					@Override
+					public void run() {
+						Profiler.addIOCall("SELECT * FROM test", 1000000);
+						RequestMonitor.getRequest().dbCallCompleted(1);
+					}
+				}));
+				final String result = executorService.submit(RequestContextPropagation.wrap(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						RequestMonitor.getRequest().dbCallCompleted(1);
+						return "result";
+					}
+				})).get();
+				future.get();
+				Profiler.stop();
+				return result;
+			}
+		});
+
+		assertEquals(2, requestTrace.getExecutionCountDb());
+		final CallStackElement submit = requestTrace.getCallStack().getChildren().get(0);
+		assertEquals("submit()", submit.getSignature());
+		final CallStackElement task = submit.getChildren().get(0);
+		assertEquals("SELECT * FROM test ", task.getChildren().get(0).getSignature());
+		assertSame(submit, task.getParent());
+		// the thread of the executor does not keep the context of the request
+		assertNull(executorService.submit(new Callable<RequestTrace>() {
+			@Override
+			public RequestTrace call() throws Exception {
+				return RequestMonitor.getRequest();
+			}
+		}).get());
+	}
+
+	@Test
+	public void testExecuteOnThreadOfRequest() throws Exception {
+		final RequestTrace requestTrace = monitor(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				RequestContextPropagation.wrap(new Runnable() {
+					@Override
+					public void run() {
+						Profiler.addIOCall("SELECT * FROM test", 1000000);
+					}
+				}).run();
+				return null;
+			}
+		});
+
+		assertEquals("SELECT * FROM test ", requestTrace.getCallStack().getChildren().get(0).getSignature());
+	}
+
+	@Test
+	public void testTasksShareNodeLimitOfRequest() throws Exception {
+		final RequestTrace requestTrace = monitor(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				Profiler.start("submit()");
+				for (int i = 0; i < 3; i++) {
+					executorService.submit(RequestContextPropagation.wrap(new Runnable() {
+						@Override
+						public void run() {
+							for (int j = 0; j < 6000; j++) {
+								Profiler.start("method()");
+								Profiler.stop();
+							}
+						}
+					})).get();
+				}
+				Profiler.stop();
+				return null;
+			}
+		});
+
+		// stagemonitor.profiler.maxCallTreeNodes=10000 applies to the call trees of all tasks of the request together
+		final CallStackElement submit = requestTrace.getCallStack().getChildren().get(0);
+		// the second task exhausts the limit, so no call tree is collected for the third task
+		assertEquals(2, submit.getChildren().size());
+		final List<CallStackElement> secondTask = submit.getChildren().get(1).getChildren();
+		assertTrue(secondTask.get(secondTask.size() - 1) instanceof SummaryCallStackElement);
+		assertEquals(10000, countNodes(requestTrace.getCallStack()));
+	}
+
+	private int countNodes(CallStackElement callTree) {
+		int nodes = callTree instanceof SummaryCallStackElement ? 0 : 1;
+		for (CallStackElement child : callTree.getChildren()) {
+			nodes += countNodes(child);
+		}
+		return nodes;
+	}
+
+	private RequestTrace monitor(final Callable<Object> execution) throws Exception {
+		@SuppressWarnings("unchecked")
+		final MonitoredRequest<RequestTrace> monitoredRequest = mock(MonitoredRequest.class);
+		final RequestTrace requestTrace = new RequestTrace("1");
+		requestTrace.setName("test");
+		doReturn(requestTrace).when(monitoredRequest).createRequestTrace();
+		doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return execution.call();
+			}
+		}).when(monitoredRequest).execute();
+
+		return requestMonitor.monitor(monitoredRequest).getRequestTrace();
+	}
+}
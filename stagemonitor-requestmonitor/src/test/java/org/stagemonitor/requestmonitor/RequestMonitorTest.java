@@ -3,12 +3,15 @@ package org.stagemonitor.requestmonitor;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 
@@ -29,6 +32,8 @@ import org.stagemonitor.core.configuration.Configuration;
 import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.core.metrics.metrics2.MetricName;
+import org.stagemonitor.requestmonitor.profiler.Profiler;
+import org.stagemonitor.requestmonitor.reporter.RequestTraceReporter;
 
 
 public class RequestMonitorTest {
@@ -187,6 +192,84 @@ public class RequestMonitorTest {
 		}
 	}
 
+	@Test
+	public void testIsActiveIsEvaluatedOncePerReporterAndRequest() throws Exception {
+		doReturn(1000000d).when(requestMonitorPlugin).getOnlyCollectNCallTreesPerMinute();
+		final RequestTraceReporter reporter1 = mock(RequestTraceReporter.class);
+		final RequestTraceReporter reporter2 = mock(RequestTraceReporter.class);
+		doReturn(false).when(reporter1).isActive(any(RequestTraceReporter.IsActiveArguments.class));
+		doReturn(true).when(reporter2).isActive(any(RequestTraceReporter.IsActiveArguments.class));
+		requestMonitor.addReporter(reporter1);
+		requestMonitor.addReporter(reporter2);
+
+		final RequestMonitor.RequestInformation<RequestTrace> monitor = requestMonitor.monitor(createMonitoredRequest());
+
+		assertNotNull(monitor.getRequestTrace().getCallStack());
+		verify(reporter2, timeout(1000)).reportRequestTrace(any(RequestTraceReporter.ReportArguments.class));
+		verify(reporter1, never()).reportRequestTrace(any(RequestTraceReporter.ReportArguments.class));
+		verify(reporter1, times(1)).isActive(any(RequestTraceReporter.IsActiveArguments.class));
+		verify(reporter2, times(1)).isActive(any(RequestTraceReporter.IsActiveArguments.class));
+	}
+
+	@Test
+	public void testOnlyMonitorForwardingExecutionWhenForwardedExecutionsAreRecycled() throws Exception {
+		final MonitoredRequest<RequestTrace> forwardingRequest = createMonitoredRequest();
+		final MonitoredRequest<RequestTrace> forwardedRequest1 = createMonitoredRequest();
+		final MonitoredRequest<RequestTrace> forwardedRequest2 = createMonitoredRequest();
+
+		requestMonitor.monitorStart(forwardingRequest);
+		requestMonitor.monitorStart(forwardedRequest1);
+		requestMonitor.monitorStop();
+		requestMonitor.monitorStart(forwardedRequest2);
+		requestMonitor.monitorStop();
+		requestMonitor.monitorStop();
+
+		verify(forwardingRequest).onPostExecute(Mockito.<RequestMonitor.RequestInformation<RequestTrace>>any());
+		verify(forwardedRequest1, never()).createRequestTrace();
+		verify(forwardedRequest2, never()).createRequestTrace();
+		assertNull(RequestMonitor.getRequest());
+	}
+
+	@Test
+	public void testAsyncRequest() throws Exception {
+		doReturn(1000000d).when(requestMonitorPlugin).getOnlyCollectNCallTreesPerMinute();
+		@SuppressWarnings("unchecked")
+		final AsyncMonitoredRequest<RequestTrace> monitoredRequest = mock(AsyncMonitoredRequest.class);
+		final RequestTrace requestTrace = new RequestTrace("1");
+		requestTrace.setName("test");
+		doReturn(requestTrace).when(monitoredRequest).createRequestTrace();
+		doReturn(true).when(monitoredRequest).isAsyncStarted();
+
+		final RequestMonitor.RequestInformation<RequestTrace> info = requestMonitor.monitor(monitoredRequest);
+
+		assertTrue(info.isAsync());
+		assertNull(RequestMonitor.getRequest());
+		assertNull(Profiler.getMethodCallParent());
+		verify(monitoredRequest, never()).onPostExecute(Mockito.<RequestMonitor.RequestInformation<RequestTrace>>any());
+
+		final Thread thread = new Thread() {
+			@Override
+			public void run() {
+				requestMonitor.resume(info);
+				Profiler.start("asyncWork()");
+				Profiler.addCall("asyncCall()", 1000000);
+				Profiler.stop();
+				requestMonitor.suspend(info);
+			}
+		};
+		thread.start();
+		thread.join();
+		Thread.sleep(5);
+
+		requestMonitor.monitorStop(info);
+
+		verify(monitoredRequest).onPostExecute(info);
+		assertTrue(requestTrace.getExecutionTime() >= 5);
+		assertEquals("test", requestTrace.getCallStack().getSignature());
+		assertEquals("asyncWork()", requestTrace.getCallStack().getChildren().get(0).getSignature());
+		assertNull(Profiler.getMethodCallParent());
+	}
+
 	@Test
 	public void testGetInstanceNameFromExecution() throws Exception {
 		final MonitoredRequest<RequestTrace> monitoredRequest = createMonitoredRequest();
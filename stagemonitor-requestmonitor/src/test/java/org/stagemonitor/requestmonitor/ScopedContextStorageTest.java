@@ -0,0 +1,120 @@
+package org.stagemonitor.requestmonitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ScopedContextStorageTest {
+
+	private final ContextStorage<String> first = ContextStorageStrategy.SCOPED.newContextStorage();
+	private final ContextStorage<String> second = ContextStorageStrategy.SCOPED.newContextStorage();
+
+	@After
+	public void after() {
+		first.remove();
+		second.remove();
+	}
+
+	@Test
+	public void testSetAndGet() throws Exception {
+		assertNull(first.get());
+		first.set("foo");
+		second.set("bar");
+		assertEquals("foo", first.get());
+		assertEquals("bar", second.get());
+		first.set("baz");
+		assertEquals("baz", first.get());
+	}
+
+	@Test
+	public void testCarrierIsReleasedWhenAllValuesAreRemoved() throws Exception {
+		assertFalse(ScopedContextStorage.isBound());
+		first.set("foo");
+		second.set("bar");
+		assertTrue(ScopedContextStorage.isBound());
+
+		first.set(null);
+		assertTrue(ScopedContextStorage.isBound());
+		assertEquals("bar", second.get());
+
+		second.remove();
+		assertFalse(ScopedContextStorage.isBound());
+		assertNull(first.get());
+		assertNull(second.get());
+	}
+
+	@Test
+	public void testNoStateIsRetainedByThread() throws Exception {
+		final AtomicInteger threadLocalEntries = new AtomicInteger(-1);
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				first.get();
+				second.remove();
+				first.set("foo");
+				second.set("bar");
+				first.remove();
+				second.set(null);
+				first.get();
+				try {
+					threadLocalEntries.set(getThreadLocalEntries(Thread.currentThread()));
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		thread.start();
+		thread.join();
+		assertEquals(0, threadLocalEntries.get());
+	}
+
+	@Test
+	public void testStorageCreatedAfterCarrier() throws Exception {
+		first.set("foo");
+		final ContextStorage<String> third = ContextStorageStrategy.SCOPED.newContextStorage();
+		assertNull(third.get());
+		third.set("bar");
+		assertEquals("foo", first.get());
+		assertEquals("bar", third.get());
+		third.remove();
+	}
+
+	@Test
+	public void testValuesAreBoundToThread() throws Exception {
+		first.set("foo");
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			assertNull(executorService.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return first.get();
+				}
+			}).get());
+		} finally {
+			executorService.shutdown();
+		}
+		assertEquals("foo", first.get());
+	}
+
+	private static int getThreadLocalEntries(Thread thread) throws Exception {
+		final Field threadLocals = Thread.class.getDeclaredField("threadLocals");
+		threadLocals.setAccessible(true);
+		final Object threadLocalMap = threadLocals.get(thread);
+		if (threadLocalMap == null) {
+			return 0;
+		}
+		final Field size = threadLocalMap.getClass().getDeclaredField("size");
+		size.setAccessible(true);
+		return size.getInt(threadLocalMap);
+	}
+}
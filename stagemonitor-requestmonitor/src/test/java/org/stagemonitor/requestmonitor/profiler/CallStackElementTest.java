@@ -1,5 +1,8 @@
 package org.stagemonitor.requestmonitor.profiler;
 
+import java.util.List;
+
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -24,4 +27,68 @@ public class CallStackElementTest {
 		CallStackElement callStackElement = CallStackElement.createRoot("total");
 		Assert.assertNull(callStackElement.getShortSignature());
 	}
+
+	@After
+	public void after() {
+		Profiler.clearMethodCallParent();
+	}
+
+	@Test
+	public void testSummarizeCallsIfMaxNodesIsReached() {
+		final CallStackElement root = Profiler.activateProfiling("root");
+		// the root counts as a node, so stagemonitor.profiler.maxCallTreeNodes=10000 allows 9999 children
+		for (int i = 0; i < 10100; i++) {
+			Profiler.start("method" + (i % 2) + "()");
+			Profiler.stop();
+		}
+		Profiler.addIOCall("SELECT * FROM test", 1000);
+		Assert.assertSame(root, Profiler.getMethodCallParent());
+		Profiler.stop();
+
+		final List<CallStackElement> children = root.getChildren();
+		Assert.assertEquals(9999 + 3, children.size());
+		Assert.assertFalse(children.get(9998) instanceof SummaryCallStackElement);
+
+		final SummaryCallStackElement method1 = (SummaryCallStackElement) children.get(9999);
+		Assert.assertEquals("method1()", method1.getSignature());
+		Assert.assertEquals(51, method1.getCount());
+		Assert.assertSame(root, method1.getParent());
+		final SummaryCallStackElement method0 = (SummaryCallStackElement) children.get(10000);
+		Assert.assertEquals("method0()", method0.getSignature());
+		Assert.assertEquals(50, method0.getCount());
+		final SummaryCallStackElement select = (SummaryCallStackElement) children.get(10001);
+		Assert.assertEquals(1, select.getCount());
+		Assert.assertEquals(1000, select.getExecutionTime());
+		Assert.assertTrue(select.isIOQuery());
+	}
+
+	@Test
+	public void testSummarizeCallsIfMaxDepthIsReached() {
+		final CallStackElement root = Profiler.activateProfiling("root");
+		// recursive calls are nested deeper than stagemonitor.profiler.maxCallTreeDepth=100
+		for (int i = 0; i < 150; i++) {
+			Profiler.start("method()");
+		}
+		for (int i = 0; i < 150; i++) {
+			Profiler.stop();
+		}
+		Profiler.start("other()");
+		Profiler.stop();
+		Assert.assertSame(root, Profiler.getMethodCallParent());
+		Profiler.stop();
+
+		Assert.assertEquals(2, root.getChildren().size());
+		Assert.assertEquals("other()", root.getChildren().get(1).getSignature());
+		CallStackElement element = root.getChildren().get(0);
+		for (int depth = 2; depth <= 100; depth++) {
+			Assert.assertEquals(1, element.getChildren().size());
+			element = element.getChildren().get(0);
+			Assert.assertFalse(element instanceof SummaryCallStackElement);
+		}
+		Assert.assertEquals(1, element.getChildren().size());
+		final SummaryCallStackElement summary = (SummaryCallStackElement) element.getChildren().get(0);
+		Assert.assertEquals(1, summary.getCount());
+		Assert.assertTrue(summary.getChildren().isEmpty());
+		Assert.assertTrue(root.toString().contains("1 x method()"));
+	}
 }
@@ -13,6 +13,7 @@ import org.stagemonitor.core.CorePlugin;
 import org.stagemonitor.core.MeasurementSession;
 import org.stagemonitor.core.configuration.AbstractElasticsearchTest;
 import org.stagemonitor.core.configuration.Configuration;
+import org.stagemonitor.core.elasticsearch.IndexRollover;
 import org.stagemonitor.requestmonitor.RequestMonitorPlugin;
 import org.stagemonitor.requestmonitor.RequestTrace;
 
@@ -28,6 +29,7 @@ public class ElasticsearchRequestTraceReporterIntegrationTest extends AbstractEl
 		this.requestMonitorPlugin = mock(RequestMonitorPlugin.class);
 		when(configuration.getConfig(CorePlugin.class)).thenReturn(corePlugin);
 		when(configuration.getConfig(RequestMonitorPlugin.class)).thenReturn(requestMonitorPlugin);
+		when(requestMonitorPlugin.getRequestIndexRollover()).thenReturn(IndexRollover.DAILY);
 		when(corePlugin.getElasticsearchClient()).thenReturn(elasticsearchClient);
 		when(requestMonitorPlugin.getOnlyReportNRequestsPerMinuteToElasticsearch()).thenReturn(1000000d);
 		when(requestMonitorPlugin.isPseudonymizeUserNames()).thenReturn(true);
@@ -3,6 +3,7 @@ package org.stagemonitor.web;
 import static org.stagemonitor.core.pool.MBeanPooledResource.tomcatThreadPools;
 import static org.stagemonitor.core.pool.PooledResourceMetricsRegisterer.registerPooledResources;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
@@ -31,7 +32,9 @@ import org.stagemonitor.core.configuration.converter.SetValueConverter;
 import org.stagemonitor.core.elasticsearch.ElasticsearchClient;
 import org.stagemonitor.core.grafana.GrafanaClient;
 import org.stagemonitor.core.util.ClassUtils;
+import org.stagemonitor.core.util.HashFunction;
 import org.stagemonitor.core.util.StringUtils;
+import org.stagemonitor.requestmonitor.RequestMonitorPlugin;
 import org.stagemonitor.web.configuration.ConfigurationServlet;
 import org.stagemonitor.web.logging.MDCListener;
 import org.stagemonitor.web.metrics.StagemonitorMetricsServlet;
@@ -89,6 +92,21 @@ public class WebPlugin extends StagemonitorPlugin implements ServletContainerIni
 			.defaultValue(true)
 			.configurationCategory(WEB_PLUGIN)
 			.build();
+	private final ConfigurationOption<HashFunction> uniqueVisitorIdHashFunction = ConfigurationOption.enumOption(HashFunction.class)
+			.key("stagemonitor.requestmonitor.http.uniqueVisitorId.hashFunction")
+			.dynamic(false)
+			.label("Unique visitor id hash function")
+			.description("The hash function that is used to create the unique visitor id out of the user name or " +
+					"the ip, session id and user agent. " +
+					HashFunction.SHA1 + ": a cryptographic hash, which makes it practically impossible " +
+					"to derive the user name or ip from the unique visitor id. " +
+					HashFunction.MURMUR3_128 + ": a faster non-cryptographic hash. Only use it if the unique visitor ids " +
+					"don't have to protect the identity of the users. Note that switching the hash function changes " +
+					"the unique visitor ids of all users.")
+			.defaultValue(HashFunction.SHA1)
+			.configurationCategory(WEB_PLUGIN)
+			.tags("security-relevant")
+			.build();
 	private ConfigurationOption<Collection<String>> excludeHeaders = ConfigurationOption.lowerStringsOption()
 			.key("stagemonitor.requestmonitor.http.headers.excluded")
 			.dynamic(true)
@@ -191,6 +209,17 @@ public class WebPlugin extends StagemonitorPlugin implements ServletContainerIni
 			.defaultValue(null)
 			.configurationCategory(WEB_PLUGIN)
 			.build();
+	private final ConfigurationOption<Long> staticFilesCacheLimitBytes = ConfigurationOption.longOption()
+			.key("stagemonitor.web.staticFiles.cacheLimitBytes")
+			.dynamic(false)
+			.label("Static files cache limit (bytes)")
+			.description("The maximum number of bytes the static files of stagemonitor (for example the files of the " +
+					"in browser widget) may occupy in memory, including their gzip compressed variants. Files that " +
+					"don't fit into the cache are read from the classpath on every request and are served " +
+					"uncompressed and without an ETag.")
+			.defaultValue(10L * 1024 * 1024)
+			.configurationCategory(WEB_PLUGIN)
+			.build();
 	private ConfigurationOption<Boolean> monitorOnlySpringMvcOption = ConfigurationOption.booleanOption()
 			.key("stagemonitor.requestmonitor.spring.monitorOnlySpringMvcRequests")
 			.dynamic(true)
@@ -241,6 +270,8 @@ public class WebPlugin extends StagemonitorPlugin implements ServletContainerIni
 			.configurationCategory(WEB_PLUGIN)
 			.build();
 
+	private volatile ConfidentialRequestParams confidentialRequestParams;
+
 	@Override
 	public void initializePlugin(StagemonitorPlugin.InitArguments initArguments) {
 		registerPooledResources(initArguments.getMetricRegistry(), tomcatThreadPools());
@@ -279,6 +310,10 @@ public class WebPlugin extends StagemonitorPlugin implements ServletContainerIni
 		return parseUserAgent.getValue();
 	}
 
+	public HashFunction getUniqueVisitorIdHashFunction() {
+		return uniqueVisitorIdHashFunction.getValue();
+	}
+
 	public Collection<String> getExcludeHeaders() {
 		return excludeHeaders.getValue();
 	}
@@ -295,6 +330,27 @@ public class WebPlugin extends StagemonitorPlugin implements ServletContainerIni
 		return requestParamsConfidential.getValue();
 	}
 
+	/**
+	 * Returns the patterns of {@link #getRequestParamsConfidential()} and
+	 * {@link RequestMonitorPlugin#getConfidentialParameters()}.
+	 * <p/>
+	 * The result is cached until the configuration changes.
+	 *
+	 * @param configuration the configuration
+	 * @return all patterns of confidential request parameters
+	 */
+	public Collection<Pattern> getAllConfidentialRequestParams(Configuration configuration) {
+		final long version = configuration.getVersion();
+		ConfidentialRequestParams params = confidentialRequestParams;
+		if (params == null || params.configurationVersion != version) {
+			final Set<Pattern> patterns = new LinkedHashSet<Pattern>(getRequestParamsConfidential());
+			patterns.addAll(configuration.getConfig(RequestMonitorPlugin.class).getConfidentialParameters());
+			params = new ConfidentialRequestParams(version, new ArrayList<Pattern>(patterns));
+			confidentialRequestParams = params;
+		}
+		return params.patterns;
+	}
+
 	public boolean isRealUserMonitoringEnabled() {
 		return rumEnabled.getValue();
 	}
@@ -319,6 +375,10 @@ public class WebPlugin extends StagemonitorPlugin implements ServletContainerIni
 		return metricsServletJsonpParameter.getValue();
 	}
 
+	public long getStaticFilesCacheLimitBytes() {
+		return staticFilesCacheLimitBytes.getValue();
+	}
+
 	public boolean isWidgetAndStagemonitorEndpointsAllowed(HttpServletRequest request, Configuration configuration) {
 		final Boolean showWidgetAttr = (Boolean) request.getAttribute(STAGEMONITOR_SHOW_WIDGET);
 		if (showWidgetAttr != null) {
@@ -392,7 +452,7 @@ public class WebPlugin extends StagemonitorPlugin implements ServletContainerIni
 		securityFilter.setAsyncSupported(true);
 
 		final FilterRegistration.Dynamic monitorFilter = ctx.addFilter(HttpRequestMonitorFilter.class.getSimpleName(), new HttpRequestMonitorFilter());
-		monitorFilter.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD), false, "/*");
+		monitorFilter.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD, DispatcherType.ASYNC), false, "/*");
 		monitorFilter.setAsyncSupported(true);
 
 		ctx.addListener(MDCListener.class);
@@ -402,4 +462,14 @@ public class WebPlugin extends StagemonitorPlugin implements ServletContainerIni
 			// embedded servlet containers like jetty don't necessarily support sessions
 		}
 	}
+
+	private static class ConfidentialRequestParams {
+		private final long configurationVersion;
+		private final Collection<Pattern> patterns;
+
+		private ConfidentialRequestParams(long configurationVersion, Collection<Pattern> patterns) {
+			this.configurationVersion = configurationVersion;
+			this.patterns = patterns;
+		}
+	}
 }
@@ -1,6 +1,5 @@
 package org.stagemonitor.web.logging;
 
-import java.util.UUID;
 import javax.servlet.ServletRequestEvent;
 import javax.servlet.ServletRequestListener;
 
@@ -8,6 +7,7 @@ import org.slf4j.MDC;
 import org.stagemonitor.core.CorePlugin;
 import org.stagemonitor.core.MeasurementSession;
 import org.stagemonitor.core.Stagemonitor;
+import org.stagemonitor.core.util.RequestIdGenerators;
 
 /**
  * This class adds the {@link MDC} properties requestId, application, host and instance.
@@ -45,7 +45,7 @@ public class MDCListener implements ServletRequestListener {
 			}
 			MDC.put("instance", instanceName);
 
-			final String requestId = UUID.randomUUID().toString();
+			final String requestId = RequestIdGenerators.generateRequestId();
 			sre.getServletRequest().setAttribute(STAGEMONITOR_REQUEST_ID_ATTR, requestId);
 
 			if (Stagemonitor.isStarted()) {
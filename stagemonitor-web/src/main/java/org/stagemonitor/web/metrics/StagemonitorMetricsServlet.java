@@ -2,17 +2,31 @@ package org.stagemonitor.web.metrics;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.util.JSONPObject;
 import org.stagemonitor.core.Stagemonitor;
+import org.stagemonitor.core.metrics.metrics2.Metric2Filter;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.metrics.metrics2.MetricName;
 import org.stagemonitor.core.util.JsonUtils;
 import org.stagemonitor.web.WebPlugin;
 
@@ -20,13 +34,35 @@ import org.stagemonitor.web.WebPlugin;
  * A servlet which returns the metrics in a given registry as an {@code application/json} response.
  * Derived from com.codahale.metrics.servlets.MetricsServlet
  * (https://github.com/dropwizard/metrics/blob/master/metrics-servlets/src/main/java/com/codahale/metrics/servlets/MetricsServlet.java)
+ * <p/>
+ * The following query parameters are supported:
+ * <ul>
+ *     <li><code>name</code>: only returns metrics with this name (can be specified multiple times)</li>
+ *     <li><code>tag</code>: only returns metrics with a tag whose value starts with the given prefix. The format is
+ *     <code>key:valuePrefix</code> (can be specified multiple times, all tags have to match)</li>
+ *     <li><code>changedSince</code>: only returns metrics which have changed since the version that was returned in
+ *     the {@link #VERSION_HEADER} of a previous response</li>
+ * </ul>
+ * The response contains a weak ETag which is derived from the counts and rates of the metrics and the values of the
+ * gauges. If the ETag matches the <code>If-None-Match</code> header, a 304 is returned without serializing any metric.
+ * The ETag is weak, because the snapshots of histograms and timers are not considered. They are only created when the
+ * metrics are serialized and don't change as long as no values are added.
  */
 public class StagemonitorMetricsServlet extends HttpServlet {
 
+	public static final String VERSION_HEADER = "X-Stagemonitor-Metrics-Version";
+
 	private final Metric2Registry registry;
 	private final WebPlugin webPlugin;
 	private final ObjectMapper mapper;
 
+	/**
+	 * Guards {@link #version} and {@link #metricStates}
+	 */
+	private final Object stateLock = new Object();
+	private long version;
+	private final Map<MetricName, MetricState> metricStates = new HashMap<MetricName, MetricState>();
+
 	public StagemonitorMetricsServlet() {
 		this(Stagemonitor.getMetric2Registry(), Stagemonitor.getPlugin(WebPlugin.class), JsonUtils.getMapper());
 	}
@@ -43,26 +79,196 @@ public class StagemonitorMetricsServlet extends HttpServlet {
 		if (webPlugin.getMetricsServletAllowedOrigin() != null) {
 			resp.setHeader("Access-Control-Allow-Origin", webPlugin.getMetricsServletAllowedOrigin());
 		}
-		resp.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+		resp.setHeader("Cache-Control", "must-revalidate,no-cache");
+
+		final Metric2Filter filter = createFilter(req);
+		final long changedSince = getChangedSince(req);
+		final MetricRegistry metricsToWrite = new MetricRegistry();
+		final List<MetricState> matchingStates = new ArrayList<MetricState>();
+		final long currentVersion;
+		final Map<MetricName, Metric> metrics = registry.getMetrics();
+		// the changes are detected and the version is read atomically. Otherwise, a concurrent request could detect a
+		// change with a version that is lower than the version returned by this request, but which is not included in
+		// this response, so that clients which poll with changedSince would skip that change.
+		synchronized (stateLock) {
+			for (Map.Entry<MetricName, Metric> entry : metrics.entrySet()) {
+				if (filter.matches(entry.getKey(), entry.getValue())) {
+					final MetricState state = updateState(entry.getKey(), entry.getValue());
+					matchingStates.add(state);
+					if (state.lastChangedVersion > changedSince) {
+						register(metricsToWrite, state.graphiteName, entry.getValue());
+					}
+				}
+			}
+			metricStates.keySet().retainAll(metrics.keySet());
+			currentVersion = version;
+		}
+
+		final String eTag = "W/\"" + Long.toHexString(getHash(req, matchingStates)) + "\"";
+		resp.setHeader("ETag", eTag);
+		resp.setHeader(VERSION_HEADER, Long.toString(currentVersion));
+		if (eTag.equals(req.getHeader("If-None-Match"))) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
 		resp.setStatus(HttpServletResponse.SC_OK);
 
 		final OutputStream output = resp.getOutputStream();
 		try {
 			String jsonpParamName = webPlugin.getMetricsServletJsonpParamName();
 			if (jsonpParamName != null && req.getParameter(jsonpParamName) != null) {
-				getWriter(req).writeValue(output, new JSONPObject(req.getParameter(jsonpParamName), registry.getMetricRegistry()));
+				getWriter(req).writeValue(output, new JSONPObject(req.getParameter(jsonpParamName), metricsToWrite));
 			} else {
-				getWriter(req).writeValue(output, registry.getMetricRegistry());
+				getWriter(req).writeValue(output, metricsToWrite);
 			}
 		} finally {
 			output.close();
 		}
 	}
 
+	/**
+	 * The states are hashed in a fixed order, so that a change that is moved from one metric to another one (for
+	 * example, a counter is decremented and another one is incremented) results in a different hash
+	 */
+	private static long getHash(HttpServletRequest req, List<MetricState> states) {
+		Collections.sort(states, MetricState.BY_GRAPHITE_NAME);
+		long hash = String.valueOf(req.getQueryString()).hashCode();
+		for (MetricState state : states) {
+			hash = 31 * hash + state.stateHash();
+		}
+		return hash;
+	}
+
+	private Metric2Filter createFilter(HttpServletRequest req) {
+		final String[] names = req.getParameterValues("name");
+		final String[] tags = req.getParameterValues("tag");
+		if (names == null && tags == null) {
+			return Metric2Filter.ALL;
+		}
+		return new NameAndTagPrefixFilter(names, tags);
+	}
+
+	private static long getChangedSince(HttpServletRequest req) {
+		final String changedSince = req.getParameter("changedSince");
+		if (changedSince == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(changedSince);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Detects whether a metric has changed since the last request by comparing the count and the rates of
+	 * {@link Metered} metrics, the count of other {@link Counting} metrics and the value of {@link Gauge}s. This is much
+	 * cheaper than serializing the metrics, as no snapshots of timers and histograms have to be created.
+	 * <p/>
+	 * Has to be called while holding {@link #stateLock}.
+	 */
+	private MetricState updateState(MetricName name, Metric metric) {
+		final Object value = getComparableValue(metric);
+		MetricState state = metricStates.get(name);
+		if (state == null || state.metric != metric || !equals(state.value, value)) {
+			// the graphite name is only built once per metric
+			final String graphiteName = state != null ? state.graphiteName : name.toGraphiteName();
+			// the version of a change is always greater than all versions which have been handed out to clients before
+			state = new MetricState(metric, value, ++version, graphiteName);
+			metricStates.put(name, state);
+		}
+		return state;
+	}
+
+	private static Object getComparableValue(Metric metric) {
+		if (metric instanceof Metered) {
+			final Metered metered = (Metered) metric;
+			// the rates decay even if no events occur
+			return Arrays.<Object>asList(metered.getCount(), metered.getMeanRate(), metered.getOneMinuteRate(),
+					metered.getFiveMinuteRate(), metered.getFifteenMinuteRate());
+		} else if (metric instanceof Counting) {
+			return ((Counting) metric).getCount();
+		} else if (metric instanceof Gauge) {
+			return ((Gauge) metric).getValue();
+		}
+		return null;
+	}
+
+	private static boolean equals(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	private static void register(MetricRegistry metricRegistry, String graphiteName, Metric metric) {
+		try {
+			metricRegistry.register(graphiteName, metric);
+		} catch (IllegalArgumentException e) {
+			// two metrics names map to the same graphite name
+		}
+	}
+
 	private ObjectWriter getWriter(HttpServletRequest request) {
 		if (Boolean.parseBoolean(request.getParameter("pretty"))) {
 			return mapper.writerWithDefaultPrettyPrinter();
 		}
 		return mapper.writer();
 	}
+
+	private static class MetricState {
+		private static final Comparator<MetricState> BY_GRAPHITE_NAME = new Comparator<MetricState>() {
+			@Override
+			public int compare(MetricState o1, MetricState o2) {
+				return o1.graphiteName.compareTo(o2.graphiteName);
+			}
+		};
+
+		private final Metric metric;
+		private final Object value;
+		private final long lastChangedVersion;
+		private final String graphiteName;
+
+		private MetricState(Metric metric, Object value, long lastChangedVersion, String graphiteName) {
+			this.metric = metric;
+			this.value = value;
+			this.lastChangedVersion = lastChangedVersion;
+			this.graphiteName = graphiteName;
+		}
+
+		private int stateHash() {
+			return 31 * graphiteName.hashCode() + (value != null ? value.hashCode() : 0);
+		}
+	}
+
+	private static class NameAndTagPrefixFilter implements Metric2Filter {
+		private final List<String> names;
+		private final List<String[]> tagPrefixes;
+
+		private NameAndTagPrefixFilter(String[] names, String[] tags) {
+			this.names = names != null ? Arrays.asList(names) : Collections.<String>emptyList();
+			this.tagPrefixes = new ArrayList<String[]>();
+			if (tags != null) {
+				for (String tag : tags) {
+					final int separator = tag.indexOf(':');
+					if (separator == -1) {
+						tagPrefixes.add(new String[]{tag, ""});
+					} else {
+						tagPrefixes.add(new String[]{tag.substring(0, separator), tag.substring(separator + 1)});
+					}
+				}
+			}
+		}
+
+		@Override
+		public boolean matches(MetricName name, Metric metric) {
+			if (!names.isEmpty() && !names.contains(name.getName())) {
+				return false;
+			}
+			for (String[] tagPrefix : tagPrefixes) {
+				final String value = name.getTags().get(tagPrefix[0]);
+				if (value == null || !value.startsWith(tagPrefix[1])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
 }
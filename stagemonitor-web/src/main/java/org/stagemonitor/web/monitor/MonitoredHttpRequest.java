@@ -5,23 +5,25 @@ import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.Principal;
+import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.servlet.FilterChain;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.configuration.Configuration;
 import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
 import org.stagemonitor.core.util.StringUtils;
-import org.stagemonitor.requestmonitor.MonitoredRequest;
+import org.stagemonitor.requestmonitor.AsyncMonitoredRequest;
 import org.stagemonitor.requestmonitor.RequestMonitor;
 import org.stagemonitor.requestmonitor.RequestMonitorPlugin;
 import org.stagemonitor.web.WebPlugin;
@@ -29,7 +31,7 @@ import org.stagemonitor.web.logging.MDCListener;
 import org.stagemonitor.web.monitor.filter.StatusExposingByteCountingServletResponse;
 import org.stagemonitor.web.monitor.widget.WidgetAjaxRequestTraceReporter;
 
-public class MonitoredHttpRequest implements MonitoredRequest<HttpRequestTrace> {
+public class MonitoredHttpRequest implements AsyncMonitoredRequest<HttpRequestTrace> {
 
 	protected final HttpServletRequest httpServletRequest;
 	protected final FilterChain filterChain;
@@ -37,7 +39,7 @@ public class MonitoredHttpRequest implements MonitoredRequest<HttpRequestTrace>
 	private final Configuration configuration;
 	protected final WebPlugin webPlugin;
 	private final Metric2Registry metricRegistry;
-	private final RequestMonitorPlugin requestMonitorPlugin;
+	private LazyHeaderMap headers;
 
 	public MonitoredHttpRequest(HttpServletRequest httpServletRequest,
 								StatusExposingByteCountingServletResponse responseWrapper,
@@ -48,7 +50,6 @@ public class MonitoredHttpRequest implements MonitoredRequest<HttpRequestTrace>
 		this.configuration = configuration;
 		this.webPlugin = configuration.getConfig(WebPlugin.class);
 		this.metricRegistry = Stagemonitor.getMetric2Registry();
-		requestMonitorPlugin = configuration.getConfig(RequestMonitorPlugin.class);
 	}
 
 	@Override
@@ -58,9 +59,8 @@ public class MonitoredHttpRequest implements MonitoredRequest<HttpRequestTrace>
 
 	@Override
 	public HttpRequestTrace createRequestTrace() {
-		Map<String, String> headers = null;
 		if (webPlugin.isCollectHttpHeaders()) {
-			headers = getHeaders(httpServletRequest);
+			headers = new LazyHeaderMap(httpServletRequest, webPlugin.getExcludeHeaders());
 		}
 		final String url = httpServletRequest.getRequestURI();
 		final String method = httpServletRequest.getMethod();
@@ -140,42 +140,35 @@ public class MonitoredHttpRequest implements MonitoredRequest<HttpRequestTrace>
 		return requestUri;
 	}
 
-	private Map<String, String> getHeaders(HttpServletRequest request) {
-		Map<String, String> headers = new HashMap<String, String>();
-		final Enumeration headerNames = request.getHeaderNames();
-		final Collection<String> excludedHeaders = webPlugin.getExcludeHeaders();
-		while (headerNames.hasMoreElements()) {
-			final String headerName = ((String) headerNames.nextElement()).toLowerCase();
-			if (!excludedHeaders.contains(headerName)) {
-				headers.put(headerName, request.getHeader(headerName));
-			}
-		}
-		return headers;
-	}
-
 	@Override
 	public Object execute() throws Exception {
 		filterChain.doFilter(httpServletRequest, responseWrapper);
 		return null;
 	}
 
+	/**
+	 * @return <code>true</code>, if the request has been put into asynchronous mode by
+	 *         {@link javax.servlet.ServletRequest#startAsync()}
+	 */
+	@Override
+	public boolean isAsyncStarted() {
+		return httpServletRequest.isAsyncStarted();
+	}
+
 	@Override
 	public void onPostExecute(RequestMonitor.RequestInformation<HttpRequestTrace> info) {
 		HttpRequestTrace request = info.getRequestTrace();
 
-		final String clientIp = getClientIp(httpServletRequest);
-		final String userName = getUserName(request);
-		final String userAgent = httpServletRequest.getHeader("user-agent");
-		final String sessionId = getSessionId();
-		request.setUsername(userName);
-		request.setSessionId(sessionId);
-		if (userName != null) {
-			request.setUniqueVisitorId(StringUtils.sha1Hash(userName));
-		} else {
-			request.setUniqueVisitorId(StringUtils.sha1Hash(clientIp + sessionId + userAgent));
+		request.setUsername(getUserName(request));
+		// the data which is only needed for reporting is not collected if the request trace won't be reported
+		if (info.isAnyRequestTraceReporterActive()) {
+			collectReportingData(request);
+		}
+		if (headers != null) {
+			headers.release();
 		}
 
-		int status = responseWrapper.getStatus();
+		int status = getStatus(info);
 		request.setStatusCode(status);
 		metricRegistry.meter(name("request_throughput").tag("request_name", info.getRequestName()).tag("http_code", status).build()).mark();
 		metricRegistry.meter(name("request_throughput").tag("request_name", "All").tag("http_code", status).build()).mark();
@@ -192,21 +185,53 @@ public class MonitoredHttpRequest implements MonitoredRequest<HttpRequestTrace>
 				break;
 			}
 		}
-		
-		request.setBytesWritten(responseWrapper.getContentLength());
+
+		// the content of an asynchronous request is not necessarily written via the wrapper,
+		// so the number of bytes can't be determined
+		if (!info.isAsync()) {
+			request.setBytesWritten(responseWrapper.getContentLength());
+		}
+	}
+
+	private int getStatus(RequestMonitor.RequestInformation<HttpRequestTrace> info) {
+		// the response of an asynchronous request is not necessarily written via the wrapper,
+		// because ServletRequest.startAsync() hands out the unwrapped response
+		if (info.isAsync() && responseWrapper.getResponse() instanceof HttpServletResponse) {
+			final int status = ((HttpServletResponse) responseWrapper.getResponse()).getStatus();
+			if (status > 0) {
+				return status;
+			}
+		}
+		return responseWrapper.getStatus();
+	}
+
+	private void collectReportingData(HttpRequestTrace request) {
+		final String userName = request.getUsername();
+		final String sessionId = getSessionId();
+		request.setSessionId(sessionId);
+		if (userName != null) {
+			request.setUniqueVisitorId(webPlugin.getUniqueVisitorIdHashFunction().hash(userName));
+		} else {
+			final String uniqueVisitorIdSource = getClientIp(httpServletRequest) + sessionId + httpServletRequest.getHeader("user-agent");
+			request.setUniqueVisitorId(webPlugin.getUniqueVisitorIdHashFunction().hash(uniqueVisitorIdSource));
+		}
+		if (headers != null) {
+			headers.capture();
+		}
 
 		// get the parameters after the execution and not on creation, because that could lead to wrong decoded
 		// parameters inside the application
 		@SuppressWarnings("unchecked") // according to javadoc, its always a Map<String, String[]>
 		final Map<String, String[]> parameterMap = httpServletRequest.getParameterMap();
-		Map<String, String> params = new HashMap<String, String>();
-		for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
-			params.put(entry.getKey(), StringUtils.toCommaSeparatedString(entry.getValue()));
+		if (!parameterMap.isEmpty()) {
+			Map<String, String> params = new HashMap<String, String>(parameterMap.size() * 4 / 3 + 1);
+			for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
+				params.put(entry.getKey(), StringUtils.toCommaSeparatedString(entry.getValue()));
+			}
+			request.setParameters(RequestMonitorPlugin.getSafeParameterMap(params, webPlugin.getAllConfidentialRequestParams(configuration)));
+		} else {
+			request.setParameters(Collections.<String, String>emptyMap());
 		}
-		Set<Pattern> confidentialParams = new HashSet<Pattern>();
-		confidentialParams.addAll(webPlugin.getRequestParamsConfidential());
-		confidentialParams.addAll(requestMonitorPlugin.getConfidentialParameters());
-		request.setParameters(requestMonitorPlugin.getSafeParameterMap(params, confidentialParams));
 	}
 
 	private String getSessionId() {
@@ -234,4 +259,58 @@ public class MonitoredHttpRequest implements MonitoredRequest<HttpRequestTrace>
 	public boolean isMonitorForwardedExecutions() {
 		return true;
 	}
+
+	/**
+	 * A view of the headers of a {@link HttpServletRequest} which copies the headers on first access.
+	 * <p/>
+	 * After {@link #release()} has been called, the servlet request is not accessed anymore, because the servlet
+	 * container may recycle it. If the headers have not been captured until then, the map stays empty.
+	 */
+	private static class LazyHeaderMap extends AbstractMap<String, String> {
+		private HttpServletRequest request;
+		private final Collection<String> excludedHeaders;
+		private Map<String, String> headers;
+
+		private LazyHeaderMap(HttpServletRequest request, Collection<String> excludedHeaders) {
+			this.request = request;
+			this.excludedHeaders = excludedHeaders;
+		}
+
+		private synchronized Map<String, String> capture() {
+			if (headers == null) {
+				if (request == null) {
+					headers = Collections.emptyMap();
+				} else {
+					headers = new HashMap<String, String>();
+					final Enumeration headerNames = request.getHeaderNames();
+					while (headerNames.hasMoreElements()) {
+						final String headerName = ((String) headerNames.nextElement()).toLowerCase();
+						if (!excludedHeaders.contains(headerName)) {
+							headers.put(headerName, request.getHeader(headerName));
+						}
+					}
+				}
+			}
+			return headers;
+		}
+
+		private synchronized void release() {
+			request = null;
+		}
+
+		@Override
+		public String get(Object key) {
+			return capture().get(key);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return capture().containsKey(key);
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return capture().entrySet();
+		}
+	}
 }
@@ -31,12 +31,15 @@ import javax.servlet.http.HttpServletResponse;
  * In this example, the filter won't be executed for all URIs starting with /rest or /picture
  * <p/>
  * In other words, the following will be checked for each exclude prefix: {@code httpServletRequest.getRequestURI().startsWith(excludedPath)}
+ * <p/>
+ * The excluded paths are compiled into a {@link PathPrefixMatcher}, so the number of excluded paths does not affect
+ * the overhead of the filter.
  *
  * @author fbarnsteiner
  */
 public abstract class AbstractExclusionFilter implements Filter {
 
-	private Collection<String> excludedPaths;
+	private PathPrefixMatcher excludedPaths;
 
 	protected AbstractExclusionFilter() {
 	}
@@ -80,15 +83,10 @@ public abstract class AbstractExclusionFilter implements Filter {
 	}
 
 	private boolean isExcluded(HttpServletRequest request) {
-		if (excludedPaths == null) {
+		if (excludedPaths == null || excludedPaths.isEmpty()) {
 			return false;
 		}
-		for (String excludedPath : excludedPaths) {
-			if (request.getRequestURI().substring(request.getContextPath().length()).startsWith(excludedPath)) {
-				return true;
-			}
-		}
-		return false;
+		return excludedPaths.matches(request.getRequestURI(), request.getContextPath().length());
 	}
 
 	@Override
@@ -99,16 +97,17 @@ public abstract class AbstractExclusionFilter implements Filter {
 										  FilterChain filterChain) throws IOException, ServletException;
 
 	private void setExcludedPaths(Collection<String> excludedPaths) {
-		this.excludedPaths = new ArrayList<String>(excludedPaths.size());
+		final Collection<String> normalizedPaths = new ArrayList<String>(excludedPaths.size());
 		for (String exclude : excludedPaths) {
 			exclude = exclude.trim();
 			if (exclude != null && !exclude.isEmpty()) {
 				if (!exclude.startsWith("/")) {
 					exclude = "/" + exclude;
 				}
-				this.excludedPaths.add(exclude);
+				normalizedPaths.add(exclude);
 			}
 		}
+		this.excludedPaths = new PathPrefixMatcher(normalizedPaths);
 	}
 
 
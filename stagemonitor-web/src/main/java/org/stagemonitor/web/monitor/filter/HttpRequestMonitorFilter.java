@@ -1,5 +1,6 @@
 package org.stagemonitor.web.monitor.filter;
 
+import static javax.servlet.DispatcherType.ASYNC;
 import static javax.servlet.DispatcherType.FORWARD;
 
 import java.io.ByteArrayOutputStream;
@@ -9,6 +10,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ServiceLoader;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -37,6 +40,11 @@ import org.stagemonitor.web.monitor.MonitoredHttpRequestFactory;
 public class HttpRequestMonitorFilter extends AbstractExclusionFilter implements Filter {
 
 	private static final Logger logger = LoggerFactory.getLogger(HttpRequestMonitorFilter.class);
+	private static final PathPrefixMatcher STAGEMONITOR_PATHS = new PathPrefixMatcher("/stagemonitor");
+	/**
+	 * The request attribute that holds the {@link RequestMonitor.RequestInformation} of an asynchronous request
+	 */
+	private static final String ASYNC_REQUEST_INFORMATION_ATTR = HttpRequestMonitorFilter.class.getName() + ".asyncRequestInformation";
 	protected final Configuration configuration;
 	protected final CorePlugin corePlugin;
 	protected final WebPlugin webPlugin;
@@ -93,7 +101,9 @@ public class HttpRequestMonitorFilter extends AbstractExclusionFilter implements
 	@Override
 	public final void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response, final FilterChain filterChain)
 			throws IOException, ServletException {
-		if (corePlugin.isStagemonitorActive() && !isInternalRequest(request) &&
+		if (request.getDispatcherType() == ASYNC) {
+			continueAsyncRequest(request, response, filterChain);
+		} else if (corePlugin.isStagemonitorActive() && !isInternalRequest(request) &&
 				onlyMonitorForwardedRequestsIfConfigured(request)) {
 			doMonitor(request, response, filterChain);
 		} else {
@@ -118,7 +128,15 @@ public class HttpRequestMonitorFilter extends AbstractExclusionFilter implements
 
 		try {
 			final RequestMonitor.RequestInformation<HttpRequestTrace> requestInformation = monitorRequest(filterChain, request, responseWrapper);
-			if (isInjectContentToHtml(request)) {
+			if (requestInformation.isAsync()) {
+				// the response of an asynchronous request may be completed by the container as soon as the
+				// processing has completed, so there is no safe point in time to inject the content
+				if (httpServletResponseBufferWrapper != null) {
+					httpServletResponseBufferWrapper.stopBuffering();
+				}
+				request.setAttribute(ASYNC_REQUEST_INFORMATION_ATTR, requestInformation);
+				request.getAsyncContext().addListener(new MonitoringAsyncListener(request, requestInformation));
+			} else if (isInjectContentToHtml(request)) {
 				injectHtml(response, request, httpServletResponseBufferWrapper, requestInformation);
 			}
 		} catch (Exception e) {
@@ -126,6 +144,28 @@ public class HttpRequestMonitorFilter extends AbstractExclusionFilter implements
 		}
 	}
 
+	/**
+	 * Asynchronous requests are not monitored again if they are dispatched to the container by
+	 * {@link javax.servlet.AsyncContext#dispatch()}. Instead, the monitoring of the original request is continued on
+	 * the current thread.
+	 */
+	@SuppressWarnings("unchecked")
+	private void continueAsyncRequest(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws IOException, ServletException {
+		final RequestMonitor.RequestInformation<HttpRequestTrace> requestInformation =
+				(RequestMonitor.RequestInformation<HttpRequestTrace>) request.getAttribute(ASYNC_REQUEST_INFORMATION_ATTR);
+		if (requestInformation == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		requestMonitor.resume(requestInformation);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			requestMonitor.suspend(requestInformation);
+		}
+	}
+
 	private boolean isInjectContentToHtml(HttpServletRequest httpServletRequest) {
 		if (logger.isDebugEnabled()) {
 			logger.debug("atLeastServletApi3={} isHtmlRequested={} isAtLeastOneHtmlInjectorActive={}",
@@ -149,7 +189,9 @@ public class HttpRequestMonitorFilter extends AbstractExclusionFilter implements
 	}
 
 	private boolean isInternalRequest(HttpServletRequest request) {
-		return request.getRequestURI().startsWith(request.getContextPath() + "/stagemonitor");
+		final String requestURI = request.getRequestURI();
+		final String contextPath = request.getContextPath();
+		return requestURI.startsWith(contextPath) && STAGEMONITOR_PATHS.matches(requestURI, contextPath.length());
 	}
 
 	protected RequestMonitor.RequestInformation<HttpRequestTrace> monitorRequest(FilterChain filterChain, HttpServletRequest httpServletRequest, StatusExposingByteCountingServletResponse responseWrapper) throws Exception {
@@ -240,6 +282,44 @@ public class HttpRequestMonitorFilter extends AbstractExclusionFilter implements
 		return modifiedContent;
 	}
 
+	/**
+	 * Stops the monitoring of an asynchronous request as soon as the asynchronous processing has completed
+	 */
+	private class MonitoringAsyncListener implements AsyncListener {
+		private final HttpServletRequest request;
+		private final RequestMonitor.RequestInformation<HttpRequestTrace> requestInformation;
+
+		private MonitoringAsyncListener(HttpServletRequest request,
+										RequestMonitor.RequestInformation<HttpRequestTrace> requestInformation) {
+			this.request = request;
+			this.requestInformation = requestInformation;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			request.removeAttribute(ASYNC_REQUEST_INFORMATION_ATTR);
+			requestMonitor.monitorStop(requestInformation);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			final HttpRequestTrace requestTrace = requestInformation.getRequestTrace();
+			if (requestTrace != null && event.getThrowable() instanceof Exception) {
+				requestTrace.setException((Exception) event.getThrowable());
+			}
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// listeners have to register themselves again if the request is put into asynchronous mode again
+			event.getAsyncContext().addListener(this);
+		}
+	}
+
 	protected void handleException(Exception e) throws IOException, ServletException {
 		if (e instanceof IOException) {
 			throw (IOException) e;
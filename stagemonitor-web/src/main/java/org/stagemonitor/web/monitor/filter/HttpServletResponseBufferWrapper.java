@@ -3,7 +3,9 @@ package org.stagemonitor.web.monitor.filter;
 import java.io.ByteArrayOutputStream;
 import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -17,20 +19,23 @@ public class HttpServletResponseBufferWrapper extends HttpServletResponseWrapper
 	private BufferingPrintWriter printWriter;
 	private boolean usingWriter = false;
 	private boolean committed = false;
-
+	private volatile boolean buffering = true;
 
 	public HttpServletResponseBufferWrapper(HttpServletResponse response) {
 		super(response);
 	}
 
 	@Override
-	public BufferingPrintWriter getWriter() {
+	public BufferingPrintWriter getWriter() throws IOException {
 		if (usingOutputStream) {
 			throw new IllegalStateException("getOutputStream has already been called");
 		}
 		usingWriter = true;
 		if (printWriter == null) {
 			printWriter = new BufferingPrintWriter();
+			if (!buffering) {
+				printWriter.passthrough(super.getWriter());
+			}
 		}
 		return printWriter;
 	}
@@ -43,29 +48,71 @@ public class HttpServletResponseBufferWrapper extends HttpServletResponseWrapper
 		usingOutputStream = true;
 		if (servletOutputStream == null) {
 			servletOutputStream = new BufferingServletOutputStream();
+			if (!buffering) {
+				servletOutputStream.passthrough(super.getOutputStream());
+			}
 		}
 		return servletOutputStream;
 	}
 
+	/**
+	 * Writes the content that has been buffered so far to the wrapped response and passes all further content
+	 * through, for example because the response is completed asynchronously and there is no point in time anymore at
+	 * which the content could be modified before it is sent to the client.
+	 * <p/>
+	 * The application may still write to the response from another thread while the buffering is stopped. The buffered
+	 * content is written and the writer or output stream is switched to pass through while holding its lock, so that
+	 * concurrent writes are neither lost nor reordered.
+	 */
+	public synchronized void stopBuffering() throws IOException {
+		if (!buffering) {
+			return;
+		}
+		buffering = false;
+		if (usingWriter) {
+			printWriter.passthrough(super.getWriter());
+		} else if (usingOutputStream) {
+			servletOutputStream.passthrough(super.getOutputStream());
+		}
+		if (committed) {
+			super.flushBuffer();
+		}
+	}
+
 	@Override
 	public void setContentLength(int len) {
-		// ignore
+		if (!buffering) {
+			super.setContentLength(len);
+		}
 	}
 
 	@Override
 	public void flushBuffer() throws IOException {
-		// the purpose of this wrapper is to buffer all the content
-		committed = true;
+		if (buffering) {
+			// the purpose of this wrapper is to buffer all the content
+			committed = true;
+		} else {
+			if (printWriter != null) {
+				printWriter.flush();
+			}
+			super.flushBuffer();
+		}
 	}
 
 	@Override
 	public void setBufferSize(int size) {
-		// ignore
+		if (!buffering) {
+			super.setBufferSize(size);
+		}
 	}
 
 	@Override
 	public void resetBuffer() {
 		assertNotCommitted();
+		if (!buffering) {
+			super.resetBuffer();
+			return;
+		}
 		servletOutputStream = null;
 		usingOutputStream = false;
 		printWriter = null;
@@ -122,30 +169,111 @@ public class HttpServletResponseBufferWrapper extends HttpServletResponseWrapper
 		return usingWriter;
 	}
 
+	/**
+	 * Writes to the buffer until {@link #passthrough} is set. Writes to the buffer are guarded by <code>this</code>.
+	 */
 	public static class BufferingServletOutputStream extends ServletOutputStream {
 		private ByteArrayOutputStream output = new ByteArrayOutputStream();
+		private volatile OutputStream passthrough;
 		@Override
 		public void write(int b) throws IOException {
-			output.write(b);
+			if (passthrough == null) {
+				synchronized (this) {
+					if (passthrough == null) {
+						output.write(b);
+						return;
+					}
+				}
+			}
+			passthrough.write(b);
+		}
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (passthrough == null) {
+				synchronized (this) {
+					if (passthrough == null) {
+						output.write(b, off, len);
+						return;
+					}
+				}
+			}
+			passthrough.write(b, off, len);
+		}
+		@Override
+		public void flush() throws IOException {
+			if (passthrough != null) {
+				passthrough.flush();
+			}
 		}
 		public ByteArrayOutputStream getOutput() {
 			return output;
 		}
+		private synchronized void passthrough(OutputStream outputStream) throws IOException {
+			output.writeTo(outputStream);
+			passthrough = outputStream;
+		}
 	}
 
 	public static class BufferingPrintWriter extends PrintWriter {
 		private CharArrayWriter output;
 		private BufferingPrintWriter() {
-			this(new CharArrayWriter());
+			this(new PassthroughWriter(new CharArrayWriter()));
 		}
-		private BufferingPrintWriter(CharArrayWriter out) {
+		private BufferingPrintWriter(PassthroughWriter out) {
 			super(out);
-			this.output = out;
+			this.output = out.buffer;
 		}
 
 		public CharArrayWriter getOutput() {
 			return output;
 		}
+
+		private void passthrough(Writer writer) throws IOException {
+			// lock is the PassthroughWriter, which is also held by all write methods of PrintWriter
+			synchronized (lock) {
+				output.writeTo(writer);
+				((PassthroughWriter) out).passthrough = writer;
+			}
+		}
+	}
+
+	/**
+	 * Writes to the buffer until {@link #passthrough} is set. Writes to the buffer are guarded by {@link #lock}.
+	 */
+	private static class PassthroughWriter extends Writer {
+		private final CharArrayWriter buffer;
+		private volatile Writer passthrough;
+
+		private PassthroughWriter(CharArrayWriter buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			if (passthrough == null) {
+				synchronized (lock) {
+					if (passthrough == null) {
+						buffer.write(cbuf, off, len);
+						return;
+					}
+				}
+			}
+			passthrough.write(cbuf, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (passthrough != null) {
+				passthrough.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (passthrough != null) {
+				passthrough.close();
+			}
+		}
 	}
 
 	private void assertNotCommitted() {
@@ -0,0 +1,118 @@
+package org.stagemonitor.web.monitor.filter;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Checks whether a path starts with one of a set of prefixes.
+ * <p/>
+ * The prefixes are compiled into a trie, so that the time it takes to match a path only depends on the length of the
+ * matching prefix and not on the number of prefixes. This class is immutable and thread safe.
+ */
+public class PathPrefixMatcher {
+
+	private final Node root = new Node();
+	private final boolean empty;
+
+	public PathPrefixMatcher(String... prefixes) {
+		this(Arrays.asList(prefixes));
+	}
+
+	public PathPrefixMatcher(Collection<String> prefixes) {
+		for (String prefix : prefixes) {
+			root.add(prefix, 0);
+		}
+		empty = prefixes.isEmpty();
+	}
+
+	/**
+	 * @return <code>true</code>, if there are no prefixes, which means that no path matches
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * @param path the path
+	 * @return <code>true</code>, if the path starts with at least one of the prefixes
+	 */
+	public boolean matches(String path) {
+		return matches(path, 0);
+	}
+
+	/**
+	 * Checks whether the substring of the path that starts at the given offset starts with at least one of the prefixes
+	 * <p/>
+	 * This method does not create a substring. For example, to match the context relative part of a request URI
+	 * use <code>matches(request.getRequestURI(), request.getContextPath().length())</code>
+	 *
+	 * @param path   the path
+	 * @param offset the index of the path to start matching at
+	 * @return <code>true</code>, if the path starts with at least one of the prefixes at the given offset
+	 */
+	public boolean matches(String path, int offset) {
+		if (empty) {
+			return false;
+		}
+		Node node = root;
+		for (int i = offset; i < path.length(); i++) {
+			if (node.terminal) {
+				return true;
+			}
+			node = node.getChild(path.charAt(i));
+			if (node == null) {
+				return false;
+			}
+		}
+		return node.terminal;
+	}
+
+	private static class Node {
+		private static final char[] NO_KEYS = new char[0];
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		/**
+		 * sorted, so that {@link #getChild(char)} can perform a binary search
+		 */
+		private char[] keys = NO_KEYS;
+		private Node[] children = NO_CHILDREN;
+		/**
+		 * <code>true</code>, if a prefix ends at this node
+		 */
+		private boolean terminal;
+
+		private void add(String prefix, int index) {
+			if (index == prefix.length()) {
+				terminal = true;
+				return;
+			}
+			final char c = prefix.charAt(index);
+			Node child = getChild(c);
+			if (child == null) {
+				child = insertChild(c);
+			}
+			child.add(prefix, index + 1);
+		}
+
+		private Node getChild(char c) {
+			final int i = Arrays.binarySearch(keys, c);
+			return i >= 0 ? children[i] : null;
+		}
+
+		private Node insertChild(char c) {
+			final int insertionPoint = -(Arrays.binarySearch(keys, c) + 1);
+			final char[] newKeys = new char[keys.length + 1];
+			final Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, insertionPoint);
+			System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+			System.arraycopy(keys, insertionPoint, newKeys, insertionPoint + 1, keys.length - insertionPoint);
+			System.arraycopy(children, insertionPoint, newChildren, insertionPoint + 1, children.length - insertionPoint);
+			final Node child = new Node();
+			newKeys[insertionPoint] = c;
+			newChildren[insertionPoint] = child;
+			keys = newKeys;
+			children = newChildren;
+			return child;
+		}
+	}
+}
@@ -1,65 +1,187 @@
 package org.stagemonitor.web.monitor.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.util.IOUtils;
 import org.stagemonitor.core.util.StringUtils;
+import org.stagemonitor.web.WebPlugin;
 import org.stagemonitor.web.monitor.rum.BoomerangJsHtmlInjector;
+import org.stagemonitor.web.util.HttpUtils;
 
+/**
+ * Serves the static files of stagemonitor (for example the files of the in browser widget) from the classpath.
+ * <p/>
+ * The files are only read once and are kept in memory together with a gzip compressed variant, as long as the total
+ * size of the cached files does not exceed the cache limit. The hash of the content is used as the ETag, so that
+ * browsers only download a file again if it has changed. The gzip compressed variant has its own ETag.
+ * <p/>
+ * Files that don't fit into the cache are read on every request and are served uncompressed and without an ETag, so
+ * that they don't have to be compressed and hashed over and over again.
+ */
 public class StagemonitorFileServlet extends HttpServlet {
 
+	/**
+	 * Compressing small files does not pay off
+	 */
+	private static final int MIN_GZIP_SIZE = 512;
+
 	private final List<String> filesToCacheForever;
+	private final long cacheLimitBytes;
+	private final ConcurrentMap<String, StaticResource> cache = new ConcurrentHashMap<String, StaticResource>();
+	private final AtomicLong cachedBytes = new AtomicLong();
 
 	public StagemonitorFileServlet() {
 		this(Collections.singletonList(BoomerangJsHtmlInjector.BOOMERANG_FILENAME));
 	}
 
 	public StagemonitorFileServlet(List<String> filesToCacheForever) {
+		this(filesToCacheForever, Stagemonitor.getPlugin(WebPlugin.class).getStaticFilesCacheLimitBytes());
+	}
+
+	/**
+	 * @param filesToCacheForever the files that can be cached by the browser forever
+	 * @param cacheLimitBytes     the maximum number of bytes the cached files may occupy in memory
+	 */
+	public StagemonitorFileServlet(List<String> filesToCacheForever, long cacheLimitBytes) {
 		this.filesToCacheForever = filesToCacheForever;
+		this.cacheLimitBytes = cacheLimitBytes;
 	}
 
 	@Override
 	public void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
 		String requestURI = req.getRequestURI().substring(req.getContextPath().length()).replace("..", "");
-		setResponseHeaders(req, res, requestURI);
+		final StaticResource resource = getResource(requestURI);
+		if (resource == null) {
+			res.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		final boolean gzip = resource.gzippedContent != null && HttpUtils.isGzipAccepted(req);
+		final String eTag = gzip ? resource.gzippedETag : resource.eTag;
+		setResponseHeaders(res, resource, eTag);
+		if (eTag != null && eTag.equals(req.getHeader("If-None-Match"))) {
+			res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
 
-		InputStream inputStream = null;
-		try {
-			inputStream = getClass().getClassLoader().getResourceAsStream(StringUtils.removeStart(requestURI, "/"));
-			if (inputStream == null) {
-				res.sendError(HttpServletResponse.SC_NOT_FOUND);
-				return;
-			}
-			IOUtils.copy(inputStream, res.getOutputStream());
-			res.getOutputStream().flush();
-			res.flushBuffer();
-		} finally {
-			try {
-				if (inputStream != null) {
-					inputStream.close();
+		final byte[] content;
+		if (gzip) {
+			res.setHeader("Content-Encoding", "gzip");
+			content = resource.gzippedContent;
+		} else {
+			content = resource.content;
+		}
+		res.setContentLength(content.length);
+		res.getOutputStream().write(content);
+		res.getOutputStream().flush();
+		res.flushBuffer();
+	}
+
+	private StaticResource getResource(String requestURI) throws IOException {
+		StaticResource resource = cache.get(requestURI);
+		if (resource == null) {
+			resource = loadResource(requestURI);
+			// files that don't exist are not cached, otherwise arbitrary request URIs could fill up the cache
+			if (resource != null && resource.isCacheable()) {
+				final StaticResource cachedResource = cache.putIfAbsent(requestURI, resource);
+				if (cachedResource != null) {
+					cachedBytes.addAndGet(-resource.size());
+					resource = cachedResource;
 				}
-			} catch (IOException ioe) {
-				// ignore
 			}
 		}
+		return resource;
+	}
+
+	/**
+	 * @return <code>true</code>, if the bytes fit into the cache and have been added to the size of the cache
+	 */
+	private boolean reserveCacheSpace(long bytes) {
+		if (cachedBytes.addAndGet(bytes) > cacheLimitBytes) {
+			cachedBytes.addAndGet(-bytes);
+			return false;
+		}
+		return true;
+	}
+
+	private StaticResource loadResource(String requestURI) throws IOException {
+		final InputStream inputStream = getClass().getClassLoader().getResourceAsStream(StringUtils.removeStart(requestURI, "/"));
+		if (inputStream == null) {
+			return null;
+		}
+		final byte[] content;
+		try {
+			content = IOUtils.readToBytes(inputStream);
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+		final String contentType = getMimeType(requestURI);
+		final boolean cacheForever = isCacheForever(requestURI);
+		if (!reserveCacheSpace(content.length)) {
+			return new StaticResource(content, null, null, contentType, cacheForever);
+		}
+		byte[] gzippedContent = gzip(content);
+		if (gzippedContent != null && !reserveCacheSpace(gzippedContent.length)) {
+			gzippedContent = null;
+		}
+		return new StaticResource(content, gzippedContent, getContentHash(content), contentType, cacheForever);
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException {
+		if (content.length < MIN_GZIP_SIZE) {
+			return null;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 2);
+		final GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		gzip.write(content);
+		gzip.close();
+		if (bytes.size() >= content.length) {
+			return null;
+		}
+		return bytes.toByteArray();
 	}
 
-	private void setResponseHeaders(HttpServletRequest req, HttpServletResponse res, String requestURI) {
-		res.setContentType(getMimeType(requestURI));
+	private static String getContentHash(byte[] content) {
+		try {
+			return StringUtils.bytesToHex(MessageDigest.getInstance("SHA-1").digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private boolean isCacheForever(String requestURI) {
 		for (String file : filesToCacheForever) {
-			if (req.getRequestURI().endsWith(file)) {
-				res.setHeader("cache-control", "public, max-age=315360000");
-				break;
+			if (requestURI.endsWith(file)) {
+				return true;
 			}
 		}
+		return false;
+	}
+
+	private void setResponseHeaders(HttpServletResponse res, StaticResource resource, String eTag) {
+		res.setContentType(resource.contentType);
+		if (eTag != null) {
+			res.setHeader("ETag", eTag);
+		}
+		res.setHeader("Vary", "Accept-Encoding");
+		if (resource.cacheForever) {
+			res.setHeader("cache-control", "public, max-age=315360000");
+		}
 	}
 
 	private String getMimeType(String path) {
@@ -69,4 +191,33 @@ public class StagemonitorFileServlet extends HttpServlet {
 		}
 		return mimeType;
 	}
+
+	private static class StaticResource {
+		private final byte[] content;
+		private final byte[] gzippedContent;
+		private final String eTag;
+		private final String gzippedETag;
+		private final String contentType;
+		private final boolean cacheForever;
+
+		/**
+		 * @param contentHash the hash of the uncompressed content or <code>null</code>, if the resource is not cached
+		 */
+		private StaticResource(byte[] content, byte[] gzippedContent, String contentHash, String contentType, boolean cacheForever) {
+			this.content = content;
+			this.gzippedContent = gzippedContent;
+			this.eTag = contentHash != null ? "\"" + contentHash + "\"" : null;
+			this.gzippedETag = contentHash != null && gzippedContent != null ? "\"" + contentHash + "-gzip\"" : null;
+			this.contentType = contentType;
+			this.cacheForever = cacheForever;
+		}
+
+		private boolean isCacheable() {
+			return eTag != null;
+		}
+
+		private long size() {
+			return content.length + (gzippedContent != null ? gzippedContent.length : 0);
+		}
+	}
 }
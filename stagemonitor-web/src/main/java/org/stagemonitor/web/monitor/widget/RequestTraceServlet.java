@@ -1,23 +1,29 @@
 package org.stagemonitor.web.monitor.widget;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stagemonitor.core.Stagemonitor;
 import org.stagemonitor.core.configuration.Configuration;
+import org.stagemonitor.core.util.JsonUtils;
 import org.stagemonitor.requestmonitor.RequestMonitor;
 import org.stagemonitor.requestmonitor.RequestMonitorPlugin;
 import org.stagemonitor.web.monitor.HttpRequestTrace;
+import org.stagemonitor.web.util.HttpUtils;
 
 public class RequestTraceServlet extends HttpServlet {
 
@@ -40,17 +46,58 @@ public class RequestTraceServlet extends HttpServlet {
 	}
 
 	@Override
-	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	protected void doGet(HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
 		final String connectionId = req.getParameter("connectionId");
 		if (connectionId != null && !connectionId.trim().isEmpty()) {
-			writeRequestTracesToResponse(resp, widgetAjaxRequestTraceReporter.getRequestTraces(connectionId, requestTimeout));
+			if (req.isAsyncSupported()) {
+				waitForRequestTracesAsync(req, resp, connectionId);
+			} else {
+				writeRequestTracesToResponse(req, resp, widgetAjaxRequestTraceReporter.getRequestTraces(connectionId, requestTimeout));
+			}
 		} else {
 			resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
 		}
 	}
 
-	private void writeRequestTracesToResponse(HttpServletResponse response, Collection<HttpRequestTrace> requestTraces)
-			throws IOException {
+	/**
+	 * Releases the container thread while waiting for request traces.
+	 * <p/>
+	 * The response is written as soon as a request trace for the connection is reported or the request timeout is
+	 * reached. The listener is notified by the single internal thread of the {@link WidgetAjaxRequestTraceReporter},
+	 * so the response is written on a container thread via {@link AsyncContext#start(Runnable)}. Otherwise, a slow
+	 * client would delay the responses of all other widgets.
+	 */
+	private void waitForRequestTracesAsync(final HttpServletRequest req, final HttpServletResponse resp, String connectionId) {
+		final AsyncContext asyncContext = req.startAsync(req, resp);
+		// the timeout is handled by the WidgetAjaxRequestTraceReporter
+		asyncContext.setTimeout(0);
+		widgetAjaxRequestTraceReporter.addRequestTracesListener(connectionId, requestTimeout,
+				new WidgetAjaxRequestTraceReporter.RequestTracesListener() {
+					@Override
+					public void onRequestTraces(final Collection<HttpRequestTrace> requestTraces) {
+						asyncContext.start(new Runnable() {
+							@Override
+							public void run() {
+								try {
+									writeRequestTracesToResponse(req, resp, requestTraces);
+								} catch (IOException e) {
+									logger.debug("Failed to write request traces, the client has probably disconnected", e);
+								} finally {
+									asyncContext.complete();
+								}
+							}
+						});
+					}
+				});
+	}
+
+	/**
+	 * Streams the request traces as a JSON array to the response without buffering the serialized request traces.
+	 * <p/>
+	 * If the client accepts it, the response is gzip encoded as call trees can get quite big.
+	 */
+	private void writeRequestTracesToResponse(HttpServletRequest request, HttpServletResponse response,
+											  Collection<HttpRequestTrace> requestTraces) throws IOException {
 		if (requestTraces == null) {
 			requestTraces = Collections.emptyList();
 		}
@@ -58,15 +105,29 @@ public class RequestTraceServlet extends HttpServlet {
 		response.setHeader("Pragma", "no-cache");
 		response.setHeader("Cache-Control", "max-age=0, no-cache, no-store, must-revalidate");
 		response.setHeader("Expires", "0");
+		response.setHeader("Vary", "Accept-Encoding");
 		response.setCharacterEncoding("UTF-8");
 
-		final ArrayList<String> jsonResponse = new ArrayList<String>(requestTraces.size());
-		for (HttpRequestTrace requestTrace : requestTraces) {
-			logger.debug("writeRequestTracesToResponse {} ({})", requestTrace.getName(), requestTrace.getTimestamp());
-			jsonResponse.add(requestTrace.toJson());
+		final JsonGenerator generator = createGenerator(request, response);
+		try {
+			generator.writeStartArray();
+			for (HttpRequestTrace requestTrace : requestTraces) {
+				logger.debug("writeRequestTracesToResponse {} ({})", requestTrace.getName(), requestTrace.getTimestamp());
+				requestTrace.writeJson(generator);
+			}
+			generator.writeEndArray();
+		} finally {
+			generator.close();
+		}
+	}
+
+	private JsonGenerator createGenerator(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		final JsonFactory jsonFactory = JsonUtils.getMapper().getFactory();
+		if (HttpUtils.isGzipAccepted(request)) {
+			response.setHeader("Content-Encoding", "gzip");
+			return jsonFactory.createGenerator(new GZIPOutputStream(response.getOutputStream()), JsonEncoding.UTF8);
 		}
-		response.getWriter().print(jsonResponse.toString());
-		response.getWriter().close();
+		return jsonFactory.createGenerator(response.getWriter());
 	}
 
 	@Override
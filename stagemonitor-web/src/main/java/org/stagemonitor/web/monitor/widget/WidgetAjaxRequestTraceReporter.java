@@ -1,81 +1,116 @@
 package org.stagemonitor.web.monitor.widget;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stagemonitor.requestmonitor.reporter.RequestTraceReporter;
 import org.stagemonitor.web.monitor.HttpRequestTrace;
 
+/**
+ * Buffers the request traces of the in browser widget per connection until they are picked up by the
+ * {@link RequestTraceServlet}.
+ * <p/>
+ * Pending requests of the widget are represented by a {@link RequestTracesListener} so that they don't have to block a
+ * thread while waiting for the next request trace. The listeners are notified and timed out by a single internal
+ * thread, so they should hand off blocking work like writing a response to another thread.
+ */
 public class WidgetAjaxRequestTraceReporter extends RequestTraceReporter {
 
 	public static final String CONNECTION_ID = "x-stagemonitor-connection-id";
 	private static final long MAX_REQUEST_TRACE_BUFFERING_TIME = 60 * 1000;
+	private static final int MAX_BUFFERED_REQUEST_TRACES_PER_CONNECTION = 100;
 
 	private final Logger logger = LoggerFactory.getLogger(getClass());
-	private ConcurrentMap<String, ConcurrentLinkedQueue<HttpRequestTrace>> connectionIdToRequestTracesMap =
-			new ConcurrentHashMap<String, ConcurrentLinkedQueue<HttpRequestTrace>>();
-	private ConcurrentMap<String, Object> connectionIdToLockMap = new ConcurrentHashMap<String, Object>();
+	private final ConcurrentMap<String, RequestTraceBuffer> connectionIdToRequestTracesMap =
+			new ConcurrentHashMap<String, RequestTraceBuffer>();
+	private final ConcurrentMap<String, PendingRequest> connectionIdToPendingRequestMap =
+			new ConcurrentHashMap<String, PendingRequest>();
 
 	/**
-	 * see {@link OldRequestTraceRemover}
+	 * Completes and times out pending requests and executes the {@link OldRequestTraceRemover}
 	 */
-	private ScheduledExecutorService oldRequestTracesRemoverPool;
+	private final ScheduledExecutorService scheduler;
 
 	public WidgetAjaxRequestTraceReporter() {
-	}
-
-	public void init() {
-		oldRequestTracesRemoverPool = Executors.newScheduledThreadPool(1, new ThreadFactory() {
+		scheduler = Executors.newScheduledThreadPool(1, new ThreadFactory() {
 			@Override
 			public Thread newThread(Runnable r) {
 				Thread thread = new Thread(r);
 				thread.setDaemon(true);
-				thread.setName("request-trace-remover");
+				thread.setName("widget-request-traces");
 				return thread;
 			}
 		});
-
-		oldRequestTracesRemoverPool.scheduleAtFixedRate(new OldRequestTraceRemover(),
+		scheduler.scheduleAtFixedRate(new OldRequestTraceRemover(),
 				MAX_REQUEST_TRACE_BUFFERING_TIME, MAX_REQUEST_TRACE_BUFFERING_TIME, TimeUnit.MILLISECONDS);
 	}
 
+	/**
+	 * Blocks until request traces for the connection are available or the timeout is reached
+	 *
+	 * @param connectionId   the id of the connection of the widget
+	 * @param requestTimeout the maximum time to wait in milliseconds
+	 * @return the request traces for the connection
+	 */
 	Collection<HttpRequestTrace> getRequestTraces(String connectionId, long requestTimeout) throws IOException {
-		if (connectionId != null && !connectionId.trim().isEmpty()) {
-			final ConcurrentLinkedQueue<HttpRequestTrace> traces = connectionIdToRequestTracesMap.remove(connectionId);
-			if (traces != null) {
-				logger.debug("picking up buffered requests");
-				return traces;
-			} else {
-				return blockingWaitForRequestTrace(connectionId, requestTimeout);
-			}
-		} else {
+		final BlockingRequestTracesListener listener = new BlockingRequestTracesListener();
+		addRequestTracesListener(connectionId, requestTimeout, listener);
+		return listener.await();
+	}
+
+	/**
+	 * Registers a listener which is notified exactly once, either as soon as request traces for the connection are
+	 * available or with an empty collection when the timeout is reached.
+	 * <p/>
+	 * If there already are buffered request traces, the listener is notified immediately on the calling thread.
+	 *
+	 * @param connectionId   the id of the connection of the widget
+	 * @param requestTimeout the maximum time to wait in milliseconds
+	 * @param listener       the listener
+	 */
+	void addRequestTracesListener(String connectionId, long requestTimeout, RequestTracesListener listener) {
+		if (connectionId == null || connectionId.trim().isEmpty()) {
 			throw new IllegalArgumentException("connectionId is empty");
 		}
-	}
+		final Collection<HttpRequestTrace> bufferedRequestTraces = drainRequestTraces(connectionId);
+		if (!bufferedRequestTraces.isEmpty()) {
+			logger.debug("picking up buffered requests");
+			listener.onRequestTraces(bufferedRequestTraces);
+			return;
+		}
 
-	private Collection<HttpRequestTrace> blockingWaitForRequestTrace(String connectionId, Long requestTimeout) throws IOException {
-		Object lock = new Object();
-		synchronized (lock) {
-			connectionIdToLockMap.put(connectionId, lock);
-			try {
-				lock.wait(requestTimeout);
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
-			} finally {
-				connectionIdToLockMap.remove(connectionId, lock);
-			}
-			return connectionIdToRequestTracesMap.remove(connectionId);
+		final PendingRequest pendingRequest = new PendingRequest(connectionId, listener);
+		final PendingRequest previousPendingRequest = connectionIdToPendingRequestMap.put(connectionId, pendingRequest);
+		if (previousPendingRequest != null) {
+			previousPendingRequest.complete();
+		}
+		try {
+			pendingRequest.timeout = scheduler.schedule(pendingRequest, requestTimeout, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			pendingRequest.complete();
+			return;
+		}
+		// a request trace could have been reported in the meantime
+		if (connectionIdToRequestTracesMap.containsKey(connectionId)) {
+			pendingRequest.complete();
 		}
 	}
 
@@ -89,28 +124,46 @@ public class WidgetAjaxRequestTraceReporter extends RequestTraceReporter {
 				logger.debug("reportRequestTrace {} ({})", reportArguments.getRequestTrace().getName(), reportArguments.getRequestTrace().getTimestamp());
 				bufferRequestTrace(connectionId, httpRequestTrace);
 
-				final Object lock = connectionIdToLockMap.remove(connectionId);
-				if (lock != null) {
-					synchronized (lock) {
-						lock.notifyAll();
-					}
+				final PendingRequest pendingRequest = connectionIdToPendingRequestMap.remove(connectionId);
+				if (pendingRequest != null) {
+					completeAsync(pendingRequest);
 				}
 			}
 		}
 	}
 
+	private void completeAsync(PendingRequest pendingRequest) {
+		try {
+			scheduler.execute(pendingRequest);
+		} catch (RejectedExecutionException e) {
+			pendingRequest.complete();
+		}
+	}
+
 	private void bufferRequestTrace(String connectionId, HttpRequestTrace requestTrace) {
 		logger.debug("bufferRequestTrace {} ({})", requestTrace.getName(), requestTrace.getTimestamp());
-		ConcurrentLinkedQueue<HttpRequestTrace> httpRequestTraces = new ConcurrentLinkedQueue<HttpRequestTrace>();
-		httpRequestTraces.add(requestTrace);
-
-		final ConcurrentLinkedQueue<HttpRequestTrace> alreadyAssociatedValue = connectionIdToRequestTracesMap
-				.putIfAbsent(connectionId, httpRequestTraces);
-		if (alreadyAssociatedValue != null) {
-			alreadyAssociatedValue.add(requestTrace);
+		boolean added = false;
+		while (!added) {
+			RequestTraceBuffer buffer = connectionIdToRequestTracesMap.get(connectionId);
+			if (buffer == null) {
+				final RequestTraceBuffer newBuffer = new RequestTraceBuffer();
+				buffer = connectionIdToRequestTracesMap.putIfAbsent(connectionId, newBuffer);
+				if (buffer == null) {
+					buffer = newBuffer;
+				}
+			}
+			// if the buffer has been drained concurrently, a new one has to be created
+			added = buffer.add(requestTrace);
 		}
 	}
 
+	private Collection<HttpRequestTrace> drainRequestTraces(String connectionId) {
+		final RequestTraceBuffer buffer = connectionIdToRequestTracesMap.remove(connectionId);
+		if (buffer == null) {
+			return Collections.emptyList();
+		}
+		return buffer.drain();
+	}
 
 	@Override
 	public boolean isActive(IsActiveArguments isActiveArguments) {
@@ -122,39 +175,147 @@ public class WidgetAjaxRequestTraceReporter extends RequestTraceReporter {
 		}
 	}
 
+	public void close() {
+		scheduler.shutdown();
+		for (PendingRequest pendingRequest : connectionIdToPendingRequestMap.values()) {
+			pendingRequest.complete();
+		}
+	}
+
 	/**
-	 * Clears old request traces that are buffered in {@link #connectionIdToRequestTracesMap} but are never picked up
-	 * to prevent a memory leak
+	 * Gets notified about the request traces of a connection
 	 */
-	private class OldRequestTraceRemover implements Runnable {
+	interface RequestTracesListener {
+		void onRequestTraces(Collection<HttpRequestTrace> requestTraces);
+	}
+
+	private static class BlockingRequestTracesListener implements RequestTracesListener {
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile Collection<HttpRequestTrace> requestTraces;
+
+		@Override
+		public void onRequestTraces(Collection<HttpRequestTrace> requestTraces) {
+			this.requestTraces = requestTraces;
+			latch.countDown();
+		}
+
+		Collection<HttpRequestTrace> await() {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			return requestTraces;
+		}
+	}
+
+	/**
+	 * A request of the widget that waits for the next request trace
+	 */
+	private class PendingRequest implements Runnable {
+		private final String connectionId;
+		private final RequestTracesListener listener;
+		private final AtomicBoolean completed = new AtomicBoolean(false);
+		private volatile ScheduledFuture<?> timeout;
+
+		private PendingRequest(String connectionId, RequestTracesListener listener) {
+			this.connectionId = connectionId;
+			this.listener = listener;
+		}
+
 		@Override
 		public void run() {
-			for (Map.Entry<String, ConcurrentLinkedQueue<HttpRequestTrace>> entry : connectionIdToRequestTracesMap.entrySet()) {
-				final ConcurrentLinkedQueue<HttpRequestTrace> httpRequestTraces = entry.getValue();
-				removeOldRequestTraces(httpRequestTraces);
-				if (httpRequestTraces.isEmpty()) {
-					removeOrphanEntry(entry);
+			complete();
+		}
+
+		void complete() {
+			if (completed.compareAndSet(false, true)) {
+				connectionIdToPendingRequestMap.remove(connectionId, this);
+				if (timeout != null) {
+					timeout.cancel(false);
+				}
+				try {
+					listener.onRequestTraces(drainRequestTraces(connectionId));
+				} catch (RuntimeException e) {
+					logger.warn(e.getMessage(), e);
 				}
 			}
 		}
+	}
+
+	/**
+	 * A bounded buffer of request traces which discards the oldest request traces if the capacity is exceeded
+	 */
+	private static class RequestTraceBuffer {
+		private final ArrayDeque<BufferedRequestTrace> requestTraces = new ArrayDeque<BufferedRequestTrace>();
+		private boolean drained = false;
 
-		private void removeOldRequestTraces(ConcurrentLinkedQueue<HttpRequestTrace> httpRequestTraces) {
-			for (Iterator<HttpRequestTrace> iterator = httpRequestTraces.iterator(); iterator.hasNext(); ) {
-				HttpRequestTrace httpRequestTrace = iterator.next();
-				final long timeInBuffer = System.currentTimeMillis() - httpRequestTrace.getTimestampEnd();
-				if (timeInBuffer > MAX_REQUEST_TRACE_BUFFERING_TIME) {
+		/**
+		 * @return <code>false</code>, if this buffer has already been drained and can't be used anymore
+		 */
+		synchronized boolean add(HttpRequestTrace requestTrace) {
+			if (drained) {
+				return false;
+			}
+			if (requestTraces.size() >= MAX_BUFFERED_REQUEST_TRACES_PER_CONNECTION) {
+				requestTraces.pollFirst();
+			}
+			requestTraces.addLast(new BufferedRequestTrace(requestTrace));
+			return true;
+		}
+
+		synchronized List<HttpRequestTrace> drain() {
+			drained = true;
+			removeExpired();
+			final List<HttpRequestTrace> result = new ArrayList<HttpRequestTrace>(requestTraces.size());
+			for (BufferedRequestTrace bufferedRequestTrace : requestTraces) {
+				result.add(bufferedRequestTrace.requestTrace);
+			}
+			return result;
+		}
+
+		/**
+		 * @return <code>true</code>, if the buffer is empty and has been marked as drained
+		 */
+		synchronized boolean removeExpiredAndDrainIfEmpty() {
+			removeExpired();
+			if (requestTraces.isEmpty()) {
+				drained = true;
+			}
+			return drained;
+		}
+
+		private void removeExpired() {
+			final long now = System.currentTimeMillis();
+			for (Iterator<BufferedRequestTrace> iterator = requestTraces.iterator(); iterator.hasNext(); ) {
+				if (now - iterator.next().bufferedAt > MAX_REQUEST_TRACE_BUFFERING_TIME) {
 					iterator.remove();
 				}
 			}
 		}
+	}
 
-		private void removeOrphanEntry(Map.Entry<String, ConcurrentLinkedQueue<HttpRequestTrace>> entry) {
-			// to eliminate race conditions remove only if queue is still empty
-			connectionIdToRequestTracesMap.remove(entry.getKey(), new ConcurrentLinkedQueue<HttpRequestTrace>());
+	private static class BufferedRequestTrace {
+		private final HttpRequestTrace requestTrace;
+		private final long bufferedAt = System.currentTimeMillis();
+
+		private BufferedRequestTrace(HttpRequestTrace requestTrace) {
+			this.requestTrace = requestTrace;
 		}
 	}
 
-	public void close() {
-		oldRequestTracesRemoverPool.shutdown();
+	/**
+	 * Clears old request traces that are buffered in {@link #connectionIdToRequestTracesMap} but are never picked up
+	 * to prevent a memory leak
+	 */
+	private class OldRequestTraceRemover implements Runnable {
+		@Override
+		public void run() {
+			for (Map.Entry<String, RequestTraceBuffer> entry : connectionIdToRequestTracesMap.entrySet()) {
+				if (entry.getValue().removeExpiredAndDrainIfEmpty()) {
+					connectionIdToRequestTracesMap.remove(entry.getKey(), entry.getValue());
+				}
+			}
+		}
 	}
 }
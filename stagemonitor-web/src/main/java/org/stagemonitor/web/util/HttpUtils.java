@@ -0,0 +1,51 @@
+package org.stagemonitor.web.util;
+
+import javax.servlet.http.HttpServletRequest;
+
+public final class HttpUtils {
+
+	private HttpUtils() {
+		// don't instantiate
+	}
+
+	/**
+	 * Checks whether the client accepts a gzip encoded response.
+	 * <p/>
+	 * Respects the quality values of the <code>Accept-Encoding</code> header, so <code>gzip;q=0</code> means that the
+	 * client does not accept gzip. A wildcard (<code>*</code>) only applies if gzip is not listed explicitly.
+	 *
+	 * @param request the request
+	 * @return <code>true</code>, if the response may be gzip encoded
+	 */
+	public static boolean isGzipAccepted(HttpServletRequest request) {
+		final String acceptEncoding = request.getHeader("Accept-Encoding");
+		if (acceptEncoding == null) {
+			return false;
+		}
+		Boolean wildcardAccepted = null;
+		for (String encoding : acceptEncoding.split(",")) {
+			final String[] codingAndParameters = encoding.split(";");
+			final String coding = codingAndParameters[0].trim().toLowerCase();
+			if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+				return getQualityValue(codingAndParameters) > 0;
+			} else if ("*".equals(coding)) {
+				wildcardAccepted = getQualityValue(codingAndParameters) > 0;
+			}
+		}
+		return wildcardAccepted != null && wildcardAccepted;
+	}
+
+	private static float getQualityValue(String[] codingAndParameters) {
+		for (int i = 1; i < codingAndParameters.length; i++) {
+			final String parameter = codingAndParameters[i].trim();
+			if (parameter.startsWith("q=")) {
+				try {
+					return Float.parseFloat(parameter.substring(2).trim());
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+}
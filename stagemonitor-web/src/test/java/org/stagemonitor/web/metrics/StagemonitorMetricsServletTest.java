@@ -0,0 +1,170 @@
+package org.stagemonitor.web.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.stagemonitor.core.metrics.metrics2.MetricName.name;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.stagemonitor.core.metrics.metrics2.Metric2Registry;
+import org.stagemonitor.core.util.JsonUtils;
+import org.stagemonitor.web.WebPlugin;
+
+public class StagemonitorMetricsServletTest {
+
+	private final Metric2Registry registry = new Metric2Registry();
+	private final StagemonitorMetricsServlet servlet = new StagemonitorMetricsServlet(registry, mock(WebPlugin.class), JsonUtils.getMapper());
+	private final TestClock clock = new TestClock();
+
+	@Before
+	public void setUp() throws Exception {
+		// the rates of the timers must not change between two requests, unless the test advances the clock
+		registry.register(name("response_time_server").tag("request_name", "GET /index").build(),
+				new Timer(new ExponentiallyDecayingReservoir(), clock)).update(1, TimeUnit.MILLISECONDS);
+		registry.register(name("response_time_server").tag("request_name", "POST /index").build(),
+				new Timer(new ExponentiallyDecayingReservoir(), clock));
+		registry.counter(name("online_users").build()).inc();
+	}
+
+	@Test
+	public void testAllMetrics() throws Exception {
+		final JsonNode metrics = getMetrics(new MockHttpServletRequest());
+
+		assertEquals(2, metrics.get("timers").size());
+		assertEquals(1, metrics.get("counters").size());
+	}
+
+	@Test
+	public void testFilterByName() throws Exception {
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addParameter("name", "online_users");
+		final JsonNode metrics = getMetrics(request);
+
+		assertEquals(0, metrics.get("timers").size());
+		assertEquals(1, metrics.get("counters").size());
+	}
+
+	@Test
+	public void testFilterByTagPrefix() throws Exception {
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addParameter("tag", "request_name:GET ");
+		final JsonNode metrics = getMetrics(request);
+
+		assertEquals(1, metrics.get("timers").size());
+		assertTrue(metrics.get("timers").has("response_time_server.GET-|index"));
+		assertEquals(0, metrics.get("counters").size());
+	}
+
+	@Test
+	public void testChangedSince() throws Exception {
+		final MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+		servlet.doGet(new MockHttpServletRequest(), firstResponse);
+		final String version = firstResponse.getHeader(StagemonitorMetricsServlet.VERSION_HEADER);
+
+		registry.counter(name("online_users").build()).inc();
+
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addParameter("changedSince", version);
+		final JsonNode metrics = getMetrics(request);
+
+		assertEquals(0, metrics.get("timers").size());
+		assertEquals(2, metrics.get("counters").get("online_users").get("count").asInt());
+	}
+
+	@Test
+	public void testNotModified() throws Exception {
+		final MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+		servlet.doGet(new MockHttpServletRequest(), firstResponse);
+		final String eTag = firstResponse.getHeader("ETag");
+
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", eTag);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		servlet.doGet(request, response);
+		assertEquals(304, response.getStatus());
+		assertEquals(0, response.getContentAsByteArray().length);
+
+		registry.counter(name("online_users").build()).inc();
+
+		response = new MockHttpServletResponse();
+		servlet.doGet(request, response);
+		assertEquals(200, response.getStatus());
+		assertFalse(eTag.equals(response.getHeader("ETag")));
+	}
+
+	@Test
+	public void testRatesDecayWithoutEvents() throws Exception {
+		final MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+		servlet.doGet(new MockHttpServletRequest(), firstResponse);
+		final String eTag = firstResponse.getHeader("ETag");
+		final String version = firstResponse.getHeader(StagemonitorMetricsServlet.VERSION_HEADER);
+
+		clock.advance(TimeUnit.SECONDS.toNanos(10));
+
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", eTag);
+		request.addParameter("changedSince", version);
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+		servlet.doGet(request, response);
+		assertEquals(200, response.getStatus());
+		assertFalse(eTag.equals(response.getHeader("ETag")));
+		final JsonNode metrics = JsonUtils.getMapper().readTree(response.getContentAsString());
+		assertTrue(metrics.get("timers").has("response_time_server.GET-|index"));
+		assertEquals(0, metrics.get("counters").size());
+	}
+
+	@Test
+	public void testETagChangesIfCountMovesBetweenMetrics() throws Exception {
+		final Counter first = registry.counter(name("first").build());
+		final Counter second = registry.counter(name("second").build());
+		first.inc(2);
+		second.inc(1);
+		final MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+		servlet.doGet(new MockHttpServletRequest(), firstResponse);
+
+		first.dec();
+		second.inc();
+		final MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+		servlet.doGet(new MockHttpServletRequest(), secondResponse);
+
+		assertTrue(firstResponse.getHeader("ETag").startsWith("W/"));
+		assertFalse(firstResponse.getHeader("ETag").equals(secondResponse.getHeader("ETag")));
+	}
+
+	private JsonNode getMetrics(MockHttpServletRequest request) throws Exception {
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+		servlet.doGet(request, response);
+		assertEquals(200, response.getStatus());
+		return JsonUtils.getMapper().readTree(response.getContentAsString());
+	}
+
+	private static class TestClock extends Clock {
+		private final AtomicLong tick = new AtomicLong();
+
+		@Override
+		public long getTick() {
+			return tick.get();
+		}
+
+		@Override
+		public long getTime() {
+			return TimeUnit.NANOSECONDS.toMillis(tick.get());
+		}
+
+		private void advance(long nanos) {
+			tick.addAndGet(nanos);
+		}
+	}
+}
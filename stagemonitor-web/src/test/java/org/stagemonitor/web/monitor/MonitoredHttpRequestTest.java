@@ -21,6 +21,7 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.stagemonitor.core.MeasurementSession;
 import org.stagemonitor.core.Stagemonitor;
+import org.stagemonitor.core.util.HashFunction;
 import org.stagemonitor.requestmonitor.RequestMonitor;
 import org.stagemonitor.web.monitor.filter.StatusExposingByteCountingServletResponse;
 
@@ -89,6 +90,7 @@ public class MonitoredHttpRequestTest {
 		final RequestMonitor.RequestInformation requestInformation = mock(RequestMonitor.RequestInformation.class);
 		when(requestInformation.getRequestTrace()).thenReturn(requestTrace);
 		when(requestInformation.getRequestName()).thenReturn(requestTrace.getName());
+		when(requestInformation.isAnyRequestTraceReporterActive()).thenReturn(true);
 		monitoredHttpRequest.onPostExecute(requestInformation);
 		final Map<String, String> parameters = requestTrace.getParameters();
 		assertEquals("bar", parameters.get("foo"));
@@ -97,6 +99,55 @@ public class MonitoredHttpRequestTest {
 		assertEquals("XXXX", parameters.get("creditCard"));
 	}
 
+	@Test
+	public void testDontCollectReportingDataIfNoReporterIsActive() throws Exception {
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test.js");
+		request.addParameter("foo", "bar");
+		request.addHeader("accept", "application/json");
+		final MonitoredHttpRequest monitoredHttpRequest = createMonitoredHttpRequest(request);
+		final HttpRequestTrace requestTrace = monitoredHttpRequest.createRequestTrace();
+		final RequestMonitor.RequestInformation requestInformation = mock(RequestMonitor.RequestInformation.class);
+		when(requestInformation.getRequestTrace()).thenReturn(requestTrace);
+		when(requestInformation.getRequestName()).thenReturn(requestTrace.getName());
+		when(requestInformation.isAnyRequestTraceReporterActive()).thenReturn(false);
+
+		monitoredHttpRequest.onPostExecute(requestInformation);
+
+		assertNull(requestTrace.getParameters());
+		assertNull(requestTrace.getUniqueVisitorId());
+		assertTrue(requestTrace.getHeaders().isEmpty());
+	}
+
+	@Test
+	public void testUniqueVisitorId() throws Exception {
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test.js");
+		request.addHeader("user-agent", "Mozilla/5.0");
+		final MonitoredHttpRequest monitoredHttpRequest = createMonitoredHttpRequest(request);
+		final HttpRequestTrace requestTrace = monitoredHttpRequest.createRequestTrace();
+		final RequestMonitor.RequestInformation requestInformation = mock(RequestMonitor.RequestInformation.class);
+		when(requestInformation.getRequestTrace()).thenReturn(requestTrace);
+		when(requestInformation.getRequestName()).thenReturn(requestTrace.getName());
+		when(requestInformation.isAnyRequestTraceReporterActive()).thenReturn(true);
+
+		monitoredHttpRequest.onPostExecute(requestInformation);
+
+		assertEquals(HashFunction.SHA1.hash("127.0.0.1nullMozilla/5.0"), requestTrace.getUniqueVisitorId());
+	}
+
+	@Test
+	public void testBytesWrittenOfAsyncRequestAreUnknown() throws Exception {
+		final MonitoredHttpRequest monitoredHttpRequest = createMonitoredHttpRequest(new MockHttpServletRequest("GET", "/test.js"));
+		final HttpRequestTrace requestTrace = monitoredHttpRequest.createRequestTrace();
+		final RequestMonitor.RequestInformation requestInformation = mock(RequestMonitor.RequestInformation.class);
+		when(requestInformation.getRequestTrace()).thenReturn(requestTrace);
+		when(requestInformation.getRequestName()).thenReturn(requestTrace.getName());
+		when(requestInformation.isAsync()).thenReturn(true);
+
+		monitoredHttpRequest.onPostExecute(requestInformation);
+
+		assertNull(requestTrace.getBytesWritten());
+	}
+
 	@Test
 	public void testReferringSite() throws Exception {
 		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test.js");
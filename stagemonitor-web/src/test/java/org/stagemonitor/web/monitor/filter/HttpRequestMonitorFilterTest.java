@@ -7,7 +7,9 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -48,12 +50,12 @@ public class HttpRequestMonitorFilterTest {
 	private RequestMonitorPlugin requestMonitorPlugin = mock(RequestMonitorPlugin.class);
 	private RequestMonitor.RequestInformation requestInformation = mock(RequestMonitor.RequestInformation.class);
 	private HttpRequestTrace requestTrace = mock(HttpRequestTrace.class);
+	private RequestMonitor requestMonitor = mock(RequestMonitor.class);
 	private HttpRequestMonitorFilter httpRequestMonitorFilter;
 	private String testHtml = "<html><body></body></html>";
 
 	@Before
 	public void before() throws Exception {
-		final RequestMonitor requestMonitor = mock(RequestMonitor.class);
 		when(requestMonitor.monitor(any(MonitoredRequest.class))).then(new Answer<RequestMonitor.RequestInformation<?>>() {
 			@Override
 			public RequestMonitor.RequestInformation<?> answer(InvocationOnMock invocation) throws Throwable {
@@ -190,6 +192,65 @@ public class HttpRequestMonitorFilterTest {
 		return filterChain;
 	}
 
+	@Test
+	public void testAsyncRequest() throws Exception {
+		when(requestInformation.isAsync()).thenReturn(true);
+		final MockHttpServletRequest request = requestWithAccept("text/html");
+		request.setAsyncSupported(true);
+		final MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		final FilterChain filterChain = mock(FilterChain.class);
+		doAnswer(new Answer() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				request.startAsync((ServletRequest) invocation.getArguments()[0], (ServletResponse) invocation.getArguments()[1]);
+				return null;
+			}
+		}).when(filterChain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+
+		httpRequestMonitorFilter.doFilter(request, servletResponse, filterChain);
+		verify(requestMonitor, never()).monitorStop(requestInformation);
+
+		final ServletResponse asyncResponse = request.getAsyncContext().getResponse();
+		asyncResponse.getWriter().write(testHtml);
+		asyncResponse.setContentType("text/html");
+		request.getAsyncContext().complete();
+
+		verify(requestMonitor).monitorStop(requestInformation);
+		// the content of asynchronous requests is not buffered, as the container may complete the response at any time
+		assertEquals(testHtml, servletResponse.getContentAsString());
+	}
+
+	@Test
+	public void testAsyncRequestContentWrittenBeforeDetachingReachesResponse() throws Exception {
+		when(requestInformation.isAsync()).thenReturn(true);
+		final MockHttpServletRequest request = requestWithAccept("text/html");
+		request.setAsyncSupported(true);
+		final MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		final FilterChain filterChain = mock(FilterChain.class);
+		doAnswer(new Answer() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				final ServletResponse response = (ServletResponse) invocation.getArguments()[1];
+				response.setContentType("text/html");
+				response.getOutputStream().print("<html><body>");
+				request.startAsync((ServletRequest) invocation.getArguments()[0], response);
+				return null;
+			}
+		}).when(filterChain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+
+		httpRequestMonitorFilter.doFilter(request, servletResponse, filterChain);
+		assertEquals("<html><body>", servletResponse.getContentAsString());
+
+		final ServletResponse asyncResponse = request.getAsyncContext().getResponse();
+		asyncResponse.getOutputStream().print("</body></html>");
+		asyncResponse.flushBuffer();
+		assertEquals(testHtml, servletResponse.getContentAsString());
+		assertTrue(servletResponse.isCommitted());
+
+		request.getAsyncContext().complete();
+		assertEquals(testHtml, servletResponse.getContentAsString());
+	}
+
 	@Test
 	public void testRUM() throws Exception {
 		when(webPlugin.isRealUserMonitoringEnabled()).thenReturn(true);
@@ -0,0 +1,139 @@
+package org.stagemonitor.web.monitor.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class HttpServletResponseBufferWrapperTest {
+
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+	private final CountDownLatch copying = new CountDownLatch(1);
+	private final CountDownLatch applicationWrote = new CountDownLatch(1);
+
+	@Test
+	public void testWriteToOutputStreamWhileBufferingIsStopped() throws Exception {
+		final HttpServletResponseBufferWrapper wrapper = new HttpServletResponseBufferWrapper(new SlowResponse());
+		final ServletOutputStream outputStream = wrapper.getOutputStream();
+		outputStream.print("before ");
+
+		writeWhileBufferingIsStopped(wrapper, new Write() {
+			@Override
+			public void write() throws IOException {
+				outputStream.print("after");
+			}
+		});
+
+		assertEquals("before after", response.getContentAsString());
+	}
+
+	@Test
+	public void testWriteToWriterWhileBufferingIsStopped() throws Exception {
+		final HttpServletResponseBufferWrapper wrapper = new HttpServletResponseBufferWrapper(new SlowResponse());
+		final PrintWriter writer = wrapper.getWriter();
+		writer.print("before ");
+
+		writeWhileBufferingIsStopped(wrapper, new Write() {
+			@Override
+			public void write() throws IOException {
+				writer.print("after");
+			}
+		});
+		writer.flush();
+
+		assertEquals("before after", response.getContentAsString());
+	}
+
+	/**
+	 * The application thread writes while the buffered content is copied to the response
+	 */
+	private void writeWhileBufferingIsStopped(HttpServletResponseBufferWrapper wrapper, final Write write) throws Exception {
+		final Thread applicationThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					copying.await();
+					write.write();
+					applicationWrote.countDown();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		applicationThread.start();
+		wrapper.stopBuffering();
+		applicationThread.join(5000);
+	}
+
+	private interface Write {
+		void write() throws IOException;
+	}
+
+	/**
+	 * Signals when the buffered content is copied to it and gives the application thread some time to write
+	 * concurrently
+	 */
+	private class SlowResponse extends HttpServletResponseWrapper {
+
+		private SlowResponse() {
+			super(response);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			final ServletOutputStream outputStream = response.getOutputStream();
+			return new ServletOutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					outputStream.write(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					waitForApplication();
+					outputStream.write(b, off, len);
+				}
+			};
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			final PrintWriter writer = response.getWriter();
+			return new PrintWriter(new Writer() {
+				@Override
+				public void write(char[] cbuf, int off, int len) throws IOException {
+					waitForApplication();
+					writer.write(cbuf, off, len);
+				}
+
+				@Override
+				public void flush() throws IOException {
+					writer.flush();
+				}
+
+				@Override
+				public void close() throws IOException {
+					writer.close();
+				}
+			});
+		}
+
+		private void waitForApplication() throws IOException {
+			copying.countDown();
+			try {
+				applicationWrote.await(200, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+}
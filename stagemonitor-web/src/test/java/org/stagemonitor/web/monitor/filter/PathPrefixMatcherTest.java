@@ -0,0 +1,54 @@
+package org.stagemonitor.web.monitor.filter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class PathPrefixMatcherTest {
+
+	private final PathPrefixMatcher matcher = new PathPrefixMatcher("/rest", "/resources/", "/stagemonitor", "/r");
+
+	@Test
+	public void testMatches() throws Exception {
+		assertTrue(matcher.matches("/rest"));
+		assertTrue(matcher.matches("/rest/users"));
+		assertTrue(matcher.matches("/resources/style.css"));
+		assertTrue(matcher.matches("/stagemonitor/static/foo.js"));
+		assertTrue(matcher.matches("/r"));
+		assertTrue(matcher.matches("/resources"));
+	}
+
+	@Test
+	public void testDoesNotMatch() throws Exception {
+		assertFalse(matcher.matches(""));
+		assertFalse(matcher.matches("/"));
+		assertFalse(matcher.matches("/stage"));
+		assertFalse(matcher.matches("/index.html"));
+		assertFalse(matcher.matches("rest"));
+	}
+
+	@Test
+	public void testMatchesWithOffset() throws Exception {
+		assertTrue(matcher.matches("/context-path/stagemonitor/static/foo.js", "/context-path".length()));
+		assertFalse(matcher.matches("/context-path/index.html", "/context-path".length()));
+		assertFalse(matcher.matches("/rest/context-path", "/rest".length()));
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		final PathPrefixMatcher emptyMatcher = new PathPrefixMatcher(Collections.<String>emptyList());
+		assertTrue(emptyMatcher.isEmpty());
+		assertFalse(emptyMatcher.matches("/rest"));
+		assertFalse(emptyMatcher.matches(""));
+	}
+
+	@Test
+	public void testEmptyPrefixMatchesEverything() throws Exception {
+		final PathPrefixMatcher matchAll = new PathPrefixMatcher("");
+		assertTrue(matchAll.matches(""));
+		assertTrue(matchAll.matches("/index.html"));
+	}
+}
@@ -1,9 +1,17 @@
 package org.stagemonitor.web.monitor.servlet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
 import org.junit.Before;
+import org.stagemonitor.core.util.IOUtils;
 import org.junit.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
@@ -46,4 +54,86 @@ public class StagemonitorFileServletTest {
 		assertEquals(404, response.getStatus());
 		assertEquals("", response.getContentAsString());
 	}
+
+	@Test
+	public void testNotModified() throws Exception {
+		request.setRequestURI("/stagemonitor/static/test.html");
+		fileServlet.service(request, response);
+		final String eTag = response.getHeader("ETag");
+		assertNotNull(eTag);
+
+		final MockHttpServletRequest conditionalRequest = new MockHttpServletRequest("GET", "/stagemonitor/static/test.html");
+		conditionalRequest.addHeader("If-None-Match", eTag);
+		final MockHttpServletResponse notModifiedResponse = new MockHttpServletResponse();
+		fileServlet.service(conditionalRequest, notModifiedResponse);
+
+		assertEquals(304, notModifiedResponse.getStatus());
+		assertEquals(eTag, notModifiedResponse.getHeader("ETag"));
+		assertEquals(0, notModifiedResponse.getContentAsByteArray().length);
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		request.setRequestURI("/stagemonitor/static/flot/jquery.flot.min.js");
+		fileServlet.service(request, response);
+		final String uncompressed = response.getContentAsString();
+		assertNull(response.getHeader("Content-Encoding"));
+
+		final MockHttpServletRequest gzipRequest = new MockHttpServletRequest("GET", "/stagemonitor/static/flot/jquery.flot.min.js");
+		gzipRequest.addHeader("Accept-Encoding", "gzip, deflate");
+		final MockHttpServletResponse gzipResponse = new MockHttpServletResponse();
+		fileServlet.service(gzipRequest, gzipResponse);
+
+		assertEquals(200, gzipResponse.getStatus());
+		assertEquals("gzip", gzipResponse.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", gzipResponse.getHeader("Vary"));
+		assertEquals(gzipResponse.getContentAsByteArray().length, gzipResponse.getContentLength());
+		assertTrue(gzipResponse.getContentAsByteArray().length < uncompressed.length());
+		assertEquals(uncompressed, new String(IOUtils.readToBytes(new GZIPInputStream(
+				new ByteArrayInputStream(gzipResponse.getContentAsByteArray()))), "UTF-8"));
+	}
+
+	@Test
+	public void testGzipHasDistinctETag() throws Exception {
+		request.setRequestURI("/stagemonitor/static/flot/jquery.flot.min.js");
+		fileServlet.service(request, response);
+		final String eTag = response.getHeader("ETag");
+
+		final MockHttpServletRequest gzipRequest = new MockHttpServletRequest("GET", "/stagemonitor/static/flot/jquery.flot.min.js");
+		gzipRequest.addHeader("Accept-Encoding", "gzip");
+		gzipRequest.addHeader("If-None-Match", eTag);
+		final MockHttpServletResponse gzipResponse = new MockHttpServletResponse();
+		fileServlet.service(gzipRequest, gzipResponse);
+
+		assertEquals(200, gzipResponse.getStatus());
+		assertEquals("gzip", gzipResponse.getHeader("Content-Encoding"));
+		assertNotEquals(eTag, gzipResponse.getHeader("ETag"));
+		assertTrue(gzipResponse.getHeader("ETag").endsWith("-gzip\""));
+	}
+
+	@Test
+	public void testGzipNotAccepted() throws Exception {
+		request.setRequestURI("/stagemonitor/static/flot/jquery.flot.min.js");
+		request.addHeader("Accept-Encoding", "gzip;q=0, deflate");
+
+		fileServlet.service(request, response);
+
+		assertEquals(200, response.getStatus());
+		assertNull(response.getHeader("Content-Encoding"));
+	}
+
+	@Test
+	public void testFileExceedingCacheLimit() throws Exception {
+		fileServlet = new StagemonitorFileServlet(Collections.<String>emptyList(), 1024);
+		fileServlet.init(new MockServletConfig(new MockServletContext()));
+		request.setRequestURI("/stagemonitor/static/flot/jquery.flot.min.js");
+		request.addHeader("Accept-Encoding", "gzip");
+
+		fileServlet.service(request, response);
+
+		assertEquals(200, response.getStatus());
+		assertNull(response.getHeader("Content-Encoding"));
+		assertNull(response.getHeader("ETag"));
+		assertTrue(response.getContentAsByteArray().length > 1024);
+	}
 }
@@ -5,21 +5,29 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.stagemonitor.core.configuration.Configuration;
+import org.stagemonitor.core.util.IOUtils;
 import org.stagemonitor.core.util.JsonUtils;
 import org.stagemonitor.core.util.StringUtils;
 import org.stagemonitor.requestmonitor.RequestMonitor;
@@ -80,10 +88,26 @@ public class RequestTraceServletTest {
 
 		requestTraceServlet.service(request, response);
 
-		Assert.assertEquals(Arrays.asList(httpRequestTrace.toJson(), httpRequestTrace.toJson()).toString(), response.getContentAsString());
+		Assert.assertEquals("[" + httpRequestTrace.toJson() + "," + httpRequestTrace.toJson() + "]", response.getContentAsString());
 		Assert.assertEquals("application/json;charset=UTF-8", response.getHeader("content-type"));
 	}
 
+	@Test
+	public void testRequestTraceGzipEncoded() throws Exception {
+		reporter.reportRequestTrace(new RequestTraceReporter.ReportArguments(httpRequestTrace));
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stagemonitor/request-traces");
+		request.addParameter("connectionId", connectionId);
+		request.addHeader("Accept-Encoding", "gzip, deflate");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		requestTraceServlet.service(request, response);
+
+		Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+		final String content = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())));
+		Assert.assertEquals(JsonUtils.toJson(Arrays.asList(httpRequestTrace)), content);
+	}
+
 	private void performNonBlockingRequest(final HttpServletRequest request, final MockHttpServletResponse response) throws Exception {
 		final Object lock = new Object();
 		synchronized (lock) {
@@ -126,6 +150,55 @@ public class RequestTraceServletTest {
 		Assert.assertEquals("application/json;charset=UTF-8", response.getHeader("content-type"));
 	}
 
+	@Test
+	public void testRequestTraceAfterAsyncRequest() throws Exception {
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stagemonitor/request-traces");
+		request.addParameter("connectionId", connectionId);
+		request.setAsyncSupported(true);
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		// does not block the calling thread
+		requestTraceServlet.service(request, response);
+		Assert.assertTrue(request.isAsyncStarted());
+		Assert.assertEquals("", response.getContentAsString());
+
+		reporter.reportRequestTrace(new RequestTraceReporter.ReportArguments(httpRequestTrace));
+		waitForResponse(response);
+
+		Assert.assertEquals(JsonUtils.toJson(Arrays.asList(httpRequestTrace)), response.getContentAsString());
+		Assert.assertEquals("application/json;charset=UTF-8", response.getHeader("content-type"));
+	}
+
+	@Test
+	public void testAsyncResponseIsWrittenOnContainerThread() throws Exception {
+		final AtomicBoolean startedOnContainerThread = new AtomicBoolean(false);
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stagemonitor/request-traces") {
+			@Override
+			public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+				final MockAsyncContext asyncContext = new MockAsyncContext(request, response) {
+					@Override
+					public void start(Runnable runnable) {
+						startedOnContainerThread.set(true);
+						new Thread(runnable).start();
+					}
+				};
+				setAsyncStarted(true);
+				setAsyncContext(asyncContext);
+				return asyncContext;
+			}
+		};
+		request.addParameter("connectionId", connectionId);
+		request.setAsyncSupported(true);
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		requestTraceServlet.service(request, response);
+		reporter.reportRequestTrace(new RequestTraceReporter.ReportArguments(httpRequestTrace));
+		waitForResponse(response);
+
+		Assert.assertTrue(startedOnContainerThread.get());
+		Assert.assertEquals(JsonUtils.toJson(Arrays.asList(httpRequestTrace)), response.getContentAsString());
+	}
+
 	@Test
 	public void testRequestTraceAfterRequestDifferentConnection() throws Exception {
 		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stagemonitor/request-traces");
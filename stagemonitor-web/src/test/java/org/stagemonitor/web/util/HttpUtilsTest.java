@@ -0,0 +1,37 @@
+package org.stagemonitor.web.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class HttpUtilsTest {
+
+	@Test
+	public void testGzipAccepted() throws Exception {
+		assertTrue(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("gzip")));
+		assertTrue(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("gzip, deflate")));
+		assertTrue(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("deflate;q=1.0, GZIP;q=0.5")));
+		assertTrue(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("x-gzip")));
+		assertTrue(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("*")));
+	}
+
+	@Test
+	public void testGzipNotAccepted() throws Exception {
+		assertFalse(HttpUtils.isGzipAccepted(new MockHttpServletRequest()));
+		assertFalse(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("")));
+		assertFalse(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("deflate")));
+		assertFalse(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("gzip;q=0")));
+		assertFalse(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("deflate, gzip; q=0.0")));
+		assertFalse(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("gzip;q=0, *")));
+		assertFalse(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("*;q=0")));
+		assertFalse(HttpUtils.isGzipAccepted(requestWithAcceptEncoding("notgzip")));
+	}
+
+	private static MockHttpServletRequest requestWithAcceptEncoding(String acceptEncoding) {
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", acceptEncoding);
+		return request;
+	}
+}